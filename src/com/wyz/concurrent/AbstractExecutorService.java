@@ -93,6 +93,51 @@ public abstract class AbstractExecutorService implements ExecutorService {
         return (Future<T>) ftask;
     }
 
+    /**
+     * 提交一个返回int的任务，结果保存在基本类型字段中，不装箱。
+     * 没有命名为submit的重载：() -> 1 这样的lambda会同时匹配Int/Long/DoubleCallable，产生歧义。
+     * @param task 任务
+     * @return 表示任务结果的IntFuture
+     */
+    public IntFuture submitInt(IntCallable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        IntFutureTask ftask = new IntFutureTask(task);
+        execute(ftask);
+        return ftask;
+    }
+
+    /**
+     * 提交一个返回long的任务，结果保存在基本类型字段中，不装箱。
+     * 没有命名为submit的重载：() -> 1 这样的lambda会同时匹配Int/Long/DoubleCallable，产生歧义。
+     * @param task 任务
+     * @return 表示任务结果的LongFuture
+     */
+    public LongFuture submitLong(LongCallable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        LongFutureTask ftask = new LongFutureTask(task);
+        execute(ftask);
+        return ftask;
+    }
+
+    /**
+     * 提交一个返回double的任务，结果保存在基本类型字段中，不装箱。
+     * 没有命名为submit的重载：() -> 1 这样的lambda会同时匹配Int/Long/DoubleCallable，产生歧义。
+     * @param task 任务
+     * @return 表示任务结果的DoubleFuture
+     */
+    public DoubleFuture submitDouble(DoubleCallable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        DoubleFutureTask ftask = new DoubleFutureTask(task);
+        execute(ftask);
+        return ftask;
+    }
+
     /**
      *
      *
@@ -160,7 +205,7 @@ public abstract class AbstractExecutorService implements ExecutorService {
                         //如果获取的Future为空，说明在指定的时间，没有在提交任务。
                         if (f==null) {
                             //抛出超时异常
-                            throw new TimeoutException();
+                            throw TimeoutException.timedOut();
                         }
                         //获取到头节点，重新结算超时时间，由此可以看出接口参数为总时间。
                         nanos = deadline - System.nanoTime();
@@ -222,6 +267,145 @@ public abstract class AbstractExecutorService implements ExecutorService {
 
     }
 
+    /**
+     * 对冲执行：立即启动第一个任务，如果在给定的延迟内没有任务成功返回，再启动下一个任务，
+     * 返回最先成功的结果并取消其余任务。适用于多个副本提供相同结果的查询，用少量额外的请求
+     * 换取更低的尾延迟。任务失败时会立即启动下一个任务（不计为对冲）。
+     *
+     * @param tasks 可以互相替代的任务，按顺序启动
+     * @param hedgeDelay 启动下一个任务之前等待的时间
+     * @param unit hedgeDelay 的时间单位
+     * @return 最先成功的任务的结果
+     * @throws InterruptedException 等待时被中断
+     * @throws ExecutionException 所有任务都失败
+     */
+    public <T> T invokeHedged(Collection<? extends Callable<T>> tasks, long hedgeDelay, TimeUnit unit)
+            throws InterruptedException, ExecutionException {
+        if (unit == null) {
+            throw new NullPointerException();
+        }
+        return doInvokeHedged(tasks, Math.max(0L, unit.toNanos(hedgeDelay)), null);
+    }
+
+    /**
+     * 对冲执行，对冲延迟取{@code stats}中观察到的分位数延迟（默认p95），
+     * 并把本次调用的耗时、对冲触发和获胜次数记录到{@code stats}中。
+     *
+     * @param tasks 可以互相替代的任务，按顺序启动
+     * @param stats 延迟统计，通常由同一类调用共享
+     * @return 最先成功的任务的结果
+     * @throws InterruptedException 等待时被中断
+     * @throws ExecutionException 所有任务都失败
+     */
+    public <T> T invokeHedged(Collection<? extends Callable<T>> tasks, HedgeStats stats)
+            throws InterruptedException, ExecutionException {
+        if (stats == null) {
+            throw new NullPointerException();
+        }
+        return doInvokeHedged(tasks, -1L, stats);
+    }
+
+    /**
+     * 对冲执行的主逻辑，结构与doInvokeAny相同，区别在于只有等待超过对冲延迟才会启动下一个任务
+     * @param fixedDelay 固定的对冲延迟，小于0表示使用stats中观察到的延迟
+     * @param stats 统计，可以为null
+     */
+    private <T> T doInvokeHedged(Collection<? extends Callable<T>> tasks,
+                                 long fixedDelay, HedgeStats stats)
+            throws InterruptedException, ExecutionException {
+        if (tasks == null) {
+            throw new NullPointerException();
+        }
+        int ntasks = tasks.size();
+        if (ntasks == 0) {
+            throw new IllegalArgumentException();
+        }
+        ArrayList<Future<T>> futures = new ArrayList<>(ntasks);
+        //每个任务的启动时间，用于统计获胜任务的耗时
+        long[] startTimes = new long[ntasks];
+        //每个任务是否是由对冲启动的
+        boolean[] hedged = new boolean[ntasks];
+        ExecutorCompletionService<T> ecs = new ExecutorCompletionService<T>(this);
+        if (stats != null) {
+            stats.recordInvocation();
+        }
+        try {
+            ExecutionException ee = null;
+            Iterator<? extends Callable<T>> it = tasks.iterator();
+            //第一个任务立即启动
+            startTimes[0] = System.nanoTime();
+            futures.add(ecs.submit(it.next()));
+            --ntasks;
+            int active = 1;
+            for (;;) {
+                Future<T> f;
+                if (ntasks > 0) {
+                    //还有备用的任务：最多等待一个对冲延迟
+                    long delay = fixedDelay >= 0 ? fixedDelay : stats.hedgeDelayNanos();
+                    f = ecs.poll(delay, TimeUnit.NANOSECONDS);
+                    if (f == null) {
+                        //对冲延迟内没有结果，启动下一个任务
+                        int i = futures.size();
+                        hedged[i] = true;
+                        startTimes[i] = System.nanoTime();
+                        futures.add(ecs.submit(it.next()));
+                        --ntasks;
+                        ++active;
+                        if (stats != null) {
+                            stats.recordHedgeFired();
+                        }
+                        continue;
+                    }
+                } else if (active == 0) {
+                    break;
+                } else {
+                    f = ecs.take();
+                }
+                --active;
+                try {
+                    T result = f.get();
+                    int i = indexOf(futures, f);
+                    if (stats != null && i >= 0) {
+                        stats.recordLatency(System.nanoTime() - startTimes[i]);
+                        if (hedged[i]) {
+                            stats.recordHedgeWon();
+                        }
+                    }
+                    return result;
+                } catch (ExecutionException eex) {
+                    ee = eex;
+                } catch (RuntimeException rex) {
+                    ee = new ExecutionException(rex);
+                }
+                //任务失败，不再等待对冲延迟，立即启动下一个任务
+                if (ntasks > 0) {
+                    startTimes[futures.size()] = System.nanoTime();
+                    futures.add(ecs.submit(it.next()));
+                    --ntasks;
+                    ++active;
+                }
+            }
+            if (ee == null) {
+                ee = new ExecutionException();
+            }
+            throw ee;
+        } finally {
+            cancelAll(futures);
+        }
+    }
+
+    /**
+     * 按引用查找future在容器中的下标
+     */
+    private static <T> int indexOf(List<Future<T>> futures, Future<T> f) {
+        for (int i = 0, size = futures.size(); i < size; i++) {
+            if (futures.get(i) == f) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     @Override
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
             throws InterruptedException{
@@ -279,6 +463,71 @@ public abstract class AbstractExecutorService implements ExecutorService {
         }
     }
 
+    /**
+     * 与{@link #invokeAll(Collection)}相同，但当{@code callerRuns}为true时，调用线程不会空等：
+     * 最后一个任务直接在调用线程上运行（不提交给线程池），之后调用线程从后往前
+     * 执行同一批次中还没有被工作线程取走的任务，工作线程从队列头部取任务，
+     * 两者在中间汇合，然后再等待其余正在执行的任务。
+     *
+     * 这依赖于{@link FutureTask#run()}只会执行一次：被调用线程抢先执行的任务，
+     * 工作线程之后从队列中取到时直接返回。newTaskFor返回的不是FutureTask时，调用线程不参与执行。
+     *
+     * @param tasks 任务集合
+     * @param callerRuns true:调用线程参与执行同一批次的任务
+     * @return 与任务顺序一致的future列表，所有任务都已完成
+     * @throws InterruptedException 等待时被中断，未完成的任务会被取消
+     */
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, boolean callerRuns)
+            throws InterruptedException {
+        if (!callerRuns) {
+            return invokeAll(tasks);
+        }
+        if (tasks == null) {
+            throw new NullPointerException();
+        }
+        ArrayList<Future<T>> futures = new ArrayList<>(tasks.size());
+        boolean done = false;
+        try {
+            for (Callable<T> t : tasks) {
+                futures.add(newTaskFor(t));
+            }
+            int size = futures.size();
+            //除最后一个任务外都交给线程池，最后一个留给调用线程
+            for (int i = 0; i < size - 1; i++) {
+                execute((Runnable) futures.get(i));
+            }
+            //从后往前执行还没有开始的任务；已经被工作线程抢到的任务，run()会直接返回
+            for (int i = size - 1; i >= 0; i--) {
+                Future<T> f = futures.get(i);
+                if (f instanceof FutureTask) {
+                    if (!f.isDone()) {
+                        ((FutureTask<T>) f).run();
+                    }
+                } else if (i == size - 1) {
+                    //不能保证重复执行是安全的任务，最后一个仍然交给线程池
+                    execute((Runnable) f);
+                }
+            }
+            //等待其余正在执行的任务
+            for (int i = 0; i < size; i++) {
+                Future<T> f = futures.get(i);
+                if (!f.isDone()) {
+                    try {
+                        f.get();
+                    }catch (CancellationException ignore){
+                    }catch (ExecutionException ignore){
+                    }
+                }
+            }
+            done = true;
+            return futures;
+        }finally {
+            if (!done) {
+                cancelAll(futures);
+            }
+        }
+    }
+
     @Override
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
             throws InterruptedException{
@@ -292,6 +541,8 @@ public abstract class AbstractExecutorService implements ExecutorService {
         ArrayList<Future<T>> futures = new ArrayList<>(tasks.size());
         //标识所有的任务为执行完毕
         boolean done = false;
+        //共享时间轮上的超时句柄
+        TimeoutService.Timeout expiry = null;
         try {
             //遍历任务
             for (Callable<T> task : tasks) {
@@ -313,12 +564,33 @@ public abstract class AbstractExecutorService implements ExecutorService {
                     return futures;
                 }
             }
+            //剩余时间足够长时，由共享时间轮在到期时统一取消所有任务并唤醒等待的调用者，
+            //调用者不再需要为每个future做限时等待
+            if (TimeoutService.useShared(nanos)) {
+                expiry = TimeoutService.shared().newTimeout(
+                        () -> cancelAll(futures), nanos, TimeUnit.NANOSECONDS);
+            }
             //在次遍历容器。走到这里说名任务都已经执行了。
             for (int i = 0; i < size; i++) {
                 //根据当前下标获取future
                 Future<T> f = futures.get(i);
                 //判断任务是否执行完毕
                 if (!f.isDone()) {
+                    if (expiry != null) {
+                        try {
+                            //到期时时间轮会取消该任务，get随之返回
+                            f.get();
+                        }catch (CancellationException ignore){
+
+                        }catch (ExecutionException ignore){
+
+                        }
+                        if (expiry.isExpired()) {
+                            //时间到了，任务已经被时间轮取消
+                            return futures;
+                        }
+                        continue;
+                    }
                     //说明任务还在执行
                     //判断时间是否到期
                     if (nanos <= 0L) {
@@ -348,15 +620,26 @@ public abstract class AbstractExecutorService implements ExecutorService {
             
             
         }finally {
+            if (expiry != null) {
+                expiry.cancel();
+            }
             //判断是否正常结束
             if (!done) {
                 //说明任务不是正常结束的，是超时结束的，这里需要中断正在执行的任务。
                 // 在容器中不能一个一个的去判断每个任务是否还在执行，这里采取的是全部取消，方式简单粗暴。
                 // 因为已经结束的任务，取消操作时无效的
-                for (int i = 0, size = futures.size(); i < size; i++) {
-                    futures.get(i).cancel(true);
-                }
+                cancelAll(futures);
             }
         }
     }
+
+    /**
+     * 取消容器中所有的任务，已经结束的任务取消操作无效
+     * @param futures 任务容器
+     */
+    private static <T> void cancelAll(List<Future<T>> futures) {
+        for (int i = 0, size = futures.size(); i < size; i++) {
+            futures.get(i).cancel(true);
+        }
+    }
 }
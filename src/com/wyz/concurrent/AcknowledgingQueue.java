@@ -0,0 +1,20 @@
+package com.wyz.concurrent;
+
+/**
+ * @ClassName AcknowledgingQueue
+ * @Description 取出的元素处理完成后需要确认的队列，例如JournaledBlockingQueue
+ * @Author wangyuezheng
+ * @Date 2026/10/19 18:10
+ */
+
+public interface AcknowledgingQueue {
+
+    /**
+     * 确认一个已经取出的元素已经处理完。
+     * ThreadPoolExecutor的workQueue实现了这个接口时，任务运行完并且afterExecute正常返回后，
+     * runWorker自动调用ack；beforeExecute或者afterExecute抛出异常的任务不会被确认。
+     * @param e 从这个队列取出的元素
+     * @return false:元素不是从这个队列取出的，或者已经确认过
+     */
+    boolean ack(Object e);
+}
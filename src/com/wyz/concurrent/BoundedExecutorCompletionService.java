@@ -0,0 +1,217 @@
+package com.wyz.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName BoundedExecutorCompletionService
+ * @Description 限制未消费任务数量的ExecutorCompletionService，由消费者控制提交速度
+ * @Author wangyuezheng
+ * @Date 2026/10/18 11:20
+ */
+
+public class BoundedExecutorCompletionService<V> implements CompletionService<V> {
+
+    /*
+     * 每个提交的任务占用一个许可，直到它的Future被take/poll/drainCompleted取走才归还。
+     * 因此 "执行中 + 已完成但未消费" 的任务数永远不超过limit，
+     * 消费者跟不上时，生产者在submit处阻塞（或被拒绝），已完成的结果不会在堆上无限堆积。
+     *
+     * 注意：如果执行器静默丢弃了任务（例如DiscardPolicy），该任务永远不会完成，它占用的许可也不会归还。
+     */
+
+    private final ExecutorCompletionService<V> delegate;
+
+    /**
+     * 剩余可以提交的任务数
+     */
+    private final Semaphore permits;
+
+    /**
+     * 执行中 + 已完成但未消费的任务数上限
+     */
+    private final int limit;
+
+    /**
+     * true:达到上限时submit阻塞；false:直接拒绝
+     */
+    private final boolean blockWhenFull;
+
+    /**
+     * 因为达到上限而被拒绝的提交次数
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * 因为达到上限而阻塞过的提交次数
+     */
+    private final AtomicLong blockedCount = new AtomicLong();
+
+    /**
+     * 创建一个达到上限时阻塞提交者的BoundedExecutorCompletionService
+     * @param executor 执行任务的执行器
+     * @param limit 执行中 + 已完成但未消费的任务数上限
+     */
+    public BoundedExecutorCompletionService(Executor executor, int limit) {
+        this(executor, limit, true);
+    }
+
+    /**
+     * @param executor 执行任务的执行器
+     * @param limit 执行中 + 已完成但未消费的任务数上限
+     * @param blockWhenFull true:达到上限时submit阻塞，直到消费者取走结果；
+     *                      false:达到上限时submit抛出RejectedExecutionException
+     * @throws NullPointerException 如果 executor 为null
+     * @throws IllegalArgumentException 如果 limit 小于等于0
+     */
+    public BoundedExecutorCompletionService(Executor executor, int limit, boolean blockWhenFull) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.delegate = new ExecutorCompletionService<V>(executor);
+        this.permits = new Semaphore(limit);
+        this.limit = limit;
+        this.blockWhenFull = blockWhenFull;
+    }
+
+    /**
+     * 提交任务，达到上限时阻塞或拒绝。
+     * @throws RejectedExecutionException 达到上限且不阻塞，或者阻塞时被中断（中断状态会被保留），
+     *         或者执行器拒绝了任务
+     */
+    @Override
+    public Future<V> submit(Callable<V> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        acquirePermit();
+        try {
+            return delegate.submit(task);
+        } catch (RuntimeException | Error ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * 提交任务，达到上限时阻塞或拒绝。
+     * @throws RejectedExecutionException 达到上限且不阻塞，或者阻塞时被中断（中断状态会被保留），
+     *         或者执行器拒绝了任务
+     */
+    @Override
+    public Future<V> submit(Runnable task, V result) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        acquirePermit();
+        try {
+            return delegate.submit(task, result);
+        } catch (RuntimeException | Error ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Future<V> take() throws InterruptedException {
+        Future<V> f = delegate.take();
+        permits.release();
+        return f;
+    }
+
+    @Override
+    public Future<V> poll() {
+        Future<V> f = delegate.poll();
+        if (f != null) {
+            permits.release();
+        }
+        return f;
+    }
+
+    @Override
+    public Future<V> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Future<V> f = delegate.poll(timeout, unit);
+        if (f != null) {
+            permits.release();
+        }
+        return f;
+    }
+
+    /**
+     * 按完成顺序取走所有已经完成的任务，不会阻塞。
+     * @param c 接收已完成任务的集合
+     * @return 取走的任务数
+     */
+    public int drainCompleted(Collection<? super Future<V>> c) {
+        int n = delegate.drainCompleted(c);
+        if (n > 0) {
+            permits.release(n);
+        }
+        return n;
+    }
+
+    /**
+     * 获取一个许可，达到上限时按配置阻塞或拒绝
+     */
+    private void acquirePermit() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (!blockWhenFull) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Completion limit " + limit + " reached");
+        }
+        blockedCount.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException ie) {
+            //submit不能抛出InterruptedException，恢复中断状态后拒绝
+            Thread.currentThread().interrupt();
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("Interrupted while waiting for completion capacity", ie);
+        }
+    }
+
+    /*
+     * 统计数据
+     */
+
+    /**
+     * @return 执行中 + 已完成但未消费的任务数上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 当前执行中 + 已完成但未消费的任务数（近似值）
+     */
+    public int getOutstandingCount() {
+        return limit - permits.availablePermits();
+    }
+
+    /**
+     * @return 因为达到上限（或等待时被中断）而被拒绝的提交次数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return 因为达到上限而阻塞过的提交次数
+     */
+    public long getBlockedSubmitCount() {
+        return blockedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[limit = " + limit +
+                ", outstanding = " + getOutstandingCount() +
+                ", blocked submits = " + blockedCount.get() +
+                ", rejected = " + rejectedCount.get() + "]";
+    }
+}
@@ -0,0 +1,204 @@
+package com.wyz.concurrent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @ClassName CompletionIterator
+ * @Description 按完成顺序遍历CompletionService中任务结果的迭代器/流
+ * @Author wangyuezheng
+ * @Date 2026/10/18 11:55
+ */
+
+public class CompletionIterator<V> implements Iterator<V>, AutoCloseable {
+
+    /*
+     * 迭代器记录了所有还没有被消费的Future，每次next()从CompletionService中take一个已完成的任务，
+     * 所以下游处理第一个结果时，其余任务仍在执行。close()（包括流的close和提前失败）
+     * 会取消所有还未消费的任务。
+     *
+     * 迭代器要求独占该CompletionService：不属于本迭代器的已完成任务会被取走并丢弃。
+     * 迭代器本身不是线程安全的，通常只由一个线程消费。
+     */
+
+    /**
+     * 任务失败（抛出异常或被取消）时的处理策略
+     */
+    public enum FailurePolicy {
+        /**
+         * 取消剩余的任务，并抛出{@link CompletionException}（原因为任务抛出的异常），
+         * 被取消的任务抛出{@link CancellationException}
+         */
+        RETHROW,
+        /**
+         * 跳过失败或被取消的任务，继续返回后续结果
+         */
+        SKIP
+    }
+
+    private final CompletionService<V> service;
+    private final FailurePolicy policy;
+
+    /**
+     * 还没有被消费的任务
+     */
+    private final Set<Future<V>> outstanding =
+            Collections.newSetFromMap(new IdentityHashMap<Future<V>, Boolean>());
+
+    /**
+     * 已经取出但还没有被next()返回的结果
+     */
+    private V nextValue;
+    private boolean hasNextValue;
+    private boolean closed;
+
+    /**
+     * @param service 任务已经提交到的CompletionService，由本迭代器独占
+     * @param submitted 提交时返回的Future
+     * @param policy 任务失败时的处理策略
+     */
+    public CompletionIterator(CompletionService<V> service,
+                              Collection<? extends Future<V>> submitted,
+                              FailurePolicy policy) {
+        if (service == null || submitted == null || policy == null) {
+            throw new NullPointerException();
+        }
+        this.service = service;
+        this.policy = policy;
+        outstanding.addAll(submitted);
+    }
+
+    /**
+     * 把所有任务提交到给定的CompletionService，返回按完成顺序遍历结果的迭代器。
+     * 如果提交中途被拒绝，已经提交的任务会被取消。
+     *
+     * @param service 执行任务的CompletionService，由返回的迭代器独占
+     * @param tasks 任务
+     * @param policy 任务失败时的处理策略
+     * @return 按完成顺序遍历结果的迭代器
+     */
+    public static <V> CompletionIterator<V> submitAll(CompletionService<V> service,
+                                                      Collection<? extends Callable<V>> tasks,
+                                                      FailurePolicy policy) {
+        if (service == null || tasks == null || policy == null) {
+            throw new NullPointerException();
+        }
+        CompletionIterator<V> it =
+                new CompletionIterator<V>(service, Collections.<Future<V>>emptyList(), policy);
+        try {
+            for (Callable<V> task : tasks) {
+                it.outstanding.add(service.submit(task));
+            }
+        } catch (RuntimeException | Error ex) {
+            it.close();
+            throw ex;
+        }
+        return it;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNextValue || advance();
+    }
+
+    @Override
+    public V next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        V v = nextValue;
+        nextValue = null;
+        hasNextValue = false;
+        return v;
+    }
+
+    /**
+     * @return 还没有被消费的任务数
+     */
+    public int remaining() {
+        return outstanding.size() + (hasNextValue ? 1 : 0);
+    }
+
+    /**
+     * 取消所有还没有被消费的任务。之后hasNext()返回false。
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<V> f : outstanding) {
+            f.cancel(true);
+        }
+        outstanding.clear();
+        nextValue = null;
+        hasNextValue = false;
+    }
+
+    /**
+     * 返回按完成顺序产生结果的顺序流，关闭流时取消还未消费的任务。
+     * 建议在 try-with-resources 中使用，或者在短路操作（如findFirst）之后关闭流。
+     *
+     * @return 结果流
+     */
+    public Stream<V> stream() {
+        //跳过失败的任务、或者任务被取消时，结果数少于remaining()，不能报告SIZED
+        Spliterator<V> spliterator =
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * 取出下一个成功的结果
+     * @return 是否取到了结果
+     */
+    private boolean advance() {
+        while (!closed && !outstanding.isEmpty()) {
+            Future<V> f;
+            try {
+                f = service.take();
+            } catch (InterruptedException ie) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ie);
+            }
+            //不属于本迭代器的任务
+            if (!outstanding.remove(f)) {
+                continue;
+            }
+            try {
+                nextValue = f.get();
+                hasNextValue = true;
+                return true;
+            } catch (ExecutionException ee) {
+                if (policy == FailurePolicy.RETHROW) {
+                    close();
+                    throw new CompletionException(ee.getCause());
+                }
+            } catch (CancellationException ce) {
+                if (policy == FailurePolicy.RETHROW) {
+                    close();
+                    throw ce;
+                }
+            } catch (InterruptedException ie) {
+                //任务已经完成，get不会阻塞，不应该发生
+                close();
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ie);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,440 @@
+package com.wyz.concurrent;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName DistributedExecutorService
+ * @Description 把可序列化的任务通过NIO发送到多个DistributedWorkerNode执行的ExecutorService
+ * @Author wangyuezheng
+ * @Date 2026/10/18 21:10
+ */
+
+public class DistributedExecutorService extends AbstractExecutorService {
+
+    /*
+     * 每个工作节点一条TCP连接，所有连接由一个NIO线程处理（FramedConnection.Loop）。
+     * submit时在调用线程上序列化任务，选出未完成任务最少的节点（相同时轮流），
+     * 分配id后把SUBMIT帧放入该连接的发送队列立即返回，不等待前一个任务的结果（流水线）。
+     * 节点回传的RESULT/FAILURE帧按id找到对应的RemoteTask并完成它。
+     *
+     * RemoteTask是FutureTask的子类，只作为结果的容器，不在本地运行：run()什么也不做，
+     * 所以invokeAll(tasks, true)不会让调用线程在本地再执行一遍，这里直接退化为invokeAll(tasks)。
+     * ExecutorCompletionService（invokeAny、invokeHedged也使用它）交给execute的是包装了RemoteTask的
+     * QueueingFuture，它不能序列化：execute发送里面的RemoteTask，RemoteTask完成时再完成包装，
+     * 由包装把结果放入完成队列。其他不能序列化的包装仍然被拒绝。
+     * 取消时向节点发送CANCEL帧（尽力而为，任务可能已经执行完）。
+     * 节点断开时，该节点上所有未完成的任务以IOException失败，节点从列表中移除，
+     * 之后的任务只分配给剩下的节点；任务不会被自动重新提交，因为它们可能已经执行过。
+     *
+     * submit(Runnable)要求Runnable本身可序列化，它在节点上执行，返回值在本地保存。
+     * 任务不能序列化时submit抛出RejectedExecutionException。
+     *
+     * shutdown之后不再接受任务，所有已提交的任务完成后进入终止状态并关闭连接。
+     * shutdownNow取消所有未完成的任务；任务提交时已经发送出去了，所以返回空列表。
+     */
+
+    private final FramedConnection.Loop loop;
+    private final CopyOnWriteArrayList<Node> nodes = new CopyOnWriteArrayList<Node>();
+    /** 已发送、还没有完成的任务 */
+    private final ConcurrentHashMap<Long, RemoteTask<?>> pending = new ConcurrentHashMap<Long, RemoteTask<?>>();
+    private final AtomicLong ids = new AtomicLong();
+    /** 未完成任务数相同时的轮转起点 */
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    private volatile boolean shutdown;
+    /** guarded by mainLock */
+    private boolean terminated;
+    private final ReentrantLock mainLock = new ReentrantLock();
+    private final Condition termination = mainLock.newCondition();
+
+    /**
+     * 连接给定的工作节点
+     * @param workers 工作节点的地址
+     * @throws IOException 如果某个节点连接失败，已经建立的连接会被关闭
+     */
+    public DistributedExecutorService(InetSocketAddress... workers) throws IOException {
+        this.loop = new FramedConnection.Loop("distributed-executor-io");
+        try {
+            for (InetSocketAddress worker : workers) {
+                addNode(worker);
+            }
+        } catch (IOException | RuntimeException ex) {
+            loop.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * 连接一个新的工作节点，之后提交的任务可以分配给它
+     * @param address 节点地址
+     * @throws IOException 如果连接失败
+     * @throws RejectedExecutionException 如果已经shutdown
+     */
+    public void addNode(InetSocketAddress address) throws IOException {
+        if (shutdown) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        SocketChannel channel = SocketChannel.open(address);
+        Node node = new Node(address);
+        try {
+            node.connection = FramedConnection.register(loop, channel, node);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * 一个工作节点的连接
+     */
+    private final class Node implements FramedConnection.Handler {
+        final InetSocketAddress address;
+        volatile FramedConnection connection;
+        /** 已分配给这个节点、还没有完成的任务数 */
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile boolean alive = true;
+
+        Node(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void onFrame(FramedConnection connection, byte type, long id, byte[] payload) {
+            RemoteTask<?> task = pending.get(id);
+            if (task == null) {
+                //已经取消
+                return;
+            }
+            Object value;
+            try {
+                value = FramedConnection.deserialize(payload);
+            } catch (IOException | ClassNotFoundException ex) {
+                task.fail(ex);
+                return;
+            }
+            if (type == FramedConnection.RESULT) {
+                task.complete(value);
+            } else if (value instanceof Throwable) {
+                task.fail((Throwable) value);
+            } else {
+                task.fail(new IOException("malformed failure from " + address));
+            }
+        }
+
+        @Override
+        public void onClose(FramedConnection connection, IOException cause) {
+            alive = false;
+            nodes.remove(this);
+            IOException ex = new IOException("lost connection to worker " + address, cause);
+            for (RemoteTask<?> task : pending.values()) {
+                if (task.node == this) {
+                    task.fail(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 节点上执行的任务在本地的Future
+     */
+    private final class RemoteTask<V> extends FutureTask<V> {
+        final Callable<V> callable;
+        /** submit(Runnable, T)的结果，节点上只执行Runnable */
+        private final boolean localResult;
+        private final V result;
+        volatile Node node;
+        volatile long id;
+        /** 提交时外面的ExecutorCompletionService包装，本任务完成后完成它 */
+        volatile FutureTask<?> wrapper;
+
+        RemoteTask(Callable<V> callable) {
+            super(callable);
+            this.callable = callable;
+            this.localResult = false;
+            this.result = null;
+        }
+
+        RemoteTask(Runnable runnable, V result) {
+            this(new RunnableCallable<V>(runnable), result);
+        }
+
+        private RemoteTask(RunnableCallable<V> callable, V result) {
+            super(callable);
+            this.callable = callable;
+            this.localResult = true;
+            this.result = result;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            set(localResult ? result : (V) value);
+        }
+
+        void fail(Throwable t) {
+            setException(t);
+        }
+
+        /**
+         * 任务只在节点上执行，结果由complete/fail设置，本地运行什么也不做
+         */
+        @Override
+        public void run() {
+        }
+
+        @Override
+        protected boolean runAndReset() {
+            return false;
+        }
+
+        @Override
+        protected void done() {
+            Node n = node;
+            //从pending中删除成功的一方负责清理：还没有发布到pending时由execute清理
+            if (n != null && pending.remove(id, this)) {
+                n.outstanding.decrementAndGet();
+                if (isCancelled()) {
+                    n.connection.send(FramedConnection.CANCEL, id, FramedConnection.EMPTY);
+                }
+                if (shutdown && pending.isEmpty()) {
+                    tryTerminate();
+                }
+            }
+            completeWrapper();
+        }
+
+        void completeWrapper() {
+            FutureTask<?> w = wrapper;
+            if (w != null) {
+                //包装的done()把本任务放入完成队列
+                w.set(null);
+            }
+        }
+    }
+
+    /**
+     * 在节点上执行Runnable的Callable，结果由本地的RemoteTask提供
+     */
+    private static final class RunnableCallable<T> implements Callable<T>, Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Runnable task;
+
+        RunnableCallable(Runnable task) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            this.task = task;
+        }
+
+        @Override
+        public T call() {
+            task.run();
+            return null;
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new RemoteTask<T>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new RemoteTask<T>(callable);
+    }
+
+    /**
+     * 任务只在节点上执行，调用线程不参与，等同于{@link #invokeAll(Collection)}
+     */
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, boolean callerRuns)
+            throws InterruptedException {
+        return invokeAll(tasks);
+    }
+
+    /**
+     * 把任务发送到未完成任务最少的节点。command必须可序列化，或者是submit创建的任务，
+     * 或者是ExecutorCompletionService包装的submit创建的任务。
+     * @throws RejectedExecutionException 如果已经shutdown、没有可用的节点，或者任务不能序列化
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        RemoteTask<?> task;
+        FutureTask<?> wrapper = null;
+        if (command instanceof RemoteTask) {
+            task = (RemoteTask<?>) command;
+        } else if (command instanceof ExecutorCompletionService<?>.QueueingFuture
+                && ((ExecutorCompletionService<?>.QueueingFuture) command).task() instanceof RemoteTask) {
+            wrapper = (FutureTask<?>) command;
+            task = (RemoteTask<?>) ((ExecutorCompletionService<?>.QueueingFuture) command).task();
+        } else {
+            task = (RemoteTask<?>) newTaskFor(command, null);
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        byte[] payload;
+        try {
+            payload = FramedConnection.serialize(task.callable);
+        } catch (IOException ex) {
+            throw new RejectedExecutionException("task is not serializable", ex);
+        }
+        Node node = choose();
+        if (node == null) {
+            throw new RejectedExecutionException("no live worker nodes");
+        }
+        long id = ids.incrementAndGet();
+        //node要在发布到pending之前设置，shutdownNow从pending中取消任务时done()依赖它做清理
+        task.id = id;
+        task.node = node;
+        task.wrapper = wrapper;
+        node.outstanding.incrementAndGet();
+        pending.put(id, task);
+        if (task.isDone()) {
+            //发布之前就被取消了，done()没有看到pending中的这一项，由这里清理
+            if (pending.remove(id, task)) {
+                node.outstanding.decrementAndGet();
+                if (shutdown && pending.isEmpty()) {
+                    tryTerminate();
+                }
+            }
+            task.completeWrapper();
+            return;
+        }
+        node.connection.send(FramedConnection.SUBMIT, id, payload);
+        if (!node.alive) {
+            //节点在分配之后断开，onClose可能没有看到这个任务
+            task.fail(new IOException("lost connection to worker " + node.address));
+        }
+    }
+
+    /**
+     * @return 未完成任务最少的存活节点，没有时返回null
+     */
+    private Node choose() {
+        Object[] snapshot = nodes.toArray();
+        int n = snapshot.length;
+        if (n == 0) {
+            return null;
+        }
+        int start = (rotation.getAndIncrement() & Integer.MAX_VALUE) % n;
+        Node best = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Node node = (Node) snapshot[(start + i) % n];
+            int load = node.outstanding.get();
+            if (node.alive && load < min) {
+                best = node;
+                min = load;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 每个存活节点上未完成的任务数
+     */
+    public Map<InetSocketAddress, Integer> outstandingByNode() {
+        Map<InetSocketAddress, Integer> m = new LinkedHashMap<InetSocketAddress, Integer>();
+        for (Node node : nodes) {
+            m.put(node.address, node.outstanding.get());
+        }
+        return m;
+    }
+
+    /**
+     * @return 存活的节点数
+     */
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    private void tryTerminate() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (terminated || !shutdown || !pending.isEmpty()) {
+                return;
+            }
+            terminated = true;
+            //在已经排队的发送（例如CANCEL帧）之后关闭
+            loop.close();
+            termination.signalAll();
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        tryTerminate();
+    }
+
+    /**
+     * 取消所有未完成的任务
+     * @return 空列表，任务在提交时已经发送到节点
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        for (RemoteTask<?> task : pending.values()) {
+            task.cancel(true);
+        }
+        tryTerminate();
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            return terminated;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            while (!terminated) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = termination.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.wyz.concurrent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName DistributedWorkerNode
+ * @Description DistributedExecutorService的工作节点：接收序列化的Callable，在本地线程池执行并回传结果
+ * @Author wangyuezheng
+ * @Date 2026/10/18 20:50
+ */
+
+public class DistributedWorkerNode implements Closeable {
+
+    /*
+     * 节点监听一个TCP端口，每个客户端连接对应一个Session。
+     * SUBMIT帧在Loop线程上只创建Job并交给executor，反序列化和执行都在executor的线程上进行；
+     * Job完成时（done）把结果或异常序列化后用RESULT/FAILURE帧发回，与任务id对应。
+     * CANCEL帧取消对应的Job（可中断），被取消的Job不回传任何结果。连接断开时取消该连接上的所有Job。
+     *
+     * 反序列化会执行任意的readObject，只能在可信网络中使用；任务的类必须在节点的classpath上。
+     */
+
+    private final FramedConnection.Loop loop;
+    private final ServerSocketChannel server;
+    private final ExecutorService executor;
+    /** executor是否由节点创建，关闭时一起关闭 */
+    private final boolean ownsExecutor;
+
+    /**
+     * 在给定端口上启动节点，使用固定threads个线程的线程池执行任务
+     * @param port 监听的端口，0表示自动分配
+     * @param threads 执行任务的线程数
+     * @throws IOException 如果端口无法绑定
+     */
+    public DistributedWorkerNode(int port, int threads) throws IOException {
+        this(new InetSocketAddress(port),
+                new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>()), true);
+    }
+
+    /**
+     * @param bindAddress 监听的地址，端口为0表示自动分配
+     * @param executor 执行任务的线程池，节点关闭时不会关闭它
+     * @throws IOException 如果地址无法绑定
+     */
+    public DistributedWorkerNode(InetSocketAddress bindAddress, ExecutorService executor) throws IOException {
+        this(bindAddress, executor, false);
+    }
+
+    private DistributedWorkerNode(InetSocketAddress bindAddress, ExecutorService executor,
+                                  boolean ownsExecutor) throws IOException {
+        if (bindAddress == null || executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(bindAddress);
+            server.configureBlocking(false);
+            this.loop = new FramedConnection.Loop("distributed-worker-" + server.socket().getLocalPort());
+        } catch (IOException ex) {
+            server.close();
+            throw ex;
+        }
+        FramedConnection.Acceptor acceptor = this::accept;
+        loop.execute(() -> {
+            try {
+                server.register(loop.selector, SelectionKey.OP_ACCEPT, acceptor);
+            } catch (IOException ignore) {
+                //节点已经关闭
+            }
+        });
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            FramedConnection.register(loop, channel, new Session());
+        }
+    }
+
+    /**
+     * @return 节点实际监听的地址
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * 停止监听并断开所有连接，正在执行的任务被取消。由节点创建的线程池一起关闭。
+     */
+    @Override
+    public void close() {
+        loop.close();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 一个客户端连接
+     */
+    private final class Session implements FramedConnection.Handler {
+        private final ConcurrentHashMap<Long, Job> running = new ConcurrentHashMap<Long, Job>();
+
+        @Override
+        public void onFrame(FramedConnection connection, byte type, long id, byte[] payload) {
+            if (type == FramedConnection.SUBMIT) {
+                Job job = new Job(this, connection, id, payload);
+                running.put(id, job);
+                try {
+                    executor.execute(job);
+                } catch (RejectedExecutionException ex) {
+                    job.reject(ex);
+                }
+            } else if (type == FramedConnection.CANCEL) {
+                Job job = running.remove(id);
+                if (job != null) {
+                    job.cancel(true);
+                }
+            }
+        }
+
+        @Override
+        public void onClose(FramedConnection connection, IOException cause) {
+            for (Job job : running.values()) {
+                job.cancel(true);
+            }
+            running.clear();
+        }
+    }
+
+    /**
+     * 在executor上反序列化并执行一个任务，完成时回传结果
+     */
+    private static final class Job extends FutureTask<Object> {
+        private final Session session;
+        private final FramedConnection connection;
+        private final long id;
+
+        Job(Session session, FramedConnection connection, long id, byte[] payload) {
+            super(() -> ((Callable<?>) FramedConnection.deserialize(payload)).call());
+            this.session = session;
+            this.connection = connection;
+            this.id = id;
+        }
+
+        void reject(RejectedExecutionException ex) {
+            setException(ex);
+        }
+
+        @Override
+        protected void done() {
+            session.running.remove(id);
+            if (isCancelled()) {
+                return;
+            }
+            byte type;
+            byte[] payload;
+            try {
+                Object value = get();
+                type = FramedConnection.RESULT;
+                payload = FramedConnection.serialize(value);
+            } catch (ExecutionException ex) {
+                type = FramedConnection.FAILURE;
+                payload = serializeFailure(ex.getCause());
+            } catch (IOException ex) {
+                //结果不能序列化
+                type = FramedConnection.FAILURE;
+                payload = serializeFailure(ex);
+            } catch (InterruptedException ex) {
+                //已经完成，get不会等待
+                Thread.currentThread().interrupt();
+                return;
+            }
+            connection.send(type, id, payload);
+        }
+
+        /**
+         * 异常本身可能引用不能序列化的对象，此时退化为只保留描述的异常
+         */
+        private static byte[] serializeFailure(Throwable t) {
+            try {
+                return FramedConnection.serialize(t);
+            } catch (IOException ex) {
+                try {
+                    return FramedConnection.serialize(new NotSerializableException(String.valueOf(t)));
+                } catch (IOException impossible) {
+                    return FramedConnection.EMPTY;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName DoubleFutureTask
+ * @Description 结果保存在double字段中的FutureTask，执行和读取结果都不装箱
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:50
+ */
+
+public class DoubleFutureTask extends FutureTask<Double> implements DoubleFuture {
+
+    /*
+     * FutureTask的callable是私有的Compute：call()把结果写入value后返回null，FutureTask随后set(null)。
+     * value在状态从NEW变为COMPLETING的CAS之前写入，读取方先读到完成状态再读value，
+     * 与outcome有相同的可见性保证。任务本身不实现Callable，外部无法绕过run()直接计算。
+     *
+     * 通过Future<Double>的get()读取时才会装箱。
+     * Int/Long/DoubleFutureTask只有结果的类型不同，刻意保持相同的结构，不抽取公共父类。
+     */
+
+    /**
+     * 执行计算任务并保存结果
+     */
+    private static final class Compute implements Callable<Double> {
+        /** 计算任务，运行后置为null */
+        private DoubleCallable task;
+
+        /** 计算结果，由FutureTask的state的读写保证可见性 */
+        private double value;
+
+        Compute(DoubleCallable task) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            this.task = task;
+        }
+
+        @Override
+        public Double call() throws Exception {
+            DoubleCallable t = task;
+            try {
+                value = t.callAsDouble();
+            } finally {
+                task = null;
+            }
+            return null;
+        }
+    }
+
+    private final Compute compute;
+
+    /**
+     * @param task 计算任务
+     * @throws NullPointerException 如果 task 为null
+     */
+    public DoubleFutureTask(DoubleCallable task) {
+        this(new Compute(task));
+    }
+
+    private DoubleFutureTask(Compute compute) {
+        super(compute);
+        this.compute = compute;
+    }
+
+    @Override
+    public double getAsDouble() throws InterruptedException, ExecutionException {
+        super.get();
+        return compute.value;
+    }
+
+    @Override
+    public double getAsDouble(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        super.get(timeout, unit);
+        return compute.value;
+    }
+
+    @Override
+    public Double get() throws InterruptedException, ExecutionException {
+        return getAsDouble();
+    }
+
+    @Override
+    public Double get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return getAsDouble(timeout, unit);
+    }
+}
@@ -2,6 +2,9 @@ package com.wyz.concurrent;
 
 import com.sun.istack.internal.NotNull;
 
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 /**
  * @ClassName Executor
  * @Description //TODO
@@ -18,4 +21,36 @@ public interface Executor {
      */
     void execute(@NotNull Runnable command);
 
+    /**
+     * 在将来的某个时候执行 {@code action.accept(arg)}。
+     * 与 {@code execute(() -> action.accept(arg))} 等价，但实现可以把action和arg直接保存在
+     * 可复用的任务对象中，避免每次提交都创建一个捕获了参数的lambda。
+     * 默认实现就是包装成lambda后调用{@link #execute(Runnable)}。
+     * @param action 要执行的操作，最好是不捕获变量的lambda或方法引用
+     * @param arg 操作的参数
+     * @param <T> 参数类型
+     */
+    default <T> void execute(@NotNull Consumer<? super T> action, T arg) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        execute(() -> action.accept(arg));
+    }
+
+    /**
+     * 在将来的某个时候执行 {@code action.accept(arg1, arg2)}。
+     * 参见{@link #execute(Consumer, Object)}。
+     * @param action 要执行的操作，最好是不捕获变量的lambda或方法引用
+     * @param arg1 操作的第一个参数
+     * @param arg2 操作的第二个参数
+     * @param <T> 第一个参数类型
+     * @param <U> 第二个参数类型
+     */
+    default <T, U> void execute(@NotNull BiConsumer<? super T, ? super U> action, T arg1, U arg2) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        execute(() -> action.accept(arg1, arg2));
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.wyz.concurrent;
 
+import java.util.Collection;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
@@ -18,7 +19,7 @@ public class ExecutorCompletionService<V> implements CompletionService<V> {
     /**
      * FutureTask extension to enqueue upon completion
      */
-    private class QueueingFuture extends FutureTask<Void> {
+    class QueueingFuture extends FutureTask<Void> {
         QueueingFuture(RunnableFuture<V> task) {
             super(task, null);
             this.task = task;
@@ -29,6 +30,14 @@ public class ExecutorCompletionService<V> implements CompletionService<V> {
             completionQueue.add(task);
         }
 
+        /**
+         * 被包装的任务。不在本地运行任务的执行器（DistributedExecutorService）执行它，
+         * 完成后再完成这个包装
+         */
+        Future<V> task() {
+            return task;
+        }
+
         private final Future<V> task;
     }
 
@@ -113,4 +122,19 @@ public class ExecutorCompletionService<V> implements CompletionService<V> {
             throws java.lang.InterruptedException {
         return completionQueue.poll(timeout, unit);
     }
+
+    /**
+     * Removes all currently completed Futures, in completion order,
+     * and adds them to the given collection without waiting.
+     *
+     * @param c the collection to transfer completed Futures into
+     * @return the number of Futures transferred
+     * @throws NullPointerException if the collection is null
+     */
+    public int drainCompleted(Collection<? super Future<V>> c) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        return completionQueue.drainTo(c);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+package com.wyz.concurrent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @ClassName FramedConnection
+ * @Description DistributedExecutorService和DistributedWorkerNode共用的非阻塞分帧连接和NIO事件循环
+ * @Author wangyuezheng
+ * @Date 2026/10/18 20:30
+ */
+
+final class FramedConnection {
+
+    /*
+     * 帧格式：[int 长度][byte 类型][long 任务id][载荷]，长度包括类型、id和载荷。
+     * 一个连接上可以同时有任意多个未完成的任务（流水线），结果按完成顺序返回，用id对应。
+     *
+     * 所有IO都在Loop线程上完成。send可以在任何线程调用：帧放入无锁的writes队列，
+     * 如果还没有安排刷写就向Loop提交一次flush，Loop线程把队列中的帧用一次gathering write
+     * 写出（多个帧合并成一次系统调用）；socket缓冲区满时注册OP_WRITE，可写后继续。
+     * 读到的数据在readBuffer中累积，凑够完整的帧才交给Handler，Handler在Loop线程上被调用。
+     */
+
+    static final byte SUBMIT = 1;
+    static final byte RESULT = 2;
+    static final byte FAILURE = 3;
+    static final byte CANCEL = 4;
+
+    static final byte[] EMPTY = new byte[0];
+
+    /** 类型 + id */
+    private static final int FRAME_HEADER = 1 + 8;
+
+    /** 单帧的最大长度，超过时认为对方协议错误 */
+    private static final int MAX_FRAME = 64 << 20;
+
+    /** 一次gathering write最多合并的帧数 */
+    private static final int WRITE_BATCH = 64;
+
+    /**
+     * 连接上的事件，在Loop线程上调用
+     */
+    interface Handler {
+        void onFrame(FramedConnection connection, byte type, long id, byte[] payload);
+
+        /**
+         * @param cause 关闭的原因，对方正常关闭时为null
+         */
+        void onClose(FramedConnection connection, IOException cause);
+    }
+
+    /**
+     * 可以接受连接的通道（ServerSocketChannel的附件）
+     */
+    interface Acceptor {
+        void accept() throws IOException;
+    }
+
+    /**
+     * 单线程的NIO事件循环
+     */
+    static final class Loop implements Runnable {
+        final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicBoolean wakeupPending = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Loop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * 在Loop线程上执行task
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread && wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    //Loop线程自己提交的任务不会唤醒selector，有任务时不能阻塞
+                    if (tasks.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+                    wakeupPending.set(false);
+                    for (Runnable task; (task = tasks.poll()) != null; ) {
+                        task.run();
+                    }
+                    for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        process(key);
+                    }
+                }
+            } catch (IOException ignore) {
+                //selector本身出错，关闭所有连接
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    Object a = key.attachment();
+                    if (a instanceof FramedConnection) {
+                        ((FramedConnection) a).close(null);
+                    } else {
+                        try {
+                            key.channel().close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignore) {
+                }
+            }
+        }
+
+        private void process(SelectionKey key) {
+            Object a = key.attachment();
+            try {
+                if (!key.isValid()) {
+                    return;
+                }
+                if (a instanceof FramedConnection) {
+                    FramedConnection c = (FramedConnection) a;
+                    if (key.isReadable()) {
+                        c.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        c.flush();
+                    }
+                } else if (key.isAcceptable()) {
+                    ((Acceptor) a).accept();
+                }
+            } catch (IOException | RuntimeException ex) {
+                if (a instanceof FramedConnection) {
+                    ((FramedConnection) a).close(ex instanceof IOException ? (IOException) ex : new IOException(ex));
+                }
+            }
+        }
+
+        /**
+         * 停止循环并关闭所有注册的通道，已经提交的任务先执行完
+         */
+        void close() {
+            execute(() -> closed = true);
+        }
+    }
+
+    private final Loop loop;
+    private final SocketChannel channel;
+    private final Handler handler;
+    /** 只在Loop线程上访问 */
+    private SelectionKey key;
+    /** 只在Loop线程上访问 */
+    private ByteBuffer readBuffer = ByteBuffer.allocate(64 << 10);
+    private final ConcurrentLinkedQueue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Runnable flushTask = () -> {
+        try {
+            flush();
+        } catch (IOException ex) {
+            close(ex);
+        }
+    };
+
+    private FramedConnection(Loop loop, SocketChannel channel, Handler handler) {
+        this.loop = loop;
+        this.channel = channel;
+        this.handler = handler;
+    }
+
+    /**
+     * 把已经连接的channel切换到非阻塞模式并注册到loop
+     */
+    static FramedConnection register(Loop loop, SocketChannel channel, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        FramedConnection c = new FramedConnection(loop, channel, handler);
+        loop.execute(() -> {
+            try {
+                c.key = channel.register(loop.selector, SelectionKey.OP_READ, c);
+            } catch (ClosedChannelException ex) {
+                c.close(ex);
+            }
+        });
+        return c;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * 发送一帧，可以在任何线程调用。连接已经关闭时直接丢弃。
+     */
+    void send(byte type, long id, byte[] payload) {
+        if (closed.get()) {
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(4 + FRAME_HEADER + payload.length);
+        frame.putInt(FRAME_HEADER + payload.length).put(type).putLong(id).put(payload);
+        frame.flip();
+        writes.add(frame);
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(flushTask);
+        }
+    }
+
+    /**
+     * 尽量写出writes中的帧，写不完时注册OP_WRITE。只在Loop线程上调用。
+     */
+    private void flush() throws IOException {
+        flushScheduled.set(false);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        ByteBuffer[] batch = new ByteBuffer[WRITE_BATCH];
+        for (;;) {
+            int n = 0;
+            for (ByteBuffer b : writes) {
+                batch[n++] = b;
+                if (n == WRITE_BATCH) {
+                    break;
+                }
+            }
+            if (n == 0) {
+                key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            channel.write(batch, 0, n);
+            for (ByteBuffer b; (b = writes.peek()) != null && !b.hasRemaining(); ) {
+                writes.poll();
+            }
+            if (batch[n - 1].hasRemaining()) {
+                //socket发送缓冲区满了，等待可写
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 读取数据并分发完整的帧。只在Loop线程上调用。
+     */
+    private void onReadable() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            close(null);
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < FRAME_HEADER || length > MAX_FRAME) {
+                throw new IOException("bad frame length " + length);
+            }
+            if (readBuffer.remaining() < 4 + length) {
+                if (readBuffer.capacity() < 4 + length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(4 + length);
+                    bigger.put(readBuffer);
+                    readBuffer = bigger;
+                    return;
+                }
+                break;
+            }
+            readBuffer.getInt();
+            byte type = readBuffer.get();
+            long id = readBuffer.getLong();
+            byte[] payload = new byte[length - FRAME_HEADER];
+            readBuffer.get(payload);
+            handler.onFrame(this, type, id, payload);
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * 关闭连接并通知Handler，只生效一次
+     */
+    void close(IOException cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+        writes.clear();
+        handler.onClose(this, cause);
+    }
+
+    static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 反序列化时优先使用线程上下文类加载器，任务的类通常由应用类加载器加载
+     */
+    static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (loader != null) {
+                    try {
+                        return Class.forName(desc.getName(), false, loader);
+                    } catch (ClassNotFoundException ignore) {
+                    }
+                }
+                return super.resolveClass(desc);
+            }
+        }) {
+            return in.readObject();
+        }
+    }
+}
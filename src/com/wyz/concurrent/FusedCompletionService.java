@@ -0,0 +1,249 @@
+package com.wyz.concurrent;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName FusedCompletionService
+ * @Description 任务自身作为完成队列节点的CompletionService
+ * @Author wangyuezheng
+ * @Date 2026/10/18 10:40
+ */
+
+public class FusedCompletionService<V> implements CompletionService<V> {
+
+    /*
+     * ExecutorCompletionService 每提交一个任务需要：用户的FutureTask、包装它的QueueingFuture
+     * （又一个FutureTask以及RunnableAdapter）、完成时LinkedBlockingQueue的Node。
+     * 这里把它们合并成一个对象：QueueingTask 运行callable，并在done()中把自己压入
+     * 一个无锁的Treiber栈，不需要额外的节点。
+     *
+     * 消费者一次取走整个栈（getAndSet(null)），反转后放进只由消费者访问的ready链表，
+     * 因此完成的顺序得以保留。消费者之间用takeLock互斥，持有锁并等待的消费者
+     * 把自己登记在waiter中，生产者压栈后唤醒它。
+     *
+     * 注意：这里不会调用执行器的newTaskFor，任务总是QueueingTask。
+     */
+
+    private final Executor executor;
+
+    /**
+     * 已完成但还没有被消费者取走的任务，后完成的在栈顶
+     */
+    private final AtomicReference<QueueingTask> completed = new AtomicReference<>();
+
+    /**
+     * 消费者之间的互斥锁，同时保护 readyHead
+     */
+    private final ReentrantLock takeLock = new ReentrantLock();
+
+    /**
+     * 按完成顺序排列的已完成任务。仅在takeLock下修改，
+     * volatile 是为了poll()不加锁的快速判断。
+     */
+    private volatile QueueingTask readyHead;
+
+    /**
+     * 正在等待的消费者线程（最多一个，其余的在takeLock上排队）
+     */
+    private volatile Thread waiter;
+
+    /**
+     * 运行callable并在完成时把自己链接进完成队列的任务
+     */
+    private final class QueueingTask extends FutureTask<V> {
+        /** 完成队列中的下一个节点 */
+        QueueingTask next;
+
+        QueueingTask(Callable<V> callable) {
+            super(callable);
+        }
+
+        QueueingTask(Runnable task, V result) {
+            super(task, result);
+        }
+
+        @Override
+        protected void done() {
+            push(this);
+        }
+    }
+
+    /**
+     * 创建一个使用给定执行器执行任务的FusedCompletionService
+     * @param executor 执行任务的执行器
+     * @throws NullPointerException 如果 executor 为null
+     */
+    public FusedCompletionService(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Future<V> submit(Callable<V> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        QueueingTask f = new QueueingTask(task);
+        executor.execute(f);
+        return f;
+    }
+
+    @Override
+    public Future<V> submit(Runnable task, V result) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        QueueingTask f = new QueueingTask(task, result);
+        executor.execute(f);
+        return f;
+    }
+
+    @Override
+    public Future<V> take() throws InterruptedException {
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            for (;;) {
+                QueueingTask t = pollReady();
+                if (t != null) {
+                    return t;
+                }
+                awaitCompletion(false, 0L);
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public Future<V> poll() {
+        //没有已完成的任务时不加锁，直接返回
+        if (completed.get() == null && readyHead == null) {
+            return null;
+        }
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            return pollReady();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public Future<V> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final long deadline = System.nanoTime() + nanos;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            for (;;) {
+                QueueingTask t = pollReady();
+                if (t != null) {
+                    return t;
+                }
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    return null;
+                }
+                awaitCompletion(true, nanos);
+            }
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * 按完成顺序取走所有已经完成的任务，放入给定的集合中，不会阻塞。
+     * @param c 接收已完成任务的集合
+     * @return 取走的任务数
+     */
+    public int drainCompleted(Collection<? super Future<V>> c) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            int n = 0;
+            for (QueueingTask t; (t = pollReady()) != null; ) {
+                c.add(t);
+                ++n;
+            }
+            return n;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * 生产者（完成任务的线程）：压栈并唤醒等待的消费者
+     */
+    private void push(QueueingTask t) {
+        final AtomicReference<QueueingTask> completed = this.completed;
+        QueueingTask h;
+        do {
+            h = completed.get();
+            t.next = h;
+        } while (!completed.compareAndSet(h, t));
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+    }
+
+    /**
+     * 取出最早完成的任务，没有则返回null。必须持有takeLock。
+     */
+    private QueueingTask pollReady() {
+        // assert takeLock.isHeldByCurrentThread();
+        QueueingTask t = readyHead;
+        if (t == null) {
+            QueueingTask batch = completed.getAndSet(null);
+            if (batch == null) {
+                return null;
+            }
+            //栈顶是最后完成的，反转成完成顺序
+            QueueingTask prev = null;
+            while (batch != null) {
+                QueueingTask n = batch.next;
+                batch.next = prev;
+                prev = batch;
+                batch = n;
+            }
+            t = prev;
+        }
+        readyHead = t.next;
+        t.next = null;
+        return t;
+    }
+
+    /**
+     * 等待有任务完成。必须持有takeLock；返回后调用者需要重新检查。
+     */
+    private void awaitCompletion(boolean timed, long nanos) throws InterruptedException {
+        waiter = Thread.currentThread();
+        try {
+            //登记之后再检查一次，避免错过登记之前的唤醒
+            if (completed.get() == null) {
+                if (timed) {
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
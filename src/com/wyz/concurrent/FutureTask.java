@@ -105,6 +105,7 @@ public class FutureTask<V> implements RunnableFuture<V> {
          */
         this.state = NEW;
     }
+
     @Override
     public boolean isCancelled() {
         return state >= CANCELLED;
@@ -164,7 +165,7 @@ public class FutureTask<V> implements RunnableFuture<V> {
         int s = state;
         if (s <= COMPLETING &&
             (s = awaitDone(true, unit.toNanos(timeout))) <= COMPLETING){
-            throw new TimeoutException();
+            throw TimeoutException.timedOut();
         }
         return report(s);
     }
@@ -323,10 +324,22 @@ public class FutureTask<V> implements RunnableFuture<V> {
      * stack.  See other classes such as Phaser and SynchronousQueue
      * for more detailed explanation.
      */
-    static final class WaitNode {
+    static final class WaitNode implements Runnable {
         volatile Thread thread;
         volatile WaitNode next;
         WaitNode() { thread = Thread.currentThread(); }
+
+        /**
+         * Wakes the waiting thread, if still waiting. Used as the
+         * {@link TimeoutService} task for coarse timed waits.
+         */
+        @Override
+        public void run() {
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
     }
 
     /**
@@ -370,11 +383,18 @@ public class FutureTask<V> implements RunnableFuture<V> {
     private int awaitDone(boolean timed, long nanos)
         throws InterruptedException {
         final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        // long timed waits may be woken by the shared timer wheel
+        // instead of each parking with its own timeout
+        final boolean coarse = timed && TimeoutService.useShared(nanos);
+        TimeoutService.Timeout wakeup = null;
         WaitNode q = null;
         boolean queued = false;
         for (;;) {
             if (Thread.interrupted()) {
                 removeWaiter(q);
+                if (wakeup != null) {
+                    wakeup.cancel();
+                }
                 throw new InterruptedException();
             }
 
@@ -383,7 +403,9 @@ public class FutureTask<V> implements RunnableFuture<V> {
                 if (q != null){
                     q.thread = null;
                 }
-
+                if (wakeup != null) {
+                    wakeup.cancel();
+                }
                 return s;
             }
             // cannot time out yet
@@ -402,9 +424,22 @@ public class FutureTask<V> implements RunnableFuture<V> {
                 nanos = deadline - System.nanoTime();
                 if (nanos <= 0L) {
                     removeWaiter(q);
+                    if (wakeup != null) {
+                        wakeup.cancel();
+                    }
                     return state;
                 }
-                LockSupport.parkNanos(this, nanos);
+                if (coarse) {
+                    // one timer insert per wait; the wheel only fires
+                    // after the deadline, spurious wakeups loop around
+                    if (wakeup == null) {
+                        wakeup = TimeoutService.shared()
+                            .newTimeout(q, nanos, TimeUnit.NANOSECONDS);
+                    }
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, nanos);
+                }
             }
             else{
                 LockSupport.park(this);
@@ -0,0 +1,84 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+
+/**
+ * @ClassName FutureTaskPool
+ * @Description PooledFutureTask的对象池，高频请求/响应路径上借出、归还任务，不再每次分配Future
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:20
+ */
+
+public class FutureTaskPool<V> {
+
+    /*
+     * 空闲的任务保存在StripedPool中，借出时取出并reset，PooledFutureTask.release时放回。
+     * 池空时新建任务，池满时归还的任务交给GC，所以池的容量只影响复用率，不影响正确性。
+     * release可能在另一个线程中调用，任务记下借出线程的槽位，归还到那里。
+     */
+
+    private final StripedPool<PooledFutureTask<V>> free;
+
+    /**
+     * 创建一个容量为CPU核数 * 4（至少16）的池
+     */
+    public FutureTaskPool() {
+        this(Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+    }
+
+    /**
+     * @param capacity 最多缓存的空闲任务数（会向上取整为2的幂）
+     * @throws IllegalArgumentException 如果 capacity 小于等于0
+     */
+    public FutureTaskPool(int capacity) {
+        this.free = new StripedPool<PooledFutureTask<V>>(capacity);
+    }
+
+    /**
+     * 借出一个执行给定callable的任务，调用者负责提交、读取结果并release。
+     * @param callable 任务
+     * @return 处于NEW状态的任务，用{@link PooledFutureTask#stamp()}取得本次借用的代数
+     */
+    public PooledFutureTask<V> borrow(Callable<V> callable) {
+        if (callable == null) {
+            throw new NullPointerException();
+        }
+        PooledFutureTask<V> task = free.acquire();
+        if (task == null) {
+            task = new PooledFutureTask<V>(this);
+        }
+        task.home = free.home();
+        task.reset(callable);
+        return task;
+    }
+
+    /**
+     * 借出一个任务并交给执行器执行。执行器拒绝时任务被取消并归还，异常原样抛出。
+     * @param executor 执行任务的执行器
+     * @param callable 任务
+     * @return 已提交的任务
+     */
+    public PooledFutureTask<V> submit(Executor executor, Callable<V> callable) {
+        if (executor == null) {
+            throw new NullPointerException();
+        }
+        PooledFutureTask<V> task = borrow(callable);
+        int stamp = task.stamp();
+        try {
+            executor.execute(task);
+        } catch (RuntimeException | Error ex) {
+            //被取消的任务不会放回池中，拒绝策略即使保留了它也不会影响之后的借用者
+            task.cancel(stamp, false);
+            task.release(stamp);
+            throw ex;
+        }
+        return task;
+    }
+
+    /**
+     * 由PooledFutureTask.release调用
+     */
+    void recycle(PooledFutureTask<V> task) {
+        free.release(task, task.home);
+    }
+}
@@ -0,0 +1,280 @@
+package com.wyz.concurrent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * @ClassName HeapPressureGovernor
+ * @Description 根据GC之后老年代的占用率控制线程池的准入：压力大时拒绝低优先级任务、收紧队列长度，压力消退后自动恢复
+ * @Author wangyuezheng
+ * @Date 2026/10/18 17:40
+ */
+
+public class HeapPressureGovernor implements AutoCloseable {
+
+    /*
+     * 占用率取自老年代内存池的CollectionUsage，即最近一次GC之后的使用量，
+     * 不会因为两次GC之间堆积的垃圾而误判。
+     *
+     * 压力升高靠通知：把内存池的collection usage threshold设为下一级的阈值，
+     * GC后超过阈值时JVM发出MEMORY_COLLECTION_THRESHOLD_EXCEEDED通知，收到通知后重新计算级别，
+     * 再把阈值提高到更高一级。阈值通知只在越过阈值时发出，不会在占用率下降时发出，
+     * 所以压力消退靠轮询：级别高于NORMAL时，每隔recheckInterval在共享的TimeoutService上检查一次，
+     * 占用率低于当前级别的阈值减去HYSTERESIS时降级，回到NORMAL后停止轮询。
+     *
+     * 准入检查在NORMAL时只读一个volatile的级别，分两步：
+     *   1、admit，由ThreadPoolExecutor.execute在入口调用，ELEVATED和CRITICAL时拒绝实现了Sheddable的任务；
+     *   2、admitToQueue，在尝试创建核心线程之后、入队之前调用，队列长度达到当前级别的限制
+     *      （ELEVATED为elevatedQueueLimit，CRITICAL为criticalQueueLimit）时不入队。
+     * 所以队列限制只约束排队：有空闲的核心线程名额或者还能创建非核心线程时，任务照常执行，
+     * 限制为0表示不再排队而不是拒绝所有任务。
+     * 被拒绝的任务交给线程池的拒绝策略处理。
+     *
+     * 内存池的阈值是JVM全局的，同一个JVM中应该只创建一个governor，由多个线程池共享。
+     */
+
+    /**
+     * 压力级别
+     */
+    public enum Level {
+        NORMAL, ELEVATED, CRITICAL
+    }
+
+    /**
+     * 低优先级任务的标记接口。压力升高时首先拒绝这类任务。
+     * 检查的是传给execute的Runnable本身，submit会把任务包装成FutureTask，
+     * 所以低优先级任务应该直接通过execute提交。
+     */
+    public interface Sheddable {
+    }
+
+    /**
+     * 降级时占用率需要比阈值低多少，避免在阈值附近反复升降级
+     */
+    private static final double HYSTERESIS = 0.05;
+
+    private final MemoryPoolMXBean pool;
+    private final long maxBytes;
+    private final double elevatedThreshold;
+    private final double criticalThreshold;
+    private final int elevatedQueueLimit;
+    private final int criticalQueueLimit;
+    private final long recheckNanos;
+
+    private final NotificationListener listener = new NotificationListener() {
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                evaluate();
+            }
+        }
+    };
+
+    private volatile Level level = Level.NORMAL;
+
+    /** 恢复检查的定时任务，guarded by this */
+    private TimeoutService.Timeout recheck;
+
+    /** guarded by this */
+    private boolean closed;
+
+    private final AtomicLong shedCount = new AtomicLong();
+    private final AtomicLong queueLimitCount = new AtomicLong();
+
+    /**
+     * 占用率70%进入ELEVATED（只拒绝Sheddable任务），85%进入CRITICAL（队列长度限制为0，
+     * 只有能直接交给线程的任务才被接受），每秒检查一次是否恢复。
+     */
+    public HeapPressureGovernor() {
+        this(0.70, 0.85, Integer.MAX_VALUE, 0, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param elevatedThreshold 进入ELEVATED的GC后老年代占用率，(0, 1)
+     * @param criticalThreshold 进入CRITICAL的GC后老年代占用率，(elevatedThreshold, 1)
+     * @param elevatedQueueLimit ELEVATED时允许的最大队列长度
+     * @param criticalQueueLimit CRITICAL时允许的最大队列长度，不能大于elevatedQueueLimit
+     * @param recheckInterval 压力升高后检查是否恢复的间隔
+     * @param unit recheckInterval的单位
+     * @throws IllegalArgumentException 如果参数不满足上述条件
+     * @throws UnsupportedOperationException 如果找不到支持collection usage threshold的堆内存池
+     */
+    public HeapPressureGovernor(double elevatedThreshold, double criticalThreshold,
+                                int elevatedQueueLimit, int criticalQueueLimit,
+                                long recheckInterval, TimeUnit unit) {
+        if (!(elevatedThreshold > 0 && elevatedThreshold < criticalThreshold && criticalThreshold < 1)
+                || criticalQueueLimit < 0 || elevatedQueueLimit < criticalQueueLimit
+                || recheckInterval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (unit == null) {
+            throw new NullPointerException();
+        }
+        this.pool = findTenuredPool();
+        long max = pool.getUsage().getMax();
+        this.maxBytes = (max > 0) ? max : Runtime.getRuntime().maxMemory();
+        this.elevatedThreshold = elevatedThreshold;
+        this.criticalThreshold = criticalThreshold;
+        this.elevatedQueueLimit = elevatedQueueLimit;
+        this.criticalQueueLimit = criticalQueueLimit;
+        this.recheckNanos = unit.toNanos(recheckInterval);
+
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+                .addNotificationListener(listener, null, null);
+        evaluate();
+    }
+
+    /**
+     * 老年代：堆内存池中支持usage threshold的那个（eden和survivor不支持）
+     */
+    private static MemoryPoolMXBean findTenuredPool() {
+        for (MemoryPoolMXBean p : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (p.getType() == MemoryType.HEAP && p.isUsageThresholdSupported()
+                    && p.isCollectionUsageThresholdSupported()) {
+                return p;
+            }
+        }
+        throw new UnsupportedOperationException("no tenured heap pool supports collection usage threshold");
+    }
+
+    /**
+     * 根据最近一次GC后的占用率重新计算级别，并设置下一次通知的阈值。
+     * 级别高于NORMAL时安排下一次恢复检查。
+     */
+    synchronized void evaluate() {
+        if (closed) {
+            return;
+        }
+        double occupancy = occupancy();
+        Level current = level;
+        Level next;
+        if (occupancy >= criticalThreshold) {
+            next = Level.CRITICAL;
+        } else if (occupancy >= elevatedThreshold) {
+            next = Level.ELEVATED;
+        } else {
+            next = Level.NORMAL;
+        }
+        //降级要求占用率比对应的阈值再低HYSTERESIS
+        if (next.compareTo(current) < 0) {
+            if (current == Level.CRITICAL && occupancy >= criticalThreshold - HYSTERESIS) {
+                next = Level.CRITICAL;
+            } else if (next == Level.NORMAL && occupancy >= elevatedThreshold - HYSTERESIS) {
+                next = Level.ELEVATED;
+            }
+        }
+        level = next;
+
+        //只需要在越过下一级阈值时收到通知；已经是CRITICAL时不再需要通知
+        double notifyAt = (next == Level.NORMAL) ? elevatedThreshold : criticalThreshold;
+        pool.setCollectionUsageThreshold((long) (maxBytes * notifyAt));
+
+        if (next == Level.NORMAL) {
+            if (recheck != null) {
+                recheck.cancel();
+                recheck = null;
+            }
+        } else if (recheck == null || recheck.isExpired()) {
+            recheck = TimeoutService.shared().newTimeout(this::evaluate, recheckNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return 最近一次GC之后老年代的占用率，还没有发生过GC时为0
+     */
+    public double occupancy() {
+        MemoryUsage usage = pool.getCollectionUsage();
+        return (usage == null) ? 0.0 : (double) usage.getUsed() / maxBytes;
+    }
+
+    /**
+     * @return 当前的压力级别
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 判断任务能否进入线程池，由ThreadPoolExecutor.execute在入口调用
+     * @param command 提交的任务
+     * @return false:应该拒绝
+     */
+    boolean admit(Runnable command) {
+        if (level == Level.NORMAL) {
+            return true;
+        }
+        if (command instanceof Sheddable) {
+            shedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 判断任务能否放入队列，由ThreadPoolExecutor.execute在尝试创建核心线程之后、入队之前调用。
+     * 不能入队的任务仍然可以交给新的非核心线程，线程数已经达到上限时才被拒绝。
+     * @param queue 线程池的队列，压力升高时才读取它的长度
+     * @return false:不应该入队
+     */
+    boolean admitToQueue(BlockingQueue<Runnable> queue) {
+        Level l = level;
+        if (l == Level.NORMAL) {
+            return true;
+        }
+        int limit = (l == Level.CRITICAL) ? criticalQueueLimit : elevatedQueueLimit;
+        if (limit < Integer.MAX_VALUE && queue.size() >= limit) {
+            queueLimitCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 因为是Sheddable而被拒绝的任务数
+     */
+    public long getShedCount() {
+        return shedCount.get();
+    }
+
+    /**
+     * @return 因为队列长度超过当前级别的限制而没有入队的任务数，其中交给了新线程的任务仍然被执行
+     */
+    public long getQueueLimitCount() {
+        return queueLimitCount.get();
+    }
+
+    /**
+     * 移除通知监听、停止恢复检查，并回到NORMAL。已经设置给线程池的governor之后总是接受任务。
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        level = Level.NORMAL;
+        if (recheck != null) {
+            recheck.cancel();
+            recheck = null;
+        }
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException ignore) {
+        }
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[level = " + level + ", occupancy = " + occupancy()
+                + ", shed = " + shedCount.get() + ", queueLimited = " + queueLimitCount.get() + "]";
+    }
+}
@@ -0,0 +1,157 @@
+package com.wyz.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @ClassName HedgeStats
+ * @Description 对冲执行（invokeHedged）的延迟统计与计数
+ * @Author wangyuezheng
+ * @Date 2026/10/18 10:05
+ */
+
+public class HedgeStats {
+
+    /**
+     * 样本数少于这个值时，使用默认的对冲延迟
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * 样本第一次达到MIN_SAMPLES时立即计算分位数，之后每记录这么多个样本重新计算一次，避免每次调用都排序
+     */
+    private static final int RECOMPUTE_INTERVAL = 32;
+
+    /**
+     * 最近的延迟样本（纳秒），环形覆盖。仅在this的锁下访问。
+     */
+    private final long[] samples;
+    private int nextSample;
+    private int filled;
+    private int sinceRecompute;
+    /** 是否已经根据样本计算过对冲延迟 */
+    private boolean computed;
+
+    /**
+     * 用于计算对冲延迟的分位数，例如0.95
+     */
+    private final double quantile;
+
+    /**
+     * 样本不足时使用的对冲延迟
+     */
+    private final long defaultDelayNanos;
+
+    /**
+     * 最近一次根据样本计算出的对冲延迟
+     */
+    private volatile long observedDelayNanos;
+
+    private final AtomicLong invocations = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    /**
+     * 使用最近1024个样本的p95作为对冲延迟，样本不足时为10毫秒
+     */
+    public HedgeStats() {
+        this(1024, 0.95, 10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param window 保留的样本数
+     * @param quantile 分位数，取值 (0, 1]
+     * @param defaultDelay 样本不足时使用的对冲延迟
+     * @param unit defaultDelay 的时间单位
+     */
+    public HedgeStats(int window, double quantile, long defaultDelay, TimeUnit unit) {
+        if (unit == null) {
+            throw new NullPointerException();
+        }
+        if (window < MIN_SAMPLES || !(quantile > 0.0 && quantile <= 1.0) || defaultDelay < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.samples = new long[window];
+        this.quantile = quantile;
+        this.defaultDelayNanos = unit.toNanos(defaultDelay);
+        this.observedDelayNanos = defaultDelayNanos;
+    }
+
+    /**
+     * 返回下一次对冲前应等待的时间：样本足够时为观察到的分位数延迟，否则为默认值
+     * @return 对冲延迟（纳秒）
+     */
+    public long hedgeDelayNanos() {
+        return observedDelayNanos;
+    }
+
+    /**
+     * 记录一次成功任务从启动到完成的耗时。
+     * 对冲延迟在第MIN_SAMPLES个样本时第一次更新，之后每RECOMPUTE_INTERVAL个样本更新一次，
+     * 中间记录的样本要等到下一次更新才会反映到{@link #hedgeDelayNanos()}中。
+     * @param nanos 耗时（纳秒）
+     */
+    public synchronized void recordLatency(long nanos) {
+        samples[nextSample] = nanos;
+        if (++nextSample == samples.length) {
+            nextSample = 0;
+        }
+        if (filled < samples.length) {
+            ++filled;
+        }
+        if (filled < MIN_SAMPLES) {
+            return;
+        }
+        //刚好攒够样本时立即计算，不用再等一个RECOMPUTE_INTERVAL
+        if (!computed || ++sinceRecompute >= RECOMPUTE_INTERVAL) {
+            computed = true;
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, filled);
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(quantile * filled) - 1;
+            observedDelayNanos = sorted[Math.max(0, Math.min(idx, filled - 1))];
+        }
+    }
+
+    void recordInvocation() {
+        invocations.incrementAndGet();
+    }
+
+    void recordHedgeFired() {
+        hedgesFired.incrementAndGet();
+    }
+
+    void recordHedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    /**
+     * @return invokeHedged 的调用次数
+     */
+    public long getInvocationCount() {
+        return invocations.get();
+    }
+
+    /**
+     * @return 因为等待超过对冲延迟而额外启动的任务数
+     */
+    public long getHedgesFired() {
+        return hedgesFired.get();
+    }
+
+    /**
+     * @return 由对冲启动的任务最先成功返回的次数
+     */
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[invocations = " + invocations.get() +
+                ", hedges fired = " + hedgesFired.get() +
+                ", hedges won = " + hedgesWon.get() +
+                ", hedge delay = " + observedDelayNanos + "ns]";
+    }
+}
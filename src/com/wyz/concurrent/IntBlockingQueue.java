@@ -0,0 +1,392 @@
+package com.wyz.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName IntBlockingQueue
+ * @Description 保存int的有界阻塞队列，基于int[]环形数组，不装箱也不分配节点
+ * @Author wangyuezheng
+ * @Date 2026/10/18 16:10
+ */
+
+public class IntBlockingQueue {
+
+    /*
+     * LinkedBlockingQueue<Integer> 每个元素需要一个Integer对象和一个Node，这里元素直接保存在
+     * int[]中（4字节/元素），创建之后入队出队都不会分配对象。
+     *
+     * 结构与ArrayBlockingQueue相同：一把锁，notEmpty/notFull两个条件，
+     * takeIndex/putIndex在数组上循环。
+     *
+     * 方法与BlockingQueue对应，但基本类型没有null，所以：
+     *   poll()/peek()/poll(timeout, unit) 需要传入队列为空（或超时）时返回的值；
+     *   drainTo 把元素复制到int[]中。
+     */
+
+    /** The queued items */
+    private final int[] items;
+
+    /** items index for next take, poll, peek or remove */
+    private int takeIndex;
+
+    /** items index for next put, offer, or add */
+    private int putIndex;
+
+    /** Number of elements in the queue */
+    private int count;
+
+    /** Main lock guarding all access */
+    private final ReentrantLock lock;
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty;
+
+    /** Condition for waiting puts */
+    private final Condition notFull;
+
+    /**
+     * @param capacity 队列的容量
+     * @throws IllegalArgumentException 如果 capacity 小于等于0
+     */
+    public IntBlockingQueue(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * @param capacity 队列的容量
+     * @param fair 锁是否公平
+     * @throws IllegalArgumentException 如果 capacity 小于等于0
+     */
+    public IntBlockingQueue(int capacity, boolean fair) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.items = new int[capacity];
+        this.lock = new ReentrantLock(fair);
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    /**
+     * 入队。必须持有锁，并且队列未满。
+     */
+    private void enqueue(int x) {
+        // assert lock.getHoldCount() == 1;
+        // assert count < items.length;
+        final int[] items = this.items;
+        items[putIndex] = x;
+        if (++putIndex == items.length) {
+            putIndex = 0;
+        }
+        count++;
+        notEmpty.signal();
+    }
+
+    /**
+     * 出队。必须持有锁，并且队列不为空。
+     */
+    private int dequeue() {
+        // assert lock.getHoldCount() == 1;
+        // assert count > 0;
+        final int[] items = this.items;
+        int x = items[takeIndex];
+        if (++takeIndex == items.length) {
+            takeIndex = 0;
+        }
+        count--;
+        notFull.signal();
+        return x;
+    }
+
+    /**
+     * 如果队列未满，立即入队
+     * @param x 元素
+     * @return 是否入队成功
+     */
+    public boolean offer(int x) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (count == items.length) {
+                return false;
+            }
+            enqueue(x);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 入队，队列满时抛出异常
+     * @param x 元素
+     * @return true
+     * @throws IllegalStateException 队列已满
+     */
+    public boolean add(int x) {
+        if (offer(x)) {
+            return true;
+        }
+        throw new IllegalStateException("Queue full");
+    }
+
+    /**
+     * 入队，队列满时等待
+     * @param x 元素
+     * @throws InterruptedException 等待时被中断
+     */
+    public void put(int x) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length) {
+                notFull.await();
+            }
+            enqueue(x);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 入队，队列满时最多等待给定的时间
+     * @param x 元素
+     * @return 是否入队成功，超时返回false
+     * @throws InterruptedException 等待时被中断
+     */
+    public boolean offer(int x, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(x);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 出队，队列为空时等待
+     * @return 队头元素
+     * @throws InterruptedException 等待时被中断
+     */
+    public int take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 出队，队列为空时最多等待给定的时间
+     * @param valueIfTimeout 超时时返回的值
+     * @return 队头元素，超时返回valueIfTimeout
+     * @throws InterruptedException 等待时被中断
+     */
+    public int poll(long timeout, TimeUnit unit, int valueIfTimeout) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0L) {
+                    return valueIfTimeout;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 如果队列不为空，立即出队
+     * @param valueIfEmpty 队列为空时返回的值
+     * @return 队头元素，队列为空时返回valueIfEmpty
+     */
+    public int poll(int valueIfEmpty) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (count == 0) ? valueIfEmpty : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回但不移除队头元素
+     * @param valueIfEmpty 队列为空时返回的值
+     * @return 队头元素，队列为空时返回valueIfEmpty
+     */
+    public int peek(int valueIfEmpty) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (count == 0) ? valueIfEmpty : items[takeIndex];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一次取出所有元素，复制到dst中
+     * @param dst 目标数组
+     * @return 取出的元素个数
+     */
+    public int drainTo(int[] dst) {
+        return drainTo(dst, 0, dst.length);
+    }
+
+    /**
+     * 最多取出maxElements个元素，复制到 dst[offset] 开始的位置，不会阻塞
+     * @param dst 目标数组
+     * @param offset dst中的起始位置
+     * @param maxElements 最多取出的元素个数
+     * @return 取出的元素个数
+     * @throws IndexOutOfBoundsException 如果 offset、maxElements 超出dst的范围
+     */
+    public int drainTo(int[] dst, int offset, int maxElements) {
+        if (dst == null) {
+            throw new NullPointerException();
+        }
+        if (offset < 0 || maxElements < 0 || maxElements > dst.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+        final int[] items = this.items;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = Math.min(maxElements, count);
+            if (n == 0) {
+                return 0;
+            }
+            //最多分两段复制
+            int first = Math.min(n, items.length - takeIndex);
+            System.arraycopy(items, takeIndex, dst, offset, first);
+            if (first < n) {
+                System.arraycopy(items, 0, dst, offset + first, n - first);
+            }
+            takeIndex += n;
+            if (takeIndex >= items.length) {
+                takeIndex -= items.length;
+            }
+            count -= n;
+            //可能有多个生产者在等待
+            for (int i = 0; i < n && lock.hasWaiters(notFull); i++) {
+                notFull.signal();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 队列中的元素个数
+     */
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return 不阻塞还能入队的元素个数
+     */
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return items.length - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 队列中是否有等于x的元素
+     */
+    public boolean contains(int x) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final int[] items = this.items;
+            for (int i = 0, k = takeIndex; i < count; i++) {
+                if (items[k] == x) {
+                    return true;
+                }
+                if (++k == items.length) {
+                    k = 0;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除所有元素
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            count = 0;
+            takeIndex = putIndex;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 按队列顺序包含所有元素的新数组
+     */
+    public int[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int[] a = new int[count];
+            int first = Math.min(count, items.length - takeIndex);
+            System.arraycopy(items, takeIndex, a, 0, first);
+            if (first < count) {
+                System.arraycopy(items, 0, a, first, count - first);
+            }
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,19 @@
+package com.wyz.concurrent;
+
+/**
+ * @ClassName IntCallable
+ * @Description 返回int结果的任务，结果不需要装箱
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:40
+ */
+
+@FunctionalInterface
+public interface IntCallable {
+
+    /**
+     * 计算结果，如果无法计算则抛出异常
+     * @return 计算结果
+     * @throws Exception 无法计算结果
+     */
+    int callAsInt() throws Exception;
+}
@@ -0,0 +1,91 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName IntFutureTask
+ * @Description 结果保存在int字段中的FutureTask，执行和读取结果都不装箱
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:40
+ */
+
+public class IntFutureTask extends FutureTask<Integer> implements IntFuture {
+
+    /*
+     * FutureTask的callable是私有的Compute：call()把结果写入value后返回null，FutureTask随后set(null)。
+     * value在状态从NEW变为COMPLETING的CAS之前写入，读取方先读到完成状态再读value，
+     * 与outcome有相同的可见性保证。任务本身不实现Callable，外部无法绕过run()直接计算。
+     *
+     * 通过Future<Integer>的get()读取时才会装箱。
+     * Int/Long/DoubleFutureTask只有结果的类型不同，刻意保持相同的结构，不抽取公共父类。
+     */
+
+    /**
+     * 执行计算任务并保存结果
+     */
+    private static final class Compute implements Callable<Integer> {
+        /** 计算任务，运行后置为null */
+        private IntCallable task;
+
+        /** 计算结果，由FutureTask的state的读写保证可见性 */
+        private int value;
+
+        Compute(IntCallable task) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            this.task = task;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            IntCallable t = task;
+            try {
+                value = t.callAsInt();
+            } finally {
+                task = null;
+            }
+            return null;
+        }
+    }
+
+    private final Compute compute;
+
+    /**
+     * @param task 计算任务
+     * @throws NullPointerException 如果 task 为null
+     */
+    public IntFutureTask(IntCallable task) {
+        this(new Compute(task));
+    }
+
+    private IntFutureTask(Compute compute) {
+        super(compute);
+        this.compute = compute;
+    }
+
+    @Override
+    public int getAsInt() throws InterruptedException, ExecutionException {
+        super.get();
+        return compute.value;
+    }
+
+    @Override
+    public int getAsInt(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        super.get(timeout, unit);
+        return compute.value;
+    }
+
+    @Override
+    public Integer get() throws InterruptedException, ExecutionException {
+        return getAsInt();
+    }
+
+    @Override
+    public Integer get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return getAsInt(timeout, unit);
+    }
+}
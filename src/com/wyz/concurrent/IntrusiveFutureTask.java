@@ -0,0 +1,75 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * @ClassName IntrusiveFutureTask
+ * @Description 自身就是LinkedTaskQueue节点、也不需要RunnableAdapter的FutureTask
+ * @Author wangyuezheng
+ * @Date 2026/10/18 14:30
+ */
+
+final class IntrusiveFutureTask<V> extends FutureTask<V> implements LinkedTaskQueue.Node {
+
+    /*
+     * 普通的submit(Runnable)要分配：Executors.callable返回的RunnableAdapter、FutureTask、
+     * 入队时LinkedBlockingQueue的Node，一共三个对象。这里FutureTask通过next字段直接链接进
+     * LinkedTaskQueue，不需要Node：submit(Callable)只分配任务本身，submit(Runnable)再加一个私有的RunnableCall。
+     * 任务本身不实现Callable，外部无法绕过run()直接执行。
+     */
+
+    /** IntrusiveFutureTask.class只能得到原始类型的Class，转换成带通配符的类型是安全的 */
+    @SuppressWarnings("unchecked")
+    private static final AtomicReferenceFieldUpdater<IntrusiveFutureTask<?>, LinkedTaskQueue.Node> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater((Class<IntrusiveFutureTask<?>>) (Class<?>) IntrusiveFutureTask.class,
+                    LinkedTaskQueue.Node.class, "next");
+
+    /** LinkedTaskQueue中的后继 */
+    private volatile LinkedTaskQueue.Node next;
+
+    IntrusiveFutureTask(Callable<V> callable) {
+        super(callable);
+    }
+
+    IntrusiveFutureTask(Runnable runnable, V result) {
+        super(new RunnableCall<V>(runnable, result));
+    }
+
+    /**
+     * 执行Runnable并返回给定的结果
+     */
+    private static final class RunnableCall<V> implements Callable<V> {
+        private final Runnable runnable;
+        private final V result;
+
+        RunnableCall(Runnable runnable, V result) {
+            if (runnable == null) {
+                throw new NullPointerException();
+            }
+            this.runnable = runnable;
+            this.result = result;
+        }
+
+        @Override
+        public V call() {
+            runnable.run();
+            return result;
+        }
+    }
+
+    @Override
+    public LinkedTaskQueue.Node getNext() {
+        return next;
+    }
+
+    @Override
+    public void setNext(LinkedTaskQueue.Node next) {
+        this.next = next;
+    }
+
+    @Override
+    public boolean casNext(LinkedTaskQueue.Node expect, LinkedTaskQueue.Node update) {
+        return NEXT.compareAndSet(this, expect, update);
+    }
+}
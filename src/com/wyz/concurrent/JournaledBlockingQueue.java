@@ -0,0 +1,992 @@
+package com.wyz.concurrent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * @ClassName JournaledBlockingQueue
+ * @Description 把入队的元素写入本地追加日志的无界阻塞队列，重启后重放没有确认的元素
+ * @Author wangyuezheng
+ * @Date 2026/10/18 19:00
+ */
+
+public class JournaledBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E>, AcknowledgingQueue, Closeable {
+
+    /*
+     * 日志是一个只追加的文件，记录格式：
+     *   [byte 类型][long id][int 长度][长度个字节的序列化元素][int CRC32]
+     * 类型为ADD（入队）或ACK（确认，长度为0）。
+     *
+     * 入队：序列化（在锁外）、分配id、把ADD记录追加到内存中的pending缓冲区，元素放入appending，
+     * 然后等待它落盘。落盘采用组提交：等待的线程中第一个发现没有刷盘在进行的成为flusher，取走整个pending，
+     * 在锁外write + force，完成后唤醒所有等待者；刷盘期间到来的入队全部进入下一批。
+     * 所以并发入队时一次fsync覆盖多个元素。offer/put返回时元素已经持久化。
+     * 每次durable前进时，appending中已经落盘的元素按id顺序移入queue并唤醒消费者，
+     * 消费者不会取到还没有持久化的元素；刷盘失败时入队线程把自己的元素从appending中删除后再抛出异常。
+     *
+     * 确认：take/poll/drainTo取出的元素进入inFlight，直到ack才写ACK记录。
+     * ThreadPoolExecutor使用这个队列时（通过AcknowledgingQueue），runWorker在任务运行完、
+     * afterExecute正常返回后自动调用ack；beforeExecute或afterExecute抛出异常的任务不确认，重启后重放。
+     * ACK记录不单独fsync，由后台线程每隔flushInterval连同其他记录一起刷盘，
+     * 崩溃时最近的确认可能丢失，对应的任务重启后会再执行一次（至少一次语义）。
+     * remove/clear删除的元素也写ACK记录。
+     *
+     * 重放：构造时顺序读取日志，ADD加入、ACK删除，剩下的元素按id顺序反序列化后放入队列。
+     * 读到不完整或CRC不匹配的记录（崩溃时写了一半）就停止，并把文件截断到最后一条完整记录。
+     *
+     * 压缩：后台线程发现日志超过compactMinBytes、并且有效记录不到一半时，
+     * 把仍然有效（在队列中或未确认）的ADD记录复制到新文件，fsync后原子地替换旧文件。
+     * 压缩期间持有锁，入队和出队会等待它完成。
+     *
+     * 日志一旦写失败，之后的入队都抛出UncheckedIOException。
+     * 同一个元素对象不能同时在队列或inFlight中出现两次，ack按对象身份查找。
+     *
+     * 作为ThreadPoolExecutor的workQueue时的限制：
+     *   1、只有进入队列的任务才会写日志。execute在线程数少于corePoolSize时把任务直接交给新建的线程，
+     *      这些任务不经过队列，崩溃后不会恢复。需要所有任务都可恢复时，先调用prestartAllCoreThreads()，
+     *      之后的任务都会入队（队列无界，不会创建非核心线程）；
+     *   2、元素必须能被serializer序列化。submit会把任务包装成FutureTask，FutureTask没有实现Serializable，
+     *      使用javaSerializer时入队抛出UncheckedIOException。应该用execute提交实现了Serializable的Runnable。
+     */
+
+    private static final byte ADD = 1;
+    private static final byte ACK = 2;
+
+    /** ACK记录的内容 */
+    private static final byte[] EMPTY = new byte[0];
+
+    /** 记录头：类型 + id + 长度 */
+    private static final int HEADER_BYTES = 1 + 8 + 4;
+
+    /** 记录尾：CRC32 */
+    private static final int TRAILER_BYTES = 4;
+
+    private static final class Node<E> {
+        final E item;
+        final long id;
+        /** ADD记录在日志中的字节数 */
+        final int recordBytes;
+        /** 入队时ADD记录在appended坐标中的结束位置，durable达到它之后元素才对消费者可见 */
+        long durableAt;
+
+        Node(E item, long id, int recordBytes) {
+            this.item = item;
+            this.id = id;
+            this.recordBytes = recordBytes;
+        }
+    }
+
+    /**
+     * 顺序读取日志中的记录
+     */
+    private static final class RecordReader {
+        private final FileChannel channel;
+        private final long limit;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        private final ByteBuffer trailer = ByteBuffer.allocate(TRAILER_BYTES);
+        /** 下一条记录的位置，读到坏记录时停在它的开头 */
+        long position;
+        byte type;
+        long id;
+        byte[] payload;
+
+        RecordReader(FileChannel channel, long limit) {
+            this.channel = channel;
+            this.limit = limit;
+        }
+
+        /**
+         * @return 是否读到了一条完整且校验通过的记录
+         */
+        boolean next() throws IOException {
+            if (limit - position < HEADER_BYTES + TRAILER_BYTES) {
+                return false;
+            }
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            byte t = header.get();
+            long i = header.getLong();
+            int len = header.getInt();
+            if ((t != ADD && t != ACK) || len < 0
+                    || limit - position - HEADER_BYTES - TRAILER_BYTES < len) {
+                return false;
+            }
+            byte[] p = new byte[len];
+            readFully(ByteBuffer.wrap(p), position + HEADER_BYTES);
+            trailer.clear();
+            readFully(trailer, position + HEADER_BYTES + len);
+            trailer.flip();
+            if (trailer.getInt() != checksum(t, i, p)) {
+                return false;
+            }
+            type = t;
+            id = i;
+            payload = p;
+            position += HEADER_BYTES + len + TRAILER_BYTES;
+            return true;
+        }
+
+        private void readFully(ByteBuffer dst, long pos) throws IOException {
+            while (dst.hasRemaining()) {
+                int n = channel.read(dst, pos);
+                if (n < 0) {
+                    throw new IOException("unexpected end of journal");
+                }
+                pos += n;
+            }
+        }
+    }
+
+    private final File file;
+    private final SpillingBlockingQueue.Serializer<E> serializer;
+    private final long compactMinBytes;
+    private final long flushIntervalNanos;
+
+    /** 日志文件，压缩后会被替换，guarded by lock */
+    private FileChannel channel;
+
+    /** 等待被取出的元素，guarded by lock */
+    private final ArrayDeque<Node<E>> queue = new ArrayDeque<Node<E>>();
+
+    /** ADD记录已经追加、还没有落盘的元素，按id顺序，guarded by lock */
+    private final ArrayDeque<Node<E>> appending = new ArrayDeque<Node<E>>();
+
+    /** 已经取出、还没有确认的元素，按对象身份索引，guarded by lock */
+    private final IdentityHashMap<Object, Node<E>> inFlight = new IdentityHashMap<Object, Node<E>>();
+
+    /** 还没有写到文件的记录，guarded by lock */
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+
+    /** 下一个元素的id，guarded by lock */
+    private long nextId;
+
+    /** 追加到pending的累计字节数，guarded by lock */
+    private long appended;
+
+    /** 已经fsync的累计字节数（与appended同一坐标），guarded by lock */
+    private long durable;
+
+    /** 是否有线程正在锁外刷盘，guarded by lock */
+    private boolean flushing;
+
+    /** 日志写失败的原因，guarded by lock */
+    private IOException failure;
+
+    /** guarded by lock */
+    private boolean closed;
+
+    /** 日志文件的大小，guarded by lock */
+    private long fileBytes;
+
+    /** 仍然有效的ADD记录的总字节数，guarded by lock */
+    private long liveBytes;
+
+    // 统计，guarded by lock
+    private long payloadBytes;
+    private long bytesWritten;
+    private long fsyncCount;
+    private long compactionCount;
+    private final int recoveredCount;
+    private final long recoveryNanos;
+
+    /** Main lock guarding all access */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** 一批记录刷盘完成 */
+    private final Condition flushed = lock.newCondition();
+
+    private final Thread background;
+
+    /**
+     * 每100毫秒刷一次确认记录，日志超过64MB时考虑压缩
+     * @param file 日志文件，存在时重放其中未确认的元素
+     * @param serializer 元素的序列化方式
+     * @throws IOException 如果日志无法打开或重放失败
+     */
+    public JournaledBlockingQueue(File file, SpillingBlockingQueue.Serializer<E> serializer) throws IOException {
+        this(file, serializer, 100, TimeUnit.MILLISECONDS, 64L << 20);
+    }
+
+    /**
+     * @param file 日志文件，存在时重放其中未确认的元素
+     * @param serializer 元素的序列化方式
+     * @param flushInterval 后台线程刷写确认记录、检查是否需要压缩的间隔
+     * @param unit flushInterval的单位
+     * @param compactMinBytes 日志至少达到这个大小才会压缩
+     * @throws IOException 如果日志无法打开或重放失败
+     * @throws IllegalArgumentException 如果 flushInterval 或 compactMinBytes 小于等于0
+     */
+    public JournaledBlockingQueue(File file, SpillingBlockingQueue.Serializer<E> serializer,
+                                  long flushInterval, TimeUnit unit, long compactMinBytes) throws IOException {
+        if (file == null || serializer == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (flushInterval <= 0 || compactMinBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.file = file;
+        this.serializer = serializer;
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        this.compactMinBytes = compactMinBytes;
+        this.channel = open();
+
+        long start = System.nanoTime();
+        try {
+            this.recoveredCount = replay();
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+        this.recoveryNanos = System.nanoTime() - start;
+
+        this.background = new Thread(this::runBackground, "journal-" + file.getName());
+        background.setDaemon(true);
+        background.start();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 重放日志，截断不完整的尾部
+     * @return 恢复的元素个数
+     */
+    private int replay() throws IOException {
+        long size = channel.size();
+        RecordReader reader = new RecordReader(channel, size);
+        Map<Long, byte[]> live = new LinkedHashMap<Long, byte[]>();
+        long maxId = 0;
+        while (reader.next()) {
+            if (reader.type == ADD) {
+                live.put(reader.id, reader.payload);
+            } else {
+                live.remove(reader.id);
+            }
+            maxId = Math.max(maxId, reader.id);
+        }
+        if (reader.position < size) {
+            channel.truncate(reader.position);
+            channel.force(true);
+        }
+        channel.position(reader.position);
+        fileBytes = reader.position;
+        nextId = maxId + 1;
+        for (Map.Entry<Long, byte[]> entry : live.entrySet()) {
+            byte[] payload = entry.getValue();
+            int recordBytes = HEADER_BYTES + payload.length + TRAILER_BYTES;
+            queue.addLast(new Node<E>(serializer.fromBytes(payload), entry.getKey(), recordBytes));
+            liveBytes += recordBytes;
+        }
+        return live.size();
+    }
+
+    private static int checksum(byte type, long id, byte[] payload) {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(type).putLong(id).putInt(payload.length);
+        crc.update(header.array(), 0, HEADER_BYTES);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] encode(byte type, long id, byte[] payload) {
+        ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES + payload.length + TRAILER_BYTES);
+        b.put(type).putLong(id).putInt(payload.length).put(payload).putInt(checksum(type, id, payload));
+        return b.array();
+    }
+
+    /**
+     * 把一条记录追加到pending。必须持有锁。
+     * @return 记录的字节数
+     */
+    private int append(byte type, long id, byte[] payload) {
+        byte[] record = encode(type, id, payload);
+        pending.write(record, 0, record.length);
+        appended += record.length;
+        return record.length;
+    }
+
+    private void ensureUsable() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("journal failed", failure);
+        }
+    }
+
+    /**
+     * 等待appended坐标中target之前的记录全部落盘，必要时自己成为flusher。必须持有锁（一层）。
+     */
+    private void awaitDurable(long target) {
+        while (durable < target) {
+            if (failure != null) {
+                throw new UncheckedIOException("journal failed", failure);
+            }
+            if (flushing) {
+                flushed.awaitUninterruptibly();
+            } else {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * 在锁外把pending写入日志并fsync。必须持有锁（一层），并且没有其他线程在刷盘。
+     */
+    private void flush() {
+        // assert lock.getHoldCount() == 1 && !flushing;
+        if (pending.size() == 0) {
+            return;
+        }
+        byte[] data = pending.toByteArray();
+        pending.reset();
+        long end = appended;
+        FileChannel ch = channel;
+        flushing = true;
+        IOException ex = null;
+        lock.unlock();
+        try {
+            write(ch, data);
+            ch.force(false);
+        } catch (IOException x) {
+            ex = x;
+        } finally {
+            lock.lock();
+        }
+        flushing = false;
+        if (ex == null) {
+            durable = end;
+            fileBytes += data.length;
+            bytesWritten += data.length;
+            ++fsyncCount;
+            publishDurable();
+        } else if (failure == null) {
+            failure = ex;
+        }
+        flushed.signalAll();
+        if (ex != null) {
+            throw new UncheckedIOException("journal failed", ex);
+        }
+    }
+
+    /**
+     * 把appending中已经落盘的元素移入queue并唤醒消费者。必须持有锁。
+     */
+    private void publishDurable() {
+        for (Node<E> n; (n = appending.peekFirst()) != null && n.durableAt <= durable; ) {
+            appending.pollFirst();
+            queue.addLast(n);
+            notEmpty.signal();
+        }
+    }
+
+    private static void write(FileChannel ch, byte[] data) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(data);
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+    }
+
+    /**
+     * 把有效的ADD记录复制到新文件并替换旧日志。必须持有锁，并且没有线程在刷盘。
+     */
+    private void compact() throws IOException {
+        //先把pending写入旧日志，压缩只需要处理文件中的记录
+        byte[] data = pending.toByteArray();
+        pending.reset();
+        write(channel, data);
+        channel.force(false);
+        durable = appended;
+        fileBytes += data.length;
+        bytesWritten += data.length;
+        ++fsyncCount;
+        publishDurable();
+        flushed.signalAll();
+
+        Set<Long> liveIds = new HashSet<Long>();
+        for (Node<E> n : queue) {
+            liveIds.add(n.id);
+        }
+        for (Node<E> n : inFlight.values()) {
+            liveIds.add(n.id);
+        }
+        File tmp = new File(file.getPath() + ".compact");
+        long written = 0;
+        try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            RecordReader reader = new RecordReader(channel, fileBytes);
+            while (reader.next()) {
+                if (reader.type == ADD && liveIds.contains(reader.id)) {
+                    byte[] record = encode(ADD, reader.id, reader.payload);
+                    write(out, record);
+                    written += record.length;
+                }
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        //rename本身要等目录项落盘之后才不会因为崩溃而丢失
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+        channel = open();
+        channel.position(written);
+        fileBytes = written;
+        liveBytes = written;
+        bytesWritten += written;
+        ++compactionCount;
+    }
+
+    /**
+     * fsync目录，使其中的rename持久化。有的平台（Windows）不能打开目录，此时忽略。
+     */
+    private static void syncDirectory(File dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel d = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            d.force(true);
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * 后台线程：定期刷写确认记录，日志中无效记录过半时压缩
+     */
+    private void runBackground() {
+        final ReentrantLock lock = this.lock;
+        while (true) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(flushIntervalNanos);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (failure != null || flushing) {
+                    continue;
+                }
+                if (fileBytes + pending.size() >= compactMinBytes && liveBytes * 2 < fileBytes + pending.size()) {
+                    compact();
+                } else {
+                    flush();
+                }
+            } catch (IOException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            } catch (UncheckedIOException ignore) {
+                //failure已经记录
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 确认一个已经取出的元素，之后重启时不再重放它。
+     * ThreadPoolExecutor在afterExecute正常返回后自动调用，参见{@link AcknowledgingQueue#ack(Object)}。
+     * @param e take/poll/drainTo取出的元素
+     * @return false:元素不是从这个队列取出的，或者已经确认过
+     */
+    @Override
+    public boolean ack(Object e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node<E> n = inFlight.remove(e);
+            if (n == null) {
+                return false;
+            }
+            acknowledge(n);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入确认记录。必须持有锁。
+     */
+    private void acknowledge(Node<E> n) {
+        if (!closed && failure == null) {
+            append(ACK, n.id, EMPTY);
+        }
+        liveBytes -= n.recordBytes;
+    }
+
+    /**
+     * 入队，返回时ADD记录已经fsync到日志，元素在落盘之后才能被取出。
+     * @throws UncheckedIOException 如果序列化或写日志失败，此时元素没有入队
+     * @throws IllegalStateException 如果队列已经关闭
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        byte[] payload;
+        try {
+            payload = serializer.toBytes(e);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureUsable();
+            long id = nextId++;
+            int recordBytes = append(ADD, id, payload);
+            payloadBytes += payload.length;
+            liveBytes += recordBytes;
+            Node<E> node = new Node<E>(e, id, recordBytes);
+            node.durableAt = appended;
+            appending.addLast(node);
+            try {
+                awaitDurable(node.durableAt);
+            } catch (UncheckedIOException ex) {
+                //没有持久化的元素不能留在队列里被消费者取走
+                if (appending.remove(node)) {
+                    payloadBytes -= payload.length;
+                    liveBytes -= recordBytes;
+                }
+                throw ex;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 同{@link #offer(Object)}，队列无界，不会因为容量而阻塞
+     */
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    /**
+     * 同{@link #offer(Object)}，队列无界，不会因为容量而阻塞
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    /**
+     * 取出队头元素并放入inFlight。必须持有锁，并且队列不为空。
+     */
+    private E dequeue() {
+        Node<E> n = queue.pollFirst();
+        inFlight.put(n.item, n);
+        return n.item;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return queue.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Node<E> n = queue.peekFirst();
+            return (n == null) ? null : n.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列没有容量限制
+     * @return {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 删除队列中第一个相等的元素，并在日志中确认它
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Iterator<Node<E>> it = queue.iterator(); it.hasNext(); ) {
+                Node<E> n = it.next();
+                if (o.equals(n.item)) {
+                    it.remove();
+                    acknowledge(n);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> n : queue) {
+                if (o.equals(n.item)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = new Object[queue.size()];
+            int k = 0;
+            for (Node<E> n : queue) {
+                a[k++] = n.item;
+            }
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除队列中的所有元素并在日志中确认它们，已经取出未确认的元素不受影响
+     */
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> n; (n = queue.pollFirst()) != null; ) {
+                acknowledge(n);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 取出的元素与take一样进入inFlight，没有ack的元素重启后会被重放。
+     * ThreadPoolExecutor.shutdownNow返回的任务因此在下次启动时恢复。
+     */
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !queue.isEmpty()) {
+                //先加入c再出队，c.add抛出异常时元素仍留在队列中
+                c.add(queue.peekFirst().item);
+                dequeue();
+                ++n;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回基于当前元素快照的迭代器，不会反映之后的修改。
+     * {@code remove()} 从队列中删除第一个与返回元素相等的元素。
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * 把还没有写入的记录刷盘并关闭日志。队列中的和未确认的元素留在日志中，下次打开时重放。
+     * @throws IOException 如果最后一次刷盘失败
+     */
+    @Override
+    public void close() throws IOException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            closed = true;
+            try {
+                if (failure == null && pending.size() > 0) {
+                    try {
+                        write(channel, pending.toByteArray());
+                        channel.force(false);
+                    } catch (IOException ex) {
+                        failure = ex;
+                        throw ex;
+                    }
+                    pending.reset();
+                    durable = appended;
+                    publishDurable();
+                }
+            } finally {
+                //等待落盘的入队线程被唤醒：要么已经落盘，要么看到failure
+                flushed.signalAll();
+                channel.close();
+                background.interrupt();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 构造时从日志中恢复的元素个数
+     */
+    public int getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    /**
+     * @return 构造时重放日志花费的时间（纳秒）
+     */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    /**
+     * @return 入队元素序列化后的累计字节数
+     */
+    public long getPayloadBytes() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return payloadBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 累计写入磁盘的字节数，包括记录头、确认记录和压缩时重写的记录
+     */
+    public long getBytesWritten() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return bytesWritten;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写放大 = 累计写入磁盘的字节数 / 元素序列化后的累计字节数
+     * @return 写放大，还没有元素入队时为0
+     */
+    public double getWriteAmplification() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (payloadBytes == 0) ? 0.0 : (double) bytesWritten / payloadBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return fsync的次数，与入队次数的比值反映了组提交的效果
+     */
+    public long getFsyncCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return fsyncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 压缩的次数
+     */
+    public long getCompactionCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return compactionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 日志文件当前的大小
+     */
+    public long getJournalBytes() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return fileBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 已经取出、还没有确认的元素个数
+     */
+    public int inFlightCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Itr implements Iterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+        private E lastRet;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            return lastRet = (E) snapshot[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet == null) {
+                throw new IllegalStateException();
+            }
+            JournaledBlockingQueue.this.remove(lastRet);
+            lastRet = null;
+        }
+    }
+}
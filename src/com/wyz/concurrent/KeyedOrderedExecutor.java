@@ -0,0 +1,401 @@
+package com.wyz.concurrent;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * @ClassName KeyedOrderedExecutor
+ * @Description 在共享线程池上按key串行执行任务：同一个key的任务按提交顺序依次执行，不同key的任务并行执行
+ * @Author wangyuezheng
+ * @Date 2026/10/18 21:40
+ */
+
+public class KeyedOrderedExecutor {
+
+    /*
+     * 每个有未完成任务的key对应一个Mailbox，保存在mailboxes中。
+     * 交给线程池的不是Mailbox本身，而是一次性的Ticket：Mailbox.ticket指向当前有效的Ticket，
+     * Ticket运行时先CAS把ticket置为null，成功的才能执行任务。所以同一时刻一个key最多只有一个线程在执行，
+     * 过期的Ticket（已经被收回或重新发出）即使之后被线程池执行也什么都不做。
+     *
+     * 提交：在mailboxes.compute中入队，这个key原来没有Mailbox时创建一个并发出第一个Ticket。
+     * 执行：最多执行batchSize个任务后让出线程：
+     *   1、队列还有任务，发出新的Ticket，让其他key的任务有机会执行，热点key不会独占线程；
+     *   2、队列已空，在mailboxes.compute中确认仍然为空后删除Mailbox，空闲的key不占用任何内存。
+     * 入队和删除都在同一个key的compute中进行，删除时不可能有任务刚好入队而丢失；
+     * 删除之后再提交的任务会创建新的Mailbox，这时旧的执行者已经不再执行任务，顺序不受影响。
+     *
+     * 不依赖线程池一定会执行发出的Ticket：
+     *   1、线程池抛出RejectedExecutionException（AbortPolicy等）：让出时在当前线程继续执行；
+     *      创建Mailbox时把调用者自己的任务拿出来并抛出异常，其他线程同时放入的任务留给看门狗重试；
+     *   2、CallerRunsPolicy：让出时Ticket在当前线程里被同步调用，Ticket发现自己还在发出它的execute中，
+     *      只记录下来并返回，由外层循环继续执行，栈不会随批次增长；
+     *   3、线程池已经shutdown（CallerRunsPolicy等会静默丢弃）：收回Ticket，
+     *      Mailbox中的任务不会再执行，是Future的被取消，其余的计入droppedCount；
+     *   4、静默丢弃（DiscardPolicy、DiscardOldestPolicy或者其他不抛异常也不执行的策略）：无法当场发现，
+     *      由看门狗处理：有活跃的key时每隔stallTimeout在共享的TimeoutService上检查一次，
+     *      发现发出超过stallTimeout仍没有开始执行的Ticket时，启动一个临时的恢复线程收回并重新发出它们。
+     *      线程池是ThreadPoolExecutor时，仍在它的队列中的Ticket只是在排队，不会被收回：
+     *      收回会让这个key重新排到队尾，线程池积压时key会一直得不到执行。
+     *      其他线程池无法区分排队和丢弃，按发出的时间判断，误判只会在线程池里多留一个过期的Ticket。
+     *      重新发出调用的execute可能阻塞（例如CallerBlocksPolicy），所以不在共享的TimeoutService线程上进行，
+     *      同一时刻最多只有一个恢复线程。
+     * stallTimeout为0时关闭看门狗，此时只支持AbortPolicy这类抛出异常的策略和CallerRunsPolicy，
+     * 创建Mailbox时被拒绝，其他线程同时放入的任务也按线程池关闭的方式处理。
+     *
+     * 单个任务抛出的异常交给当前线程的UncaughtExceptionHandler处理，不影响同一个key后面的任务。
+     */
+
+    /** 默认每批最多执行的任务数 */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    /** 默认的看门狗间隔（毫秒） */
+    public static final long DEFAULT_STALL_TIMEOUT_MILLIS = 1000;
+
+    private static final AtomicReferenceFieldUpdater<Mailbox, Ticket> TICKET =
+            AtomicReferenceFieldUpdater.newUpdater(Mailbox.class, Ticket.class, "ticket");
+
+    private final Executor executor;
+    private final int batchSize;
+    private final long stallNanos;
+    private final ConcurrentHashMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<Object, Mailbox>();
+    private final AtomicBoolean watchdogArmed = new AtomicBoolean();
+    /** 有恢复线程正在运行 */
+    private final AtomicBoolean recovering = new AtomicBoolean();
+    private final AtomicLong recoveredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param executor 执行任务的线程池，通常是ThreadPoolExecutor
+     */
+    public KeyedOrderedExecutor(Executor executor) {
+        this(executor, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param executor 执行任务的线程池，通常是ThreadPoolExecutor
+     * @param batchSize 一个key连续执行多少个任务后让出线程
+     */
+    public KeyedOrderedExecutor(Executor executor, int batchSize) {
+        this(executor, batchSize, DEFAULT_STALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param executor 执行任务的线程池，通常是ThreadPoolExecutor
+     * @param batchSize 一个key连续执行多少个任务后让出线程
+     * @param stallTimeout 发出后多久没有开始执行就认为被线程池丢弃，0表示关闭看门狗
+     * @param unit stallTimeout的单位
+     */
+    public KeyedOrderedExecutor(Executor executor, int batchSize, long stallTimeout, TimeUnit unit) {
+        if (executor == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (batchSize <= 0 || stallTimeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.stallNanos = unit.toNanos(stallTimeout);
+    }
+
+    /**
+     * 提交任务，在key之前提交的所有任务完成之后执行
+     * @param key 串行执行的key，按equals/hashCode区分
+     * @param task 任务
+     * @throws RejectedExecutionException 如果线程池拒绝执行这个key的任务（此时task不会执行），
+     *         线程池已经shutdown时，这个key上其他已经入队的任务也不会再执行，参见{@link #getDroppedCount()}
+     */
+    public void execute(Object key, Runnable task) {
+        if (key == null || task == null) {
+            throw new NullPointerException();
+        }
+        Mailbox[] created = new Mailbox[1];
+        Mailbox mailbox = mailboxes.compute(key, (k, m) -> {
+            if (m == null) {
+                m = created[0] = new Mailbox(k);
+            }
+            m.tasks.add(task);
+            return m;
+        });
+        if (created[0] == null) {
+            return;
+        }
+        armWatchdog();
+        //提交线程不是执行者，CallerRunsPolicy可以直接在这里执行
+        Ticket t = new Ticket(mailbox, null);
+        mailbox.ticket = t;
+        try {
+            executor.execute(t);
+        } catch (RejectedExecutionException ex) {
+            mailbox.tasks.remove(task);
+            if (isShutdown()) {
+                if (TICKET.compareAndSet(mailbox, t, null)) {
+                    abandon(mailbox);
+                }
+            } else if (TICKET.compareAndSet(mailbox, t, null) && !retire(mailbox)) {
+                //其他线程同时放入了任务，它们已经正常返回，留给看门狗重新发出；没有看门狗时只能放弃
+                if (stallNanos > 0) {
+                    mailbox.ticket = t;
+                } else {
+                    abandon(mailbox);
+                }
+            }
+            throw ex;
+        }
+        if (isShutdown() && TICKET.compareAndSet(mailbox, t, null)) {
+            //线程池已经关闭，Ticket被静默丢弃（或者在关闭前入队，收回之后它什么都不做）
+            mailbox.tasks.remove(task);
+            abandon(mailbox);
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+    }
+
+    /**
+     * 提交有返回值的任务，参见{@link #execute(Object, Runnable)}
+     * @return 任务的Future
+     */
+    public <T> Future<T> submit(Object key, Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        FutureTask<T> future = new FutureTask<T>(task);
+        execute(key, future);
+        return future;
+    }
+
+    /**
+     * @return 当前有未完成任务的key的数量
+     */
+    public int activeKeyCount() {
+        return mailboxes.size();
+    }
+
+    /**
+     * @return key上还没有开始执行的任务数，key空闲时为0
+     */
+    public int queuedTaskCount(Object key) {
+        Mailbox m = mailboxes.get(key);
+        return m == null ? 0 : m.tasks.size();
+    }
+
+    /**
+     * @return 看门狗收回并重新发出的Ticket数，持续增长说明线程池在静默丢弃任务（在队列中排队的Ticket不计入）
+     */
+    public long getRecoveredCount() {
+        return recoveredCount.get();
+    }
+
+    /**
+     * @return 因为线程池已经关闭（或者关闭看门狗时被拒绝）而不会再执行的任务数，不包括抛出异常通知了调用者的任务
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private boolean isShutdown() {
+        return executor instanceof ExecutorService && ((ExecutorService) executor).isShutdown();
+    }
+
+    /**
+     * 队列为空时删除Mailbox，调用者必须是执行者（持有的Ticket已经CAS成功）
+     * @return true:已经删除
+     */
+    private boolean retire(Mailbox mailbox) {
+        return mailboxes.compute(mailbox.key, (k, m) -> (m == null || m.tasks.isEmpty()) ? null : m) == null;
+    }
+
+    /**
+     * 线程池已经关闭：删除Mailbox，之前入队的任务不会再执行，是Future的取消掉
+     */
+    private void abandon(Mailbox mailbox) {
+        mailboxes.remove(mailbox.key, mailbox);
+        for (Runnable task; (task = mailbox.tasks.poll()) != null; ) {
+            if (task instanceof Future) {
+                ((Future<?>) task).cancel(false);
+            }
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void armWatchdog() {
+        if (stallNanos > 0 && !watchdogArmed.get() && watchdogArmed.compareAndSet(false, true)) {
+            TimeoutService.shared().newTimeout(this::sweep, stallNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 看门狗，在TimeoutService的线程上执行：只检查有没有发出超过stallTimeout仍没有开始执行的Ticket，
+     * 有的话交给恢复线程处理，这里不调用线程池，以免阻塞共享线程上的其他超时任务
+     */
+    private void sweep() {
+        watchdogArmed.set(false);
+        if (hasStalled() && recovering.compareAndSet(false, true)) {
+            Thread t = new Thread(this::recover, "keyed-ordered-executor-recovery");
+            t.setDaemon(true);
+            try {
+                t.start();
+            } catch (Throwable ex) {
+                recovering.set(false);
+                throw ex;
+            }
+        }
+        if (!mailboxes.isEmpty()) {
+            armWatchdog();
+        }
+    }
+
+    private boolean hasStalled() {
+        long now = System.nanoTime();
+        for (Mailbox m : mailboxes.values()) {
+            Ticket t = m.ticket;
+            if (t != null && now - t.issuedAt >= stallNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在恢复线程上执行：收回发出超过stallTimeout、线程池已经不再持有的Ticket并重新发出。
+     * 不在这个线程上执行任务：CallerRunsPolicy同步调用Ticket时Ticket什么都不做，留到下一次检查。
+     */
+    private void recover() {
+        try {
+            long now = System.nanoTime();
+            boolean shutdown = isShutdown();
+            Set<Object> queued = queuedTickets();
+            for (Mailbox m : mailboxes.values()) {
+                Ticket t = m.ticket;
+                if (t == null || now - t.issuedAt < stallNanos || (queued != null && queued.contains(t))
+                        || !TICKET.compareAndSet(m, t, null)) {
+                    continue;
+                }
+                recoveredCount.incrementAndGet();
+                if (shutdown) {
+                    abandon(m);
+                } else if (!issue(m, Thread.currentThread())) {
+                    //没有发出去，留一个未发出的Ticket，下一次检查时重试
+                    m.ticket = new Ticket(m, null);
+                }
+            }
+        } finally {
+            recovering.set(false);
+        }
+    }
+
+    /**
+     * @return 线程池队列中的任务（按引用比较），不是ThreadPoolExecutor时返回null
+     */
+    private Set<Object> queuedTickets() {
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            return null;
+        }
+        Object[] queued = ((ThreadPoolExecutor) executor).getQueue().toArray();
+        Set<Object> set = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>(queued.length * 2));
+        Collections.addAll(set, queued);
+        return set;
+    }
+
+    /**
+     * 发出一个新的Ticket，调用者必须是执行者（或者刚刚收回了Ticket）
+     * @param owner 不允许同步执行这个Ticket的线程
+     * @return true:Ticket已经交给线程池，调用者不再是执行者；
+     *         false:线程池拒绝、在owner中同步调用或者已经关闭，Ticket已经收回，调用者仍然是执行者
+     */
+    private boolean issue(Mailbox mailbox, Thread owner) {
+        Ticket t = new Ticket(mailbox, owner);
+        mailbox.ticket = t;
+        t.inExecute = true;
+        try {
+            executor.execute(t);
+        } catch (RejectedExecutionException ex) {
+            return !TICKET.compareAndSet(mailbox, t, null);
+        } finally {
+            t.inExecute = false;
+        }
+        if (t.callerRan || isShutdown()) {
+            return !TICKET.compareAndSet(mailbox, t, null);
+        }
+        return true;
+    }
+
+    /**
+     * 一个key的任务队列
+     */
+    private final class Mailbox {
+        final Object key;
+        /** 入队在compute中，出队只由执行者进行 */
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        /** 当前有效的Ticket，null表示有执行者正在执行或者正在被收回 */
+        volatile Ticket ticket;
+
+        Mailbox(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * 由持有Ticket的线程调用
+         */
+        void drain() {
+            for (;;) {
+                for (int i = 0; i < batchSize; i++) {
+                    Runnable task = tasks.poll();
+                    if (task == null) {
+                        break;
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable ex) {
+                        Thread t = Thread.currentThread();
+                        t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                    }
+                }
+                if (tasks.isEmpty() && retire(this)) {
+                    return;
+                }
+                if (issue(this, Thread.currentThread())) {
+                    return;
+                }
+                //线程池没有接受，已经入队的任务不能丢弃，在当前线程继续执行
+            }
+        }
+    }
+
+    /**
+     * 交给线程池的一次性执行凭证
+     */
+    private final class Ticket implements Runnable {
+        final Mailbox mailbox;
+        /** 发出这个Ticket的执行者，null表示可以在任何线程同步执行 */
+        final Thread owner;
+        final long issuedAt = System.nanoTime();
+        /** owner正在execute这个Ticket，只由owner读写 */
+        boolean inExecute;
+        /** 在owner的execute中被同步调用了（CallerRunsPolicy），只由owner读写 */
+        boolean callerRan;
+
+        Ticket(Mailbox mailbox, Thread owner) {
+            this.mailbox = mailbox;
+            this.owner = owner;
+        }
+
+        @Override
+        public void run() {
+            if (owner == Thread.currentThread() && inExecute) {
+                callerRan = true;
+                return;
+            }
+            if (TICKET.compareAndSet(mailbox, this, null)) {
+                mailbox.drain();
+            }
+        }
+    }
+}
@@ -63,12 +63,23 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         Node(E x) { item = x; }
     }
 
-    /** The capacity bound, or Integer.MAX_VALUE if none */
-    private final int capacity;
+    /**
+     * The capacity bound, or Integer.MAX_VALUE if none.  Written only
+     * while holding putLock (see setCapacity); read without locking,
+     * so after a shrink count may temporarily exceed it.
+     */
+    private volatile int capacity;
 
     /** Current number of elements */
     private final AtomicInteger count = new AtomicInteger();
 
+    /**
+     * Registered watermarks, or null if none.  The array is replaced
+     * (never mutated) while fully locked, and read without locking
+     * after every put and take.
+     */
+    private transient volatile Watermark[] watermarks;
+
     /**
      * Head of linked list.
      * Invariant: head.item == null
@@ -93,6 +104,198 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
     /** Wait queue for waiting puts */
     private final Condition notFull = putLock.newCondition();
 
+    /**
+     * A callback for queue size crossing registered watermarks.
+     * Callbacks run in the thread whose put or take caused the
+     * crossing, after the queue locks have been released, and should
+     * return quickly.  Callbacks for one registration never overlap
+     * and arrive in the order the crossings were observed.  A {@code RuntimeException} thrown by a callback
+     * is passed to that thread's uncaught exception handler and does
+     * not affect the put or take.
+     */
+    public interface WatermarkListener {
+        /**
+         * Invoked when the size rises from below to at least the high
+         * watermark.
+         *
+         * @param queue the queue
+         * @param size the size observed at the crossing
+         */
+        void onHighWatermark(LinkedBlockingQueue<?> queue, int size);
+
+        /**
+         * Invoked when, after a high watermark crossing, the size falls
+         * to at most the low watermark.
+         *
+         * @param queue the queue
+         * @param size the size observed at the crossing
+         */
+        void onLowWatermark(LinkedBlockingQueue<?> queue, int size);
+    }
+
+    /**
+     * A registered watermark.  The "above" flag is only ever flipped
+     * while holding the watermark's monitor, so high and low callbacks
+     * strictly alternate; sizes oscillating between the two marks
+     * (hysteresis band) fire nothing.  The flag is read without the
+     * monitor on the put and take paths.
+     */
+    static final class Watermark {
+        final int high;
+        final int low;
+        final WatermarkListener listener;
+        volatile boolean above;
+
+        Watermark(int high, int low, WatermarkListener listener) {
+            this.high = high;
+            this.low = low;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * Registers a listener notified when the number of elements
+     * reaches {@code high}, and again when it later falls to
+     * {@code low}.  The two notifications alternate.  The put and take
+     * paths pay a single volatile read for this; no extra locking.
+     *
+     * @param high the high watermark
+     * @param low the low watermark, less than {@code high}
+     * @param listener the listener
+     * @throws IllegalArgumentException if {@code low} is negative or
+     *         not less than {@code high}
+     * @throws NullPointerException if {@code listener} is null
+     */
+    public void addWatermarkListener(int high, int low, WatermarkListener listener) {
+        if (listener == null){
+            throw new NullPointerException();
+        }
+        if (low < 0 || low >= high){
+            throw new IllegalArgumentException();
+        }
+        Watermark w = new Watermark(high, low, listener);
+        fullyLock();
+        try {
+            Watermark[] ws = watermarks;
+            if (ws == null) {
+                ws = new Watermark[] { w };
+            } else {
+                ws = Arrays.copyOf(ws, ws.length + 1);
+                ws[ws.length - 1] = w;
+            }
+            // already above: the next notification will be the low one
+            if (count.get() >= high){
+                w.above = true;
+            }
+            watermarks = ws;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * Removes all watermarks registered with the given listener.
+     *
+     * @param listener the listener
+     * @return {@code true} if any watermark was removed
+     */
+    public boolean removeWatermarkListener(WatermarkListener listener) {
+        fullyLock();
+        try {
+            Watermark[] ws = watermarks;
+            if (ws == null){
+                return false;
+            }
+            List<Watermark> kept = new ArrayList<Watermark>(ws.length);
+            for (Watermark w : ws) {
+                if (w.listener != listener){
+                    kept.add(w);
+                }
+            }
+            if (kept.size() == ws.length){
+                return false;
+            }
+            watermarks = kept.isEmpty() ? null : kept.toArray(new Watermark[0]);
+            return true;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    /**
+     * Invoked without locks after an insertion left n elements.
+     */
+    private void checkHighWatermark(int n) {
+        Watermark[] ws = watermarks;
+        if (ws != null){
+            for (Watermark w : ws) {
+                if (n >= w.high && !w.above){
+                    settleWatermark(w);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invoked without locks after a removal left n elements.
+     */
+    private void checkLowWatermark(int n) {
+        Watermark[] ws = watermarks;
+        if (ws != null){
+            for (Watermark w : ws) {
+                if (n <= w.low && w.above){
+                    settleWatermark(w);
+                }
+            }
+        }
+    }
+
+    /**
+     * The caller's n was read after its own put or take, so by now
+     * other threads may have moved the count back across the band
+     * while seeing the old flag and doing nothing.  Flips and
+     * callbacks therefore happen under the watermark's monitor, each
+     * decided on a fresh count, and repeat until the flag agrees with
+     * the count.  Callbacks of one watermark are thus delivered one at
+     * a time in flip order, and the last one delivered always matches
+     * the side of the band the queue was last seen on.
+     */
+    private void settleWatermark(Watermark w) {
+        synchronized (w) {
+            for (;;) {
+                int c = count.get();
+                if (w.above) {
+                    if (c > w.low){
+                        return;
+                    }
+                    w.above = false;
+                    fireWatermark(w, false, c);
+                } else {
+                    if (c < w.high){
+                        return;
+                    }
+                    w.above = true;
+                    fireWatermark(w, true, c);
+                }
+            }
+        }
+    }
+
+    private void fireWatermark(Watermark w, boolean high, int n) {
+        try {
+            if (high){
+                w.listener.onHighWatermark(this, n);
+            } else {
+                w.listener.onLowWatermark(this, n);
+            }
+        } catch (RuntimeException ex) {
+            // the element is already enqueued/dequeued; don't make the
+            // operation look failed
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+        }
+    }
+
     /**
      * Signals a waiting take. Called only from put/offer (which do not
      * otherwise ordinarily lock takeLock.)
@@ -181,7 +384,8 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
     }
 
     /**
-     * Creates a {@code LinkedBlockingQueue} with the given (fixed) capacity.
+     * Creates a {@code LinkedBlockingQueue} with the given capacity,
+     * which may later be changed with {@link #setCapacity}.
      *
      * @param capacity the capacity of this queue
      * @throws IllegalArgumentException if {@code capacity} is not greater
@@ -225,6 +429,42 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         }
     }
 
+    /**
+     * Returns the current capacity bound of this queue.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Sets the capacity bound of this queue, taking effect
+     * immediately.  If the capacity grows, all producers blocked in
+     * {@code put} or timed {@code offer} are woken to retry.  If it
+     * shrinks below the current size, no elements are discarded: new
+     * insertions block or fail until takes drain the queue below the
+     * new bound.
+     *
+     * @param capacity the new capacity
+     * @throws IllegalArgumentException if {@code capacity} is not greater
+     *         than zero
+     */
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            int old = this.capacity;
+            this.capacity = capacity;
+            if (capacity > old) {
+                notFull.signalAll();
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
     // this doc comment is overridden to remove the reference to collections
     // greater in size than Integer.MAX_VALUE
     /**
@@ -242,8 +482,9 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
     /**
      * Returns the number of additional elements that this queue can ideally
      * (in the absence of memory or resource constraints) accept without
-     * blocking. This is always equal to the initial capacity of this queue
-     * less the current {@code size} of this queue.
+     * blocking. This is always equal to the current capacity of this queue
+     * less the current {@code size} of this queue, or zero if the capacity
+     * has been reduced below the current size.
      *
      * <p>Note that you <em>cannot</em> always tell if an attempt to insert
      * an element will succeed by inspecting {@code remainingCapacity}
@@ -252,7 +493,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
      */
     @Override
     public int remainingCapacity() {
-        return capacity - count.get();
+        return Math.max(0, capacity - count.get());
     }
 
     /**
@@ -283,7 +524,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
              * signalled if it ever changes from capacity. Similarly
              * for all other uses of count in other wait guards.
              */
-            while (count.get() == capacity) {
+            while (count.get() >= capacity) {
                 notFull.await();
             }
             enqueue(node);
@@ -297,6 +538,9 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         if (c == 0){
             signalNotEmpty();
         }
+        if (c >= 0){
+            checkHighWatermark(c + 1);
+        }
     }
 
     /**
@@ -319,7 +563,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         final AtomicInteger count = this.count;
         putLock.lockInterruptibly();
         try {
-            while (count.get() == capacity) {
+            while (count.get() >= capacity) {
                 if (nanos <= 0){
                     return false;
                 }
@@ -336,6 +580,9 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         if (c == 0){
             signalNotEmpty();
         }
+        if (c >= 0){
+            checkHighWatermark(c + 1);
+        }
         return true;
     }
 
@@ -356,7 +603,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
             throw new NullPointerException();
         }
         final AtomicInteger count = this.count;
-        if (count.get() == capacity){
+        if (count.get() >= capacity){
             return false;
         }
 
@@ -378,6 +625,9 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         if (c == 0){
             signalNotEmpty();
         }
+        if (c >= 0){
+            checkHighWatermark(c + 1);
+        }
         return c >= 0;
     }
 
@@ -400,9 +650,12 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         } finally {
             takeLock.unlock();
         }
-        if (c == capacity){
+        if (c >= capacity){
             signalNotFull();
         }
+        if (c > 0){
+            checkLowWatermark(c - 1);
+        }
         return x;
     }
 
@@ -429,9 +682,12 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         } finally {
             takeLock.unlock();
         }
-        if (c == capacity){
+        if (c >= capacity){
             signalNotFull();
         }
+        if (c > 0){
+            checkLowWatermark(c - 1);
+        }
         return x;
     }
 
@@ -456,9 +712,12 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         } finally {
             takeLock.unlock();
         }
-        if (c == capacity){
+        if (c >= capacity){
             signalNotFull();
         }
+        if (c > 0){
+            checkLowWatermark(c - 1);
+        }
         return x;
     }
 
@@ -494,7 +753,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
         if (last == p){
             last = trail;
         }
-        if (count.getAndDecrement() == capacity){
+        if (count.getAndDecrement() >= capacity){
             notFull.signal();
         }
     }
@@ -528,6 +787,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
             return false;
         } finally {
             fullyUnlock();
+            checkLowWatermark(count.get());
         }
     }
 
@@ -685,12 +945,13 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
             }
             head = last;
             // assert head.item == null && head.next == null;
-            if (count.getAndSet(0) == capacity){
+            if (count.getAndSet(0) >= capacity){
                 notFull.signal();
             }
 
         } finally {
             fullyUnlock();
+            checkLowWatermark(0);
         }
     }
 
@@ -745,7 +1006,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
                 if (i > 0) {
                     // assert h.item == null;
                     head = h;
-                    signalNotFull = (count.getAndAdd(-i) == capacity);
+                    signalNotFull = (count.getAndAdd(-i) >= capacity);
                 }
             }
         } finally {
@@ -753,6 +1014,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
             if (signalNotFull){
                 signalNotFull();
             }
+            checkLowWatermark(count.get());
         }
     }
 
@@ -855,6 +1117,7 @@ public class LinkedBlockingQueue<E> extends AbstractQueue<E>
             } finally {
                 fullyUnlock();
             }
+            checkLowWatermark(count.get());
         }
     }
 
@@ -0,0 +1,473 @@
+package com.wyz.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName LinkedTaskQueue
+ * @Description 侵入式的任务阻塞队列：任务自身就是链表节点，入队不再分配Node
+ * @Author wangyuezheng
+ * @Date 2026/10/18 14:10
+ */
+
+public class LinkedTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /*
+     * LinkedBlockingQueue 每次入队都要分配一个Node来保存元素。这里的元素如果实现了Node接口
+     * （ThreadPoolExecutor为这个队列创建的IntrusiveFutureTask、ArgTask），
+     * 就直接用元素自身的next字段链接，不需要任何额外对象；其他Runnable仍然包装成Holder。
+     *
+     * 一个节点同一时刻只能在一个队列里。入队前用casNext(null, END)占有节点：
+     *   next == null  节点不在任何队列中
+     *   next == END   节点是某个队列的最后一个
+     *   其他           节点在队列中，next为后继
+     * 占有失败（同一个任务被重复提交）时退回到Holder包装，行为与LinkedBlockingQueue一致。
+     * 出队时把next重新置为null，节点可以再次入队（例如被复用的ArgTask）。
+     *
+     * 元素本身就是节点，不能像LinkedBlockingQueue那样用一个哑节点把put和take拆成两把锁，
+     * 所以这里只用一把锁和两个条件（与ArrayBlockingQueue相同）。
+     *
+     * 迭代器基于调用iterator()时的快照，remove()按equals删除第一个匹配的元素。
+     */
+
+    /**
+     * 可以直接链接进队列的任务
+     */
+    interface Node {
+        Node getNext();
+
+        void setNext(Node next);
+
+        boolean casNext(Node expect, Node update);
+    }
+
+    /**
+     * 包装没有实现Node的Runnable（以及已经在某个队列中的节点）
+     */
+    static final class Holder implements Node {
+        final Runnable task;
+        /** 仅在所属队列的锁下访问 */
+        Node next;
+
+        Holder(Runnable task) {
+            this.task = task;
+            this.next = END;
+        }
+
+        @Override
+        public Node getNext() {
+            return next;
+        }
+
+        @Override
+        public void setNext(Node next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean casNext(Node expect, Node update) {
+            if (next != expect) {
+                return false;
+            }
+            next = update;
+            return true;
+        }
+    }
+
+    /**
+     * 最后一个节点的next
+     */
+    static final Node END = new Holder(null);
+
+    /** The capacity bound, or Integer.MAX_VALUE if none */
+    private final int capacity;
+
+    /** Number of elements, guarded by lock */
+    private int count;
+
+    /** 第一个节点，guarded by lock */
+    private Node head;
+
+    /** 最后一个节点，guarded by lock */
+    private Node last;
+
+    /** Main lock guarding all access */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * 创建一个容量为{@link Integer#MAX_VALUE}的LinkedTaskQueue
+     */
+    public LinkedTaskQueue() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity 队列的容量
+     * @throws IllegalArgumentException 如果 capacity 小于等于0
+     */
+    public LinkedTaskQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 把任务链接到队尾。必须持有锁，并且队列未满。
+     */
+    private void enqueue(Runnable r) {
+        // assert lock.isHeldByCurrentThread();
+        // assert count < capacity;
+        Node node;
+        if (r instanceof Node && ((Node) r).casNext(null, END)) {
+            node = (Node) r;
+        } else {
+            node = new Holder(r);
+        }
+        if (last == null) {
+            head = node;
+        } else {
+            last.setNext(node);
+        }
+        last = node;
+        ++count;
+        notEmpty.signal();
+    }
+
+    /**
+     * 从队头取出任务。必须持有锁，并且队列不为空。
+     */
+    private Runnable dequeue() {
+        // assert lock.isHeldByCurrentThread();
+        // assert head != null;
+        Node h = head;
+        Node next = h.getNext();
+        head = (next == END) ? null : next;
+        if (head == null) {
+            last = null;
+        }
+        //释放占有，节点可以再次入队
+        h.setNext(null);
+        --count;
+        notFull.signal();
+        return taskOf(h);
+    }
+
+    /**
+     * 把节点p从链表中摘除，trail是p的前驱（p是第一个节点时为null）。必须持有锁。
+     */
+    private void unlink(Node p, Node trail) {
+        // assert lock.isHeldByCurrentThread();
+        Node next = p.getNext();
+        if (trail == null) {
+            head = (next == END) ? null : next;
+        } else {
+            //p是最后一个时，trail.next被置为END
+            trail.setNext(next);
+        }
+        if (last == p) {
+            last = trail;
+        }
+        p.setNext(null);
+        --count;
+        notFull.signal();
+    }
+
+    private static Node successor(Node p) {
+        Node next = p.getNext();
+        return (next == END) ? null : next;
+    }
+
+    private static Runnable taskOf(Node p) {
+        return (p instanceof Holder) ? ((Holder) p).task : (Runnable) p;
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return capacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable r) throws InterruptedException {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                notFull.await();
+            }
+            enqueue(r);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r, long timeout, TimeUnit unit) throws InterruptedException {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == capacity) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(r);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable r) {
+        if (r == null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (count == capacity) {
+                return false;
+            }
+            enqueue(r);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (count == 0) ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (head == null) ? null : taskOf(head);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node trail = null, p = head; p != null; trail = p, p = successor(p)) {
+                if (o.equals(taskOf(p))) {
+                    unlink(p, trail);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node p = head; p != null; p = successor(p)) {
+                if (o.equals(taskOf(p))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = new Object[count];
+            int k = 0;
+            for (Node p = head; p != null; p = successor(p)) {
+                a[k++] = taskOf(p);
+            }
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node p = head, next; p != null; p = next) {
+                next = successor(p);
+                p.setNext(null);
+            }
+            head = last = null;
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && head != null) {
+                //先加入c再出队，c.add抛出异常时元素仍留在队列中
+                c.add(taskOf(head));
+                dequeue();
+                ++n;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回基于当前元素快照的迭代器，不会反映之后的修改。
+     * {@code remove()} 从队列中删除第一个与返回元素相等的任务。
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        return new Itr(toArray());
+    }
+
+    private class Itr implements Iterator<Runnable> {
+        private final Object[] snapshot;
+        private int cursor;
+        private Runnable lastRet;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        public Runnable next() {
+            if (cursor >= snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            return lastRet = (Runnable) snapshot[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet == null) {
+                throw new IllegalStateException();
+            }
+            LinkedTaskQueue.this.remove(lastRet);
+            lastRet = null;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.wyz.concurrent;
+
+import com.sun.istack.internal.NotNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName LongFuture
+ * @Description 结果为long的Future，getAsLong()直接返回基本类型，不需要拆箱
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:45
+ */
+
+public interface LongFuture extends Future<Long> {
+
+    /**
+     * 等待计算完成，然后返回结果
+     * @return 计算结果
+     * @throws CancellationException 计算被取消
+     * @throws ExecutionException 计算抛出了异常
+     * @throws InterruptedException 等待时当前线程被中断
+     */
+    long getAsLong() throws InterruptedException, ExecutionException;
+
+    /**
+     * 最多等待给定的时间，然后返回结果
+     * @param timeout 最长等待时间
+     * @param unit timeout 的时间单位
+     * @return 计算结果
+     * @throws CancellationException 计算被取消
+     * @throws ExecutionException 计算抛出了异常
+     * @throws InterruptedException 等待时当前线程被中断
+     * @throws TimeoutException 等待超时
+     */
+    long getAsLong(long timeout, @NotNull TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException;
+}
@@ -0,0 +1,91 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName LongFutureTask
+ * @Description 结果保存在long字段中的FutureTask，执行和读取结果都不装箱
+ * @Author wangyuezheng
+ * @Date 2026/10/18 15:45
+ */
+
+public class LongFutureTask extends FutureTask<Long> implements LongFuture {
+
+    /*
+     * FutureTask的callable是私有的Compute：call()把结果写入value后返回null，FutureTask随后set(null)。
+     * value在状态从NEW变为COMPLETING的CAS之前写入，读取方先读到完成状态再读value，
+     * 与outcome有相同的可见性保证。任务本身不实现Callable，外部无法绕过run()直接计算。
+     *
+     * 通过Future<Long>的get()读取时才会装箱。
+     * Int/Long/DoubleFutureTask只有结果的类型不同，刻意保持相同的结构，不抽取公共父类。
+     */
+
+    /**
+     * 执行计算任务并保存结果
+     */
+    private static final class Compute implements Callable<Long> {
+        /** 计算任务，运行后置为null */
+        private LongCallable task;
+
+        /** 计算结果，由FutureTask的state的读写保证可见性 */
+        private long value;
+
+        Compute(LongCallable task) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            this.task = task;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            LongCallable t = task;
+            try {
+                value = t.callAsLong();
+            } finally {
+                task = null;
+            }
+            return null;
+        }
+    }
+
+    private final Compute compute;
+
+    /**
+     * @param task 计算任务
+     * @throws NullPointerException 如果 task 为null
+     */
+    public LongFutureTask(LongCallable task) {
+        this(new Compute(task));
+    }
+
+    private LongFutureTask(Compute compute) {
+        super(compute);
+        this.compute = compute;
+    }
+
+    @Override
+    public long getAsLong() throws InterruptedException, ExecutionException {
+        super.get();
+        return compute.value;
+    }
+
+    @Override
+    public long getAsLong(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        super.get(timeout, unit);
+        return compute.value;
+    }
+
+    @Override
+    public Long get() throws InterruptedException, ExecutionException {
+        return getAsLong();
+    }
+
+    @Override
+    public Long get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return getAsLong(timeout, unit);
+    }
+}
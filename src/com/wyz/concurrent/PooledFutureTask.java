@@ -0,0 +1,410 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @ClassName PooledFutureTask
+ * @Description 可以归还到FutureTaskPool重复使用的一次性任务，用代数（stamp）防止归还后继续使用
+ * @Author wangyuezheng
+ * @Date 2026/10/18 14:55
+ */
+
+public final class PooledFutureTask<V> implements RunnableFuture<V> {
+
+    /*
+     * FutureTask 完成后就不能再使用了，runAndReset 只适用于不设置结果的周期任务。
+     * 这个类从FutureTaskPool借出，执行、读取结果之后release，下一次借出时复用同一个对象。
+     *
+     * 用法：
+     * <pre> {@code
+     * PooledFutureTask<Resp> t = pool.submit(executor, callable);
+     * int stamp = t.stamp();
+     * try {
+     *     return t.get(stamp);
+     * } finally {
+     *     t.release(stamp);
+     * }}</pre>
+     *
+     * ctl 把代数和状态放在一个long里：高32位为代数，低32位为状态。每次release代数加1，
+     * 所有带stamp的操作都用包含代数的值做CAS或比较，所以旧的持有者在归还之后调用
+     * get(stamp)/cancel(stamp)/release(stamp) 会得到IllegalStateException，
+     * 而不会读到或取消下一个借用者的任务。不带stamp的Future方法作用于当前代，没有这个保护。
+     *
+     * 状态转换（同一代内）：
+     * NEW -> RUNNING -> COMPLETING -> NORMAL/EXCEPTIONAL
+     * NEW/RUNNING -> CANCELLED
+     * NEW/RUNNING -> INTERRUPTING -> INTERRUPTED
+     * 终态 -> RELEASED（代数加1）
+     *
+     * 与FutureTask用runner字段做互斥不同，这里run()用 NEW -> RUNNING 的CAS占有任务，
+     * 并在设置结果之前清空runner，因此任务一旦完成，工作线程就不会再写这个对象，可以安全复用。
+     * 被取消的任务可能仍在执行器的队列中或仍在运行，release时不会放回池中。
+     *
+     * 等待者：请求/响应路径上通常只有一个线程get，它把自己放在waiter中，不需要分配WaitNode。
+     * 同时有其他线程等待时，它们退回到对象监视器上wait，完成时notifyAll。
+     */
+
+    private static final int NEW          = 0;
+    private static final int RUNNING      = 1;
+    private static final int COMPLETING   = 2;
+    private static final int NORMAL       = 3;
+    private static final int EXCEPTIONAL  = 4;
+    private static final int CANCELLED    = 5;
+    private static final int INTERRUPTING = 6;
+    private static final int INTERRUPTED  = 7;
+    private static final int RELEASED     = 8;
+
+    private static final long STATE_MASK = 0xFFFFFFFFL;
+
+    /** PooledFutureTask.class只能得到原始类型的Class，转换成带通配符的类型是安全的 */
+    @SuppressWarnings("unchecked")
+    private static final Class<PooledFutureTask<?>> TASK_CLASS =
+            (Class<PooledFutureTask<?>>) (Class<?>) PooledFutureTask.class;
+    private static final AtomicLongFieldUpdater<PooledFutureTask<?>> CTL =
+            AtomicLongFieldUpdater.newUpdater(TASK_CLASS, "ctl");
+    private static final AtomicReferenceFieldUpdater<PooledFutureTask<?>, Thread> WAITER =
+            AtomicReferenceFieldUpdater.newUpdater(TASK_CLASS, Thread.class, "waiter");
+
+    /** 代数 << 32 | 状态 */
+    private volatile long ctl = ctlOf(0, RELEASED);
+
+    /** 所属的池 */
+    private final FutureTaskPool<V> pool;
+
+    /** 借出它的线程在池中的槽位，由FutureTaskPool设置，归还时放回那里 */
+    int home;
+
+    /** 本代的任务，借出时设置；由ctl的读写保证可见性 */
+    private Callable<V> callable;
+
+    /** 结果或异常，由ctl的读写保证可见性 */
+    private Object outcome;
+
+    /** 正在运行任务的线程，仅用于cancel(true)时中断 */
+    private volatile Thread runner;
+
+    /** 首个等待结果的线程 */
+    private volatile Thread waiter;
+
+    /** 在监视器上等待的线程数，仅在synchronized(this)下修改 */
+    private volatile int monitorWaiters;
+
+    PooledFutureTask(FutureTaskPool<V> pool) {
+        this.pool = pool;
+    }
+
+    private static long ctlOf(int stamp, int state) {
+        return ((long) stamp << 32) | state;
+    }
+
+    private static int stampOf(long c) {
+        return (int) (c >>> 32);
+    }
+
+    private static int stateOf(long c) {
+        return (int) (c & STATE_MASK);
+    }
+
+    private static IllegalStateException stale(int stamp) {
+        return new IllegalStateException("Stale task stamp " + stamp + ", task already released");
+    }
+
+    /**
+     * 借出时由FutureTaskPool调用，任务必须处于RELEASED
+     */
+    void reset(Callable<V> task) {
+        long c = ctl;
+        // assert stateOf(c) == RELEASED;
+        callable = task;
+        outcome = null;
+        //volatile写，发布callable
+        ctl = ctlOf(stampOf(c), NEW);
+    }
+
+    /**
+     * @return 当前借用的代数，作为get/cancel/release的参数
+     */
+    public int stamp() {
+        return stampOf(ctl);
+    }
+
+    @Override
+    public void run() {
+        long c = ctl;
+        final int stamp = stampOf(c);
+        if (stateOf(c) != NEW || !CTL.compareAndSet(this, c, ctlOf(stamp, RUNNING))) {
+            return;
+        }
+        runner = Thread.currentThread();
+        Object result;
+        int s;
+        try {
+            result = callable.call();
+            s = NORMAL;
+        } catch (Throwable ex) {
+            result = ex;
+            s = EXCEPTIONAL;
+        }
+        //先清空runner再设置结果，完成之后不再写这个对象
+        runner = null;
+        if (CTL.compareAndSet(this, ctlOf(stamp, RUNNING), ctlOf(stamp, COMPLETING))) {
+            outcome = result;
+            ctl = ctlOf(stamp, s);
+            finishCompletion();
+        } else {
+            //被取消了，等待可能正在进行的中断完成，避免中断泄漏到下一个任务
+            while (ctl == ctlOf(stamp, INTERRUPTING)) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * 取消当前代的任务。借用者应该使用{@link #cancel(int, boolean)}。
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return cancel(stamp(), mayInterruptIfRunning);
+    }
+
+    /**
+     * 取消任务
+     * @param stamp 借出时的代数
+     * @param mayInterruptIfRunning 是否中断正在运行任务的线程
+     * @return 是否取消成功
+     * @throws IllegalStateException 任务已经被release
+     */
+    public boolean cancel(int stamp, boolean mayInterruptIfRunning) {
+        int target = mayInterruptIfRunning ? INTERRUPTING : CANCELLED;
+        for (;;) {
+            long c = ctl;
+            if (stampOf(c) != stamp) {
+                throw stale(stamp);
+            }
+            int s = stateOf(c);
+            if (s > RUNNING) {
+                return false;
+            }
+            if (CTL.compareAndSet(this, c, ctlOf(stamp, target))) {
+                break;
+            }
+        }
+        if (mayInterruptIfRunning) {
+            try {
+                Thread t = runner;
+                if (t != null) {
+                    t.interrupt();
+                }
+            } finally {
+                ctl = ctlOf(stamp, INTERRUPTED);
+            }
+        }
+        finishCompletion();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        int s = stateOf(ctl);
+        return s >= CANCELLED && s != RELEASED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return stateOf(ctl) > RUNNING;
+    }
+
+    /**
+     * 等待当前代的结果。借用者应该使用{@link #get(int)}。
+     */
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        return get(stamp());
+    }
+
+    /**
+     * 等待当前代的结果。借用者应该使用{@link #get(int, long, TimeUnit)}。
+     */
+    @Override
+    public V get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return get(stamp(), timeout, unit);
+    }
+
+    /**
+     * 等待任务完成并返回结果
+     * @param stamp 借出时的代数
+     * @throws IllegalStateException 任务已经被release
+     */
+    public V get(int stamp) throws InterruptedException, ExecutionException {
+        return report(stamp, awaitDone(stamp, false, 0L));
+    }
+
+    /**
+     * 最多等待给定的时间，返回任务的结果
+     * @param stamp 借出时的代数
+     * @throws IllegalStateException 任务已经被release
+     */
+    public V get(int stamp, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (unit == null) {
+            throw new NullPointerException();
+        }
+        long c = awaitDone(stamp, true, unit.toNanos(timeout));
+        if (stateOf(c) <= COMPLETING) {
+            throw TimeoutException.timedOut();
+        }
+        return report(stamp, c);
+    }
+
+    /**
+     * 把任务归还给池。之后用这个stamp调用get/cancel/release都会抛出IllegalStateException。
+     * 正常完成的任务会被复用；被取消的任务可能仍被执行器引用，不会放回池中。
+     *
+     * @param stamp 借出时的代数
+     * @throws IllegalStateException 任务已经被release，或者还没有完成
+     */
+    public void release(int stamp) {
+        for (;;) {
+            long c = ctl;
+            if (stampOf(c) != stamp) {
+                throw stale(stamp);
+            }
+            int s = stateOf(c);
+            if (s <= COMPLETING) {
+                throw new IllegalStateException("Task not done");
+            }
+            if (s == INTERRUPTING) {
+                Thread.yield();
+                continue;
+            }
+            if (CTL.compareAndSet(this, c, ctlOf(stamp + 1, RELEASED))) {
+                //放回池中之前清空引用，避免池中的对象让结果无法被回收
+                outcome = null;
+                callable = null;
+                if (s == NORMAL || s == EXCEPTIONAL) {
+                    pool.recycle(this);
+                }
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V report(int stamp, long c) throws ExecutionException {
+        int s = stateOf(c);
+        if (s >= CANCELLED) {
+            throw new CancellationException();
+        }
+        Object x = outcome;
+        //读取结果之后再检查一次，确认期间没有被release
+        if (ctl != c) {
+            throw stale(stamp);
+        }
+        if (s == NORMAL) {
+            return (V) x;
+        }
+        throw new ExecutionException((Throwable) x);
+    }
+
+    /**
+     * 唤醒所有等待者
+     */
+    private void finishCompletion() {
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        if (monitorWaiters > 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待完成、中断或超时
+     * @return 返回时的ctl，超时时状态仍为NEW或RUNNING
+     */
+    private long awaitDone(int stamp, boolean timed, long nanos) throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final Thread me = Thread.currentThread();
+        boolean queued = false;
+        try {
+            for (;;) {
+                long c = ctl;
+                if (stampOf(c) != stamp) {
+                    throw stale(stamp);
+                }
+                int s = stateOf(c);
+                if (s > COMPLETING) {
+                    return c;
+                }
+                if (s == COMPLETING) {
+                    Thread.yield();
+                    continue;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (timed) {
+                    nanos = deadline - System.nanoTime();
+                    if (nanos <= 0L) {
+                        return c;
+                    }
+                }
+                if (!queued) {
+                    if (WAITER.compareAndSet(this, null, me)) {
+                        //登记之后重新检查状态
+                        queued = true;
+                    } else {
+                        awaitOnMonitor(c, timed, nanos);
+                    }
+                    continue;
+                }
+                if (timed) {
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            if (queued) {
+                WAITER.compareAndSet(this, me, null);
+            }
+        }
+    }
+
+    /**
+     * waiter已经被其他线程占用时，在监视器上等待
+     */
+    private void awaitOnMonitor(long c, boolean timed, long nanos) throws InterruptedException {
+        synchronized (this) {
+            monitorWaiters++;
+            try {
+                //登记之后再检查，finishCompletion看到monitorWaiters > 0 才会notifyAll
+                if (ctl == c) {
+                    if (timed) {
+                        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+                        wait(millis > 0L ? millis : 1L);
+                    } else {
+                        wait();
+                    }
+                }
+            } finally {
+                monitorWaiters--;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        long c = ctl;
+        return super.toString() + "[stamp = " + stampOf(c) + ", state = " + stateOf(c) + "]";
+    }
+}
@@ -46,4 +46,23 @@ public class RejectedExecutionException extends RuntimeException {
     public RejectedExecutionException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * Constructs a {@code RejectedExecutionException} with the
+     * specified detail message, cause, suppression enabled or
+     * disabled, and writable stack trace enabled or disabled.
+     * Subclasses may pass {@code false} for both flags to create
+     * cheap, stackless instances for load-shedding paths.
+     *
+     * @param message the detail message
+     * @param cause the cause, or {@code null}
+     * @param enableSuppression whether or not suppression is enabled
+     * @param writableStackTrace whether or not the stack trace should
+     *        be writable
+     */
+    protected RejectedExecutionException(String message, Throwable cause,
+                                         boolean enableSuppression,
+                                         boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -0,0 +1,396 @@
+package com.wyz.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName ShardedExecutorService
+ * @Description 分片的ExecutorService：每个分片一个工作线程和一个自己的任务队列，没有共享的workQueue
+ * @Author wangyuezheng
+ * @Date 2026/10/18 22:10
+ */
+
+public class ShardedExecutorService extends AbstractExecutorService {
+
+    /*
+     * ThreadPoolExecutor的所有工作线程竞争同一个workQueue，队列的头尾在核之间来回传递。
+     * 这里有N个分片（默认等于CPU数），每个分片只有一个工作线程，只消费自己的队列，
+     * 任务提交到哪个分片由调用方决定：
+     *   1、execute(key, task)按key的hash选择分片，同一个key总是在同一个线程上按提交顺序执行；
+     *   2、execute(task)在分片的工作线程中调用时提交到当前分片（数据留在同一个核的缓存中），
+     *      在其他线程中调用时按提交线程的id选择分片，同一个线程总是提交到同一个分片。
+     *
+     * 空闲的工作线程先把idle置为true，再检查一次队列，然后park；提交方入队之后看到idle才unpark，
+     * 两边都是volatile读写，不会错过唤醒，分片忙碌时提交不需要任何额外的同步。
+     *
+     * 开启steal时，空闲的工作线程从其他积压的分片（队列中多于一个任务）的队头偷取任务执行，
+     * 并以有上限的间隔park，以便发现新的积压。偷取会打破同一个key的执行顺序，需要按key串行时不要开启。
+     *
+     * 每个分片的队列长度用单独的计数器记录（ConcurrentLinkedQueue.size()需要遍历），
+     * 通过queueDepths()可以观察分片之间是否不均衡。计数器在入队之前增加、出队之后减少，
+     * 所以它可能短暂地大于队列中的任务数，但不会小于0。
+     *
+     * 工作线程由外部的ThreadFactory创建，不能要求它是某个Thread子类，
+     * 所以工作线程启动时把自己的分片放进ThreadLocal，execute(task)由此找到当前分片。
+     */
+
+    /** 开启steal时空闲线程park的最短和最长时间 */
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+
+    private final Shard[] shards;
+    private final boolean steal;
+    private volatile int runState = RUNNING;
+    /** 还没有退出的工作线程数 */
+    private final AtomicInteger liveWorkers;
+    private final AtomicLong stolenCount = new AtomicLong();
+    /** 工作线程所在的分片，其他线程中为null */
+    private final ThreadLocal<Shard> workerShard = new ThreadLocal<Shard>();
+
+    private final ReentrantLock mainLock = new ReentrantLock();
+    private final Condition termination = mainLock.newCondition();
+
+    /**
+     * 每个CPU一个分片，不开启steal
+     */
+    public ShardedExecutorService() {
+        this(Runtime.getRuntime().availableProcessors(), false);
+    }
+
+    /**
+     * @param shardCount 分片数（工作线程数）
+     * @param steal 空闲的分片是否从其他分片偷取任务
+     */
+    public ShardedExecutorService(int shardCount, boolean steal) {
+        this(shardCount, steal, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param shardCount 分片数（工作线程数）
+     * @param steal 空闲的分片是否从其他分片偷取任务
+     * @param threadFactory 创建工作线程的工厂
+     */
+    public ShardedExecutorService(int shardCount, boolean steal, ThreadFactory threadFactory) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (threadFactory == null) {
+            throw new NullPointerException();
+        }
+        this.steal = steal;
+        this.shards = new Shard[shardCount];
+        this.liveWorkers = new AtomicInteger(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            Thread t = threadFactory.newThread(shard);
+            if (t == null) {
+                throw new IllegalStateException("thread factory returned null");
+            }
+            shard.thread = t;
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * 一个分片：一个工作线程和它的任务队列
+     */
+    private final class Shard implements Runnable {
+        final int index;
+        final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+        /** 队列中的任务数 */
+        final AtomicInteger depth = new AtomicInteger();
+        volatile Thread thread;
+        /** 工作线程准备park或已经park */
+        volatile boolean idle;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        void enqueue(Runnable task) {
+            //先计数再入队，出队的线程减少计数时，对应的增加一定已经发生
+            depth.incrementAndGet();
+            queue.add(task);
+            if (idle) {
+                idle = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        Runnable poll() {
+            Runnable task = queue.poll();
+            if (task != null) {
+                depth.decrementAndGet();
+            }
+            return task;
+        }
+
+        boolean remove(Runnable task) {
+            if (queue.remove(task)) {
+                depth.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            workerShard.set(this);
+            try {
+                runShard(this);
+            } finally {
+                workerShard.remove();
+                workerExited();
+            }
+        }
+    }
+
+    private void runShard(Shard shard) {
+        long parkNanos = MIN_IDLE_PARK_NANOS;
+        for (;;) {
+            Runnable task = shard.poll();
+            if (task == null && steal && runState == RUNNING) {
+                task = stealFor(shard);
+            }
+            if (task != null) {
+                parkNanos = MIN_IDLE_PARK_NANOS;
+                //清除上一个任务留下的中断状态，shutdownNow的中断除外
+                if (runState < STOP) {
+                    Thread.interrupted();
+                }
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                }
+                continue;
+            }
+            if (runState >= SHUTDOWN) {
+                //看到shutdown之后再检查一次队列：在shutdown之前完成入队的任务一定能看到，
+                //之后入队的任务由提交方复查状态后撤回
+                if (shard.queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            shard.idle = true;
+            if (!shard.queue.isEmpty() || runState >= SHUTDOWN) {
+                shard.idle = false;
+                continue;
+            }
+            if (steal) {
+                LockSupport.parkNanos(this, parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_IDLE_PARK_NANOS);
+            } else {
+                LockSupport.park(this);
+            }
+            shard.idle = false;
+        }
+    }
+
+    /**
+     * 从下一个分片开始，找一个积压的分片偷取它队头的任务
+     */
+    private Runnable stealFor(Shard thief) {
+        int n = shards.length;
+        for (int i = 1; i < n; i++) {
+            Shard victim = shards[(thief.index + i) % n];
+            //只剩一个任务时留给它自己的线程，它很快就会取走
+            if (victim.depth.get() > 1) {
+                Runnable task = victim.poll();
+                if (task != null) {
+                    stolenCount.incrementAndGet();
+                    return task;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void workerExited() {
+        if (liveWorkers.decrementAndGet() == 0) {
+            final ReentrantLock mainLock = this.mainLock;
+            mainLock.lock();
+            try {
+                termination.signalAll();
+            } finally {
+                mainLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * 在分片的工作线程中调用时提交到当前分片，否则按当前线程选择分片
+     * @throws RejectedExecutionException 如果已经shutdown
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        enqueue(currentShard(), command);
+    }
+
+    /**
+     * 提交到key对应的分片，不开启steal时同一个key的任务按提交顺序执行
+     * @throws RejectedExecutionException 如果已经shutdown
+     */
+    public void execute(Object key, Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        enqueue(shardFor(key), command);
+    }
+
+    /**
+     * 提交到key对应的分片，参见{@link #execute(Object, Runnable)}
+     */
+    public <T> Future<T> submit(Object key, Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        RunnableFuture<T> ftask = newTaskFor(task);
+        execute(key, ftask);
+        return ftask;
+    }
+
+    private void enqueue(Shard shard, Runnable command) {
+        if (runState != RUNNING) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        shard.enqueue(command);
+        //入队时可能刚好shutdown，工作线程也许已经退出
+        if (runState != RUNNING && shard.remove(command)) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+    }
+
+    private Shard shardFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return shards[(h & Integer.MAX_VALUE) % shards.length];
+    }
+
+    private Shard currentShard() {
+        Shard shard = workerShard.get();
+        if (shard != null) {
+            return shard;
+        }
+        long id = Thread.currentThread().getId();
+        return shards[(int) ((id ^ (id >>> 32)) & Integer.MAX_VALUE) % shards.length];
+    }
+
+    /**
+     * @return 分片数
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * @return 分片的队列长度（不包括正在执行的任务）
+     */
+    public int queueDepth(int shard) {
+        return shards[shard].depth.get();
+    }
+
+    /**
+     * @return 每个分片的队列长度，用于观察分片之间的不均衡
+     */
+    public int[] queueDepths() {
+        int[] depths = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            depths[i] = shards[i].depth.get();
+        }
+        return depths;
+    }
+
+    /**
+     * @return 被其他分片偷取执行的任务总数
+     */
+    public long getStolenCount() {
+        return stolenCount.get();
+    }
+
+    /**
+     * 不再接受新任务，已经提交的任务执行完后工作线程退出
+     */
+    @Override
+    public void shutdown() {
+        if (runState < SHUTDOWN) {
+            runState = SHUTDOWN;
+        }
+        wakeAll();
+    }
+
+    /**
+     * 不再接受新任务，中断工作线程
+     * @return 还没有开始执行的任务
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        runState = STOP;
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (Shard shard : shards) {
+            for (Runnable task; (task = shard.poll()) != null; ) {
+                tasks.add(task);
+            }
+            shard.thread.interrupt();
+        }
+        wakeAll();
+        return tasks;
+    }
+
+    private void wakeAll() {
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return runState != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return liveWorkers.get() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            while (liveWorkers.get() != 0) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = termination.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,623 @@
+package com.wyz.concurrent;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName SharedMemoryQueue
+ * @Description 基于/dev/shm内存映射文件的有界MPMC环形队列，同一台机器上的多个JVM通过它传递字节消息
+ * @Author wangyuezheng
+ * @Date 2026/10/18 19:50
+ */
+
+public class SharedMemoryQueue extends AbstractQueue<byte[]> implements BlockingQueue<byte[]>, Closeable {
+
+    /*
+     * 文件布局（所有进程映射同一个文件，直接在映射的内存上做原子操作）：
+     *
+     *   0    int magic, int capacity, int slotBytes       头部，创建者在文件锁保护下初始化，magic最后写入
+     *   64   long enqueuePos                              各占一个缓存行，避免生产者和消费者伪共享
+     *   128  long dequeuePos
+     *   256  slot[capacity]                               每个槽：long sequence, int length, 消息字节
+     *
+     * 算法是Dmitry Vyukov的有界MPMC队列：
+     *   生产者读enqueuePos = p，槽p & mask的sequence == p 说明槽空闲，CAS enqueuePos到p+1占有它，
+     *   写入消息后把sequence设为p+1（发布）；sequence < p说明队列已满。
+     *   消费者读dequeuePos = p，sequence == p+1 说明消息已发布，CAS dequeuePos到p+1占有它，
+     *   读完后把sequence设为p+capacity，槽可以被下一圈的生产者使用；sequence < p+1说明队列为空。
+     * 计数器和sequence都用Unsafe直接在映射内存的地址上做volatile读、CAS和有序写，
+     * 这些操作在同一台机器的不同进程之间同样有效。
+     *
+     * 等待：另一个进程的线程无法被unpark，所以put/take在队列满/空时先自旋，再yield，
+     * 最后以指数增长（最长MAX_PARK_NANOS）的间隔parkNanos后重试。
+     *
+     * 零拷贝读：take(Consumer)/poll(Consumer)把槽内消息的只读ByteBuffer视图交给回调，
+     * 回调返回后才释放槽，所以回调不能保存这个ByteBuffer。take()/poll()返回byte[]副本。
+     *
+     * 限制：
+     *   某个进程在占有槽之后、发布之前崩溃，这个槽永远不会被发布，之后的消费者会一直等待它；
+     *   remove(Object)不支持；size()和迭代器只是近似值。
+     *   槽中的长度不在[0, maxMessageBytes]内（文件被其他程序写坏）时，取出的消息被丢弃，
+     *   槽照常释放，poll/take抛出IllegalStateException，之后的消息不受影响；peek和迭代器把长度截断到这个范围内。
+     *   映射在MappedByteBuffer被GC时才释放，close只是阻止之后的操作。
+     */
+
+    private static final int MAGIC = 0x57595A51;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int SLOT_BYTES_OFFSET = 8;
+    private static final int ENQUEUE_OFFSET = 64;
+    private static final int DEQUEUE_OFFSET = 128;
+    private static final int SLOTS_OFFSET = 256;
+
+    /** 槽头：sequence + length */
+    private static final int SLOT_HEADER = 16;
+
+    private static final int SPINS = 128;
+    private static final int YIELDS = 16;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long ADDRESS_OFFSET;
+    private static final long BYTE_ARRAY_BASE;
+
+    static {
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) f.get(null);
+            ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            BYTE_ARRAY_BASE = UNSAFE.arrayBaseOffset(byte[].class);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    /** 映射内存的起始地址 */
+    private final long base;
+    private final int capacity;
+    private final int mask;
+    private final int slotBytes;
+    private final int maxMessageBytes;
+    private volatile boolean closed;
+
+    /**
+     * 在/dev/shm下创建或打开一个队列
+     * @param name 文件名
+     * @param capacity 槽数，必须是2的幂
+     * @param maxMessageBytes 单条消息的最大字节数
+     * @return 队列
+     * @throws UncheckedIOException 如果文件无法打开或映射
+     */
+    public static SharedMemoryQueue open(String name, int capacity, int maxMessageBytes) {
+        return new SharedMemoryQueue(new File("/dev/shm", name), capacity, maxMessageBytes);
+    }
+
+    /**
+     * 创建或打开一个队列。文件已经被初始化时，capacity和maxMessageBytes必须与创建者一致。
+     * @param file 映射的文件，应该位于内存文件系统（如/dev/shm）上
+     * @param capacity 槽数，必须是2的幂
+     * @param maxMessageBytes 单条消息的最大字节数
+     * @throws IllegalArgumentException 如果参数不合法，或者映射的总大小超过2GB
+     * @throws IllegalStateException 如果文件已经以不同的参数初始化
+     * @throws UncheckedIOException 如果文件无法打开或映射
+     */
+    public SharedMemoryQueue(File file, int capacity, int maxMessageBytes) {
+        if (file == null) {
+            throw new NullPointerException();
+        }
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || maxMessageBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        long slot = ((long) SLOT_HEADER + maxMessageBytes + 7) & ~7L;
+        long size = SLOTS_OFFSET + slot * capacity;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("mapping too large: " + size);
+        }
+        this.file = file;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slotBytes = (int) slot;
+        this.maxMessageBytes = maxMessageBytes;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            //初始化由文件锁串行化，其他进程等初始化完成后只做校验
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() < size) {
+                    //新创建的文件内容全为0，magic为0说明还没有初始化
+                    channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                this.base = UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+                initOrValidate();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void initOrValidate() {
+        if (UNSAFE.getIntVolatile(null, base + MAGIC_OFFSET) == MAGIC) {
+            if (UNSAFE.getInt(base + CAPACITY_OFFSET) != capacity
+                    || UNSAFE.getInt(base + SLOT_BYTES_OFFSET) != slotBytes) {
+                throw new IllegalStateException(file + " was created with capacity "
+                        + UNSAFE.getInt(base + CAPACITY_OFFSET) + ", slot bytes "
+                        + UNSAFE.getInt(base + SLOT_BYTES_OFFSET));
+            }
+            return;
+        }
+        UNSAFE.putInt(base + CAPACITY_OFFSET, capacity);
+        UNSAFE.putInt(base + SLOT_BYTES_OFFSET, slotBytes);
+        UNSAFE.putLong(base + ENQUEUE_OFFSET, 0L);
+        UNSAFE.putLong(base + DEQUEUE_OFFSET, 0L);
+        for (int i = 0; i < capacity; i++) {
+            UNSAFE.putLong(slotAddress(i), (long) i);
+        }
+        UNSAFE.putIntVolatile(null, base + MAGIC_OFFSET, MAGIC);
+    }
+
+    private long slotAddress(long pos) {
+        return base + SLOTS_OFFSET + (pos & mask) * (long) slotBytes;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+    }
+
+    /**
+     * 占有一个空闲槽
+     * @return 槽的位置，队列已满时返回-1
+     */
+    private long claimForWrite() {
+        final long enq = base + ENQUEUE_OFFSET;
+        long pos = UNSAFE.getLongVolatile(null, enq);
+        for (;;) {
+            long seq = UNSAFE.getLongVolatile(null, slotAddress(pos));
+            long dif = seq - pos;
+            if (dif == 0) {
+                if (UNSAFE.compareAndSwapLong(null, enq, pos, pos + 1)) {
+                    return pos;
+                }
+                pos = UNSAFE.getLongVolatile(null, enq);
+            } else if (dif < 0) {
+                return -1L;
+            } else {
+                pos = UNSAFE.getLongVolatile(null, enq);
+            }
+        }
+    }
+
+    /**
+     * 占有一个已发布的槽
+     * @return 槽的位置，队列为空时返回-1
+     */
+    private long claimForRead() {
+        final long deq = base + DEQUEUE_OFFSET;
+        long pos = UNSAFE.getLongVolatile(null, deq);
+        for (;;) {
+            long seq = UNSAFE.getLongVolatile(null, slotAddress(pos));
+            long dif = seq - (pos + 1);
+            if (dif == 0) {
+                if (UNSAFE.compareAndSwapLong(null, deq, pos, pos + 1)) {
+                    return pos;
+                }
+                pos = UNSAFE.getLongVolatile(null, deq);
+            } else if (dif < 0) {
+                return -1L;
+            } else {
+                pos = UNSAFE.getLongVolatile(null, deq);
+            }
+        }
+    }
+
+    private void publish(long pos) {
+        UNSAFE.putOrderedLong(null, slotAddress(pos), pos + 1);
+    }
+
+    private void release(long pos) {
+        UNSAFE.putOrderedLong(null, slotAddress(pos), pos + capacity);
+    }
+
+    private int checkLength(int length) {
+        if (length > maxMessageBytes) {
+            throw new IllegalArgumentException("message of " + length + " bytes exceeds " + maxMessageBytes);
+        }
+        return length;
+    }
+
+    private void write(long pos, byte[] src, int off, int len) {
+        long slot = slotAddress(pos);
+        UNSAFE.putInt(slot + 8, len);
+        UNSAFE.copyMemory(src, BYTE_ARRAY_BASE + off, null, slot + SLOT_HEADER, len);
+        publish(pos);
+    }
+
+    private void write(long pos, ByteBuffer src) {
+        int len = src.remaining();
+        long slot = slotAddress(pos);
+        UNSAFE.putInt(slot + 8, len);
+        if (src.hasArray()) {
+            UNSAFE.copyMemory(src.array(), BYTE_ARRAY_BASE + src.arrayOffset() + src.position(),
+                    null, slot + SLOT_HEADER, len);
+            src.position(src.limit());
+        } else {
+            ByteBuffer dst = buffer.duplicate();
+            int at = (int) (slot - base) + SLOT_HEADER;
+            dst.limit(at + len);
+            dst.position(at);
+            dst.put(src);
+        }
+        publish(pos);
+    }
+
+    private byte[] read(long pos) {
+        try {
+            long slot = slotAddress(pos);
+            byte[] bytes = new byte[messageLength(slot)];
+            UNSAFE.copyMemory(null, slot + SLOT_HEADER, bytes, BYTE_ARRAY_BASE, bytes.length);
+            return bytes;
+        } finally {
+            release(pos);
+        }
+    }
+
+    /**
+     * 已经占有的槽中消息的长度
+     * @throws IllegalStateException 如果长度不在[0, maxMessageBytes]内
+     */
+    private int messageLength(long slot) {
+        int len = UNSAFE.getInt(slot + 8);
+        if (len < 0 || len > maxMessageBytes) {
+            throw new IllegalStateException("corrupt message length " + len + " in " + file);
+        }
+        return len;
+    }
+
+    /**
+     * 没有占有的槽中消息的长度，可能正在被改写，截断到[0, maxMessageBytes]内
+     */
+    private int clampedLength(long slot) {
+        return Math.max(0, Math.min(UNSAFE.getInt(slot + 8), maxMessageBytes));
+    }
+
+    /**
+     * 把槽内消息的只读视图交给consumer，返回后释放槽
+     */
+    private void read(long pos, Consumer<? super ByteBuffer> consumer) {
+        try {
+            long slot = slotAddress(pos);
+            int at = (int) (slot - base) + SLOT_HEADER;
+            ByteBuffer view = buffer.duplicate();
+            view.limit(at + messageLength(slot));
+            view.position(at);
+            consumer.accept(view.slice().asReadOnlyBuffer());
+        } finally {
+            release(pos);
+        }
+    }
+
+    /**
+     * 先自旋，再yield，最后按指数退避parkNanos
+     * @param round 第几次等待，从0开始
+     * @param deadline 截止时间（System.nanoTime），没有时为0
+     * @return 剩余的等待时间，没有截止时间时为Long.MAX_VALUE
+     */
+    private static long backoff(int round, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        long remaining = (deadline == 0L) ? Long.MAX_VALUE : deadline - System.nanoTime();
+        if (remaining <= 0L) {
+            return remaining;
+        }
+        if (round < SPINS) {
+            return remaining;
+        }
+        if (round < SPINS + YIELDS) {
+            Thread.yield();
+            return remaining;
+        }
+        int shift = Math.min(round - SPINS - YIELDS, 20);
+        LockSupport.parkNanos(Math.min(Math.min(1000L << shift, MAX_PARK_NANOS), remaining));
+        return remaining;
+    }
+
+    private static long deadline(long timeout, TimeUnit unit) {
+        long d = System.nanoTime() + unit.toNanos(timeout);
+        //0表示没有截止时间
+        return (d == 0L) ? 1L : d;
+    }
+
+    // ---------------------------------------------------------------- 生产者
+
+    /**
+     * 复制消息到队列，队列已满时立即返回false
+     * @throws IllegalArgumentException 如果消息超过maxMessageBytes
+     */
+    @Override
+    public boolean offer(byte[] e) {
+        checkLength(e.length);
+        ensureOpen();
+        long pos = claimForWrite();
+        if (pos < 0) {
+            return false;
+        }
+        write(pos, e, 0, e.length);
+        return true;
+    }
+
+    /**
+     * 复制src中剩余的字节到队列，成功时src的position前进到limit
+     * @return 队列已满时返回false
+     * @throws IllegalArgumentException 如果消息超过maxMessageBytes
+     */
+    public boolean offer(ByteBuffer src) {
+        checkLength(src.remaining());
+        ensureOpen();
+        long pos = claimForWrite();
+        if (pos < 0) {
+            return false;
+        }
+        write(pos, src);
+        return true;
+    }
+
+    @Override
+    public void put(byte[] e) throws InterruptedException {
+        for (int round = 0; !offer(e); round++) {
+            backoff(round, 0L);
+        }
+    }
+
+    /**
+     * 同{@link #put(byte[])}，复制src中剩余的字节
+     */
+    public void put(ByteBuffer src) throws InterruptedException {
+        for (int round = 0; !offer(src); round++) {
+            backoff(round, 0L);
+        }
+    }
+
+    @Override
+    public boolean offer(byte[] e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = deadline(timeout, unit);
+        for (int round = 0; !offer(e); round++) {
+            if (backoff(round, deadline) <= 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- 消费者
+
+    /**
+     * @return 消息的副本，队列为空时返回null
+     * @throws IllegalStateException 如果取出的槽中长度已经损坏，这条消息被丢弃
+     */
+    @Override
+    public byte[] poll() {
+        ensureOpen();
+        long pos = claimForRead();
+        return (pos < 0) ? null : read(pos);
+    }
+
+    /**
+     * 零拷贝读取：把消息的只读视图（position为0，limit为消息长度）交给consumer。
+     * consumer返回后槽被释放并可能立即被覆盖，不能在返回后继续使用这个ByteBuffer。
+     * @return 队列为空时返回false
+     * @throws IllegalStateException 如果取出的槽中长度已经损坏，这条消息被丢弃，consumer不会被调用
+     */
+    public boolean poll(Consumer<? super ByteBuffer> consumer) {
+        if (consumer == null) {
+            throw new NullPointerException();
+        }
+        ensureOpen();
+        long pos = claimForRead();
+        if (pos < 0) {
+            return false;
+        }
+        read(pos, consumer);
+        return true;
+    }
+
+    @Override
+    public byte[] take() throws InterruptedException {
+        byte[] e;
+        for (int round = 0; (e = poll()) == null; round++) {
+            backoff(round, 0L);
+        }
+        return e;
+    }
+
+    /**
+     * 阻塞直到有消息，再以零拷贝方式交给consumer，参见{@link #poll(Consumer)}。
+     * 例如在消费端把消息解码成任务交给线程池：
+     * <pre>{@code
+     * for (;;) {
+     *     queue.take(buf -> pool.execute(decode(buf)));
+     * }
+     * }</pre>
+     * decode必须在回调内读完需要的字节，返回的任务不能引用buf。
+     */
+    public void take(Consumer<? super ByteBuffer> consumer) throws InterruptedException {
+        for (int round = 0; !poll(consumer); round++) {
+            backoff(round, 0L);
+        }
+    }
+
+    @Override
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = deadline(timeout, unit);
+        byte[] e;
+        for (int round = 0; (e = poll()) == null; round++) {
+            if (backoff(round, deadline) <= 0L) {
+                return null;
+            }
+        }
+        return e;
+    }
+
+    /**
+     * 返回队头消息的副本但不取出。消息可能在复制过程中被其他消费者取走，
+     * 此时返回下一条消息或null，只适合监控使用。
+     */
+    @Override
+    public byte[] peek() {
+        ensureOpen();
+        long pos = UNSAFE.getLongVolatile(null, base + DEQUEUE_OFFSET);
+        long slot = slotAddress(pos);
+        if (UNSAFE.getLongVolatile(null, slot) != pos + 1) {
+            return null;
+        }
+        int len = clampedLength(slot);
+        byte[] bytes = new byte[len];
+        UNSAFE.copyMemory(null, slot + SLOT_HEADER, bytes, BYTE_ARRAY_BASE, len);
+        //复制期间槽没有被释放，数据才有效
+        return (UNSAFE.getLongVolatile(null, slot) == pos + 1) ? bytes : null;
+    }
+
+    @Override
+    public int drainTo(Collection<? super byte[]> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super byte[]> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        byte[] e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            ++n;
+        }
+        return n;
+    }
+
+    // ---------------------------------------------------------------- 其他
+
+    /**
+     * @return 近似的消息数（包括已占有但还没有发布或释放的槽）
+     */
+    @Override
+    public int size() {
+        long deq = UNSAFE.getLongVolatile(null, base + DEQUEUE_OFFSET);
+        long enq = UNSAFE.getLongVolatile(null, base + ENQUEUE_OFFSET);
+        return (int) Math.max(0L, Math.min(capacity, enq - deq));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * @return 槽数
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 单条消息的最大字节数
+     */
+    public int maxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    /**
+     * 环形队列不能删除中间的元素
+     * @throws UnsupportedOperationException 总是抛出
+     */
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 返回当前已发布消息副本的近似快照，迭代器不支持remove
+     */
+    @Override
+    public Iterator<byte[]> iterator() {
+        List<byte[]> snapshot = new ArrayList<byte[]>();
+        long pos = UNSAFE.getLongVolatile(null, base + DEQUEUE_OFFSET);
+        long end = UNSAFE.getLongVolatile(null, base + ENQUEUE_OFFSET);
+        for (; pos < end; pos++) {
+            long slot = slotAddress(pos);
+            if (UNSAFE.getLongVolatile(null, slot) != pos + 1) {
+                continue;
+            }
+            byte[] bytes = new byte[clampedLength(slot)];
+            UNSAFE.copyMemory(null, slot + SLOT_HEADER, bytes, BYTE_ARRAY_BASE, bytes.length);
+            if (UNSAFE.getLongVolatile(null, slot) == pos + 1) {
+                snapshot.add(bytes);
+            }
+        }
+        final Iterator<byte[]> it = snapshot.iterator();
+        return new Iterator<byte[]>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                return it.next();
+            }
+        };
+    }
+
+    /**
+     * 之后的操作抛出IllegalStateException。文件保留，其他进程仍然可以使用。
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * 关闭并删除文件。已经映射它的进程不受影响，新打开的进程会得到一个新队列。
+     * @return 文件是否被删除
+     */
+    public boolean unlink() {
+        close();
+        return file.delete();
+    }
+
+    @Override
+    public String toString() {
+        //不使用AbstractCollection.toString，它会复制所有消息
+        return "SharedMemoryQueue[" + file + ", capacity = " + capacity + ", size = " + size() + "]";
+    }
+}
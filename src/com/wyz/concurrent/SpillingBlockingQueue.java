@@ -0,0 +1,726 @@
+package com.wyz.concurrent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName SpillingBlockingQueue
+ * @Description 内存中只保留有限个元素、多出的元素序列化到内存映射文件段中的无界阻塞队列
+ * @Author wangyuezheng
+ * @Date 2026/10/18 18:20
+ */
+
+public class SpillingBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, Closeable {
+
+    /*
+     * 队列分成两部分：内存中的head（最多memoryCapacity个元素）和磁盘上的若干个段文件。
+     * 为了保持FIFO，只要磁盘上还有元素，新元素就必须追加到磁盘上，即使head还有空位；
+     * 所以head中的元素总是比磁盘上的任何元素都早入队。
+     *
+     * take/poll从head取；head取空而磁盘上还有元素时，一次最多读回PAGE_IN_BATCH个元素到head。
+     * 磁盘上的元素全部读回后，新元素重新直接进入head。
+     *
+     * 段文件通过FileChannel.map映射到内存，记录格式为 [int长度][序列化后的字节]，
+     * 写满一个段就创建下一个。读完的段被删除；唯一的段读空时直接把读写位置归零复用，
+     * 稳定的突发负载下不会反复创建文件。映射在段对象被GC时才释放，删除文件不影响已经读取的数据。
+     *
+     * 序列化和反序列化在锁内进行，磁盘IO异常以UncheckedIOException抛出。
+     * 读回的元素反序列化失败时，它仍然留在磁盘上的队头，计数和段都不变，下一次出队重试。
+     * 同一条记录连续失败MAX_READ_ATTEMPTS次后认为它永久损坏（例如类已经不存在），跳过它并计入
+     * deadLetterCount，否则它会一直堵在队头，之后的元素永远取不出来。
+     * 记录的长度本身损坏时无法找到下一条记录，这个段中剩下的记录全部跳过。
+     *
+     * 元素一旦写到磁盘，读回的就是另一个对象：remove(Object)/contains只检查内存中的head，
+     * 所以用作ThreadPoolExecutor的队列时，remove(Runnable)和purge()找不到已经写到磁盘的任务，
+     * 这些任务读回后照常执行。iterator()返回的快照中磁盘部分是反序列化得到的副本。
+     *
+     * 队列没有容量限制（受磁盘空间限制），put/offer不会阻塞，remainingCapacity总是Integer.MAX_VALUE。
+     */
+
+    /**
+     * 元素和字节之间的转换
+     */
+    public interface Serializer<E> {
+        byte[] toBytes(E e) throws IOException;
+
+        E fromBytes(byte[] bytes) throws IOException;
+    }
+
+    /**
+     * 使用Java序列化，元素必须实现Serializable
+     */
+    private static final Serializer<Object> JAVA_SERIALIZER = new Serializer<Object>() {
+        @Override
+        public byte[] toBytes(Object e) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Object fromBytes(byte[] bytes) throws IOException {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (ClassNotFoundException ex) {
+                throw new IOException(ex);
+            }
+        }
+    };
+
+    /**
+     * 返回基于Java序列化的Serializer。不限定E为Serializable，以便用于BlockingQueue&lt;Runnable&gt;，
+     * 运行时元素没有实现{@link java.io.Serializable}时抛出NotSerializableException。
+     * @return 基于Java序列化的Serializer
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Serializer<E> javaSerializer() {
+        return (Serializer<E>) JAVA_SERIALIZER;
+    }
+
+    /** 默认的段大小：64MB */
+    private static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    /** head取空时一次最多从磁盘读回的元素个数 */
+    private static final int PAGE_IN_BATCH = 64;
+
+    /** 同一条记录反序列化失败多少次后跳过它 */
+    static final int MAX_READ_ATTEMPTS = 3;
+
+    /**
+     * 一个段文件
+     */
+    private static final class Segment {
+        final File file;
+        final MappedByteBuffer buffer;
+        /** 下一条记录的写入位置 */
+        int writePos;
+        /** 下一条记录的读取位置 */
+        int readPos;
+        /** 还没有读出的记录数 */
+        int records;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        boolean hasRemaining() {
+            return records > 0;
+        }
+
+        boolean fits(int length) {
+            return buffer.capacity() - writePos >= 4 + length;
+        }
+
+        void append(byte[] bytes) {
+            ByteBuffer b = buffer.duplicate();
+            b.position(writePos);
+            b.putInt(bytes.length);
+            b.put(bytes);
+            writePos = b.position();
+            ++records;
+        }
+
+        /**
+         * 读出下一条记录并前进readPos，不修改records
+         * @throws IOException 如果记录的长度超出已写入的范围
+         */
+        byte[] next() throws IOException {
+            ByteBuffer b = buffer.duplicate();
+            b.position(readPos);
+            int length = b.getInt();
+            if (length < 0 || length > writePos - readPos - 4) {
+                throw new IOException("corrupt record length " + length + " at " + readPos + " in " + file);
+            }
+            byte[] bytes = new byte[length];
+            b.get(bytes);
+            readPos = b.position();
+            return bytes;
+        }
+    }
+
+    private final int memoryCapacity;
+    private final File directory;
+    private final int segmentBytes;
+    private final Serializer<E> serializer;
+
+    /** 内存中的元素，guarded by lock */
+    private final ArrayDeque<E> head;
+
+    /** 磁盘上的段，第一个是正在读的，最后一个是正在写的，guarded by lock */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+
+    /** 磁盘上的元素个数，guarded by lock */
+    private int spilled;
+
+    /** 累计写到磁盘的元素个数，guarded by lock */
+    private long spillCount;
+
+    /** 磁盘队头的记录连续反序列化失败的次数，guarded by lock */
+    private int readFailures;
+
+    /** 累计因为无法读回而跳过的元素个数，guarded by lock */
+    private long deadLetterCount;
+
+    /** guarded by lock */
+    private boolean closed;
+
+    /** Main lock guarding all access */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * 使用Java序列化和64MB的段
+     * @param memoryCapacity 内存中最多保留的元素个数
+     * @param directory 段文件所在的目录
+     */
+    @SuppressWarnings("unchecked")
+    public SpillingBlockingQueue(int memoryCapacity, File directory) {
+        this(memoryCapacity, directory, DEFAULT_SEGMENT_BYTES, (Serializer<E>) JAVA_SERIALIZER);
+    }
+
+    /**
+     * @param memoryCapacity 内存中最多保留的元素个数
+     * @param directory 段文件所在的目录，不存在时会被创建
+     * @param segmentBytes 每个段文件的大小，放不下的单个元素会使用一个刚好放得下它的段
+     * @param serializer 元素的序列化方式
+     * @throws IllegalArgumentException 如果 memoryCapacity 或 segmentBytes 小于等于0，或者目录无法创建
+     */
+    public SpillingBlockingQueue(int memoryCapacity, File directory, int segmentBytes,
+                                 Serializer<E> serializer) {
+        if (memoryCapacity <= 0 || segmentBytes <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (directory == null || serializer == null) {
+            throw new NullPointerException();
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("cannot create " + directory);
+        }
+        this.memoryCapacity = memoryCapacity;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.serializer = serializer;
+        this.head = new ArrayDeque<E>(Math.min(memoryCapacity, 1024));
+    }
+
+    /**
+     * 入队。必须持有锁。
+     */
+    private void enqueue(E e) {
+        // assert lock.isHeldByCurrentThread();
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        if (spilled == 0 && head.size() < memoryCapacity) {
+            head.addLast(e);
+        } else {
+            spill(e);
+        }
+        notEmpty.signal();
+    }
+
+    /**
+     * 把元素追加到最后一个段，放不下时创建新段。必须持有锁。
+     */
+    private void spill(E e) {
+        byte[] bytes;
+        try {
+            bytes = serializer.toBytes(e);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || !tail.fits(bytes.length)) {
+            tail = newSegment(Math.max(segmentBytes, 4 + bytes.length));
+            segments.addLast(tail);
+        }
+        tail.append(bytes);
+        ++spilled;
+        ++spillCount;
+    }
+
+    private Segment newSegment(int size) {
+        File file = null;
+        try {
+            file = File.createTempFile("spill-", ".seg", directory);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                //映射在channel关闭后仍然有效
+                return new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        } catch (IOException ex) {
+            if (file != null) {
+                file.delete();
+            }
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * 从队头取出元素。必须持有锁。
+     * @return 队头元素，队列为空（或者磁盘上剩下的元素都被跳过）时返回null
+     */
+    private E dequeue() {
+        // assert lock.isHeldByCurrentThread();
+        if (head.isEmpty() && spilled > 0) {
+            pageIn();
+        }
+        return head.pollFirst();
+    }
+
+    /**
+     * 从磁盘读回最多PAGE_IN_BATCH个元素到head，跳过的元素不计入。必须持有锁，并且head为空。
+     */
+    private void pageIn() {
+        int n = Math.min(PAGE_IN_BATCH, memoryCapacity);
+        while (head.size() < n && spilled > 0) {
+            E e = readSpilled();
+            if (e != null) {
+                head.addLast(e);
+            }
+        }
+    }
+
+    /**
+     * 读出磁盘上最早的元素，并回收读完的段。必须持有锁，并且spilled > 0。
+     * 先反序列化再提交readPos和spilled：反序列化失败时元素留在磁盘上的原位置，
+     * 段也不会被复用或删除，队列的状态和调用前相同。
+     * 同一条记录失败MAX_READ_ATTEMPTS次后跳过它，此时返回null。
+     * @throws UncheckedIOException 如果反序列化失败并且还没有达到重试次数
+     */
+    private E readSpilled() {
+        Segment s = segments.peekFirst();
+        while (!s.hasRemaining()) {
+            //读完的段一定不是最后一个，否则spilled为0
+            segments.pollFirst();
+            s.file.delete();
+            s = segments.peekFirst();
+        }
+        int readPos = s.readPos;
+        byte[] bytes;
+        try {
+            bytes = s.next();
+        } catch (IOException ex) {
+            //找不到下一条记录的位置，只能跳过这个段中剩下的所有记录
+            deadLetterCount += s.records;
+            spilled -= s.records;
+            s.records = 0;
+            readFailures = 0;
+            recycle(s);
+            return null;
+        }
+        E e;
+        try {
+            e = serializer.fromBytes(bytes);
+        } catch (IOException ex) {
+            if (++readFailures < MAX_READ_ATTEMPTS) {
+                s.readPos = readPos;
+                throw new UncheckedIOException(ex);
+            }
+            //多次失败，认为记录永久损坏，跳过它
+            e = null;
+            ++deadLetterCount;
+        }
+        readFailures = 0;
+        --s.records;
+        --spilled;
+        recycle(s);
+        return e;
+    }
+
+    /**
+     * 段读空时，唯一的段归零复用，否则删除。必须持有锁，s是第一个段。
+     */
+    private void recycle(Segment s) {
+        if (!s.hasRemaining()) {
+            if (segments.size() == 1) {
+                s.readPos = s.writePos = 0;
+            } else {
+                segments.pollFirst();
+                s.file.delete();
+            }
+        }
+    }
+
+    /**
+     * 删除所有段。必须持有锁。
+     */
+    private void deleteSegments() {
+        for (Segment s; (s = segments.pollFirst()) != null; ) {
+            s.file.delete();
+        }
+        spilled = 0;
+        readFailures = 0;
+    }
+
+    /**
+     * @return 当前在磁盘上的元素个数
+     */
+    public int spilledSize() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return spilled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 累计写到磁盘的元素个数
+     */
+    public long getSpillCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return spillCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 累计因为无法读回（反序列化多次失败或者记录损坏）而被跳过、丢弃的元素个数
+     */
+    public long getDeadLetterCount() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return deadLetterCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return head.size() + spilled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列没有容量限制
+     * @return {@link Integer#MAX_VALUE}
+     */
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 入队，内存中放不下时写到磁盘。永远不会阻塞。
+     * @throws UncheckedIOException 如果写磁盘失败
+     * @throws IllegalStateException 如果队列已经关闭
+     */
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    /**
+     * 入队，内存中放不下时写到磁盘。永远不会阻塞。
+     * @throws UncheckedIOException 如果写磁盘失败
+     * @throws IllegalStateException 如果队列已经关闭
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    /**
+     * 入队，内存中放不下时写到磁盘。
+     * @return true
+     * @throws UncheckedIOException 如果写磁盘失败
+     * @throws IllegalStateException 如果队列已经关闭
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            E e;
+            while ((e = dequeue()) == null) {
+                notEmpty.await();
+            }
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            E e;
+            while ((e = dequeue()) == null) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (head.isEmpty() && spilled > 0) {
+                pageIn();
+            }
+            return head.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 只在内存中的元素里查找并删除，磁盘上的元素不会被删除。
+     * 所以ThreadPoolExecutor的remove(Runnable)和purge()对已经写到磁盘的任务无效。
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return head.removeFirstOccurrence(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 只在内存中的元素里查找，磁盘上的元素总是返回false
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return head.contains(o);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回所有元素，磁盘上的元素会被全部反序列化（得到的是副本），代价较高。
+     * 无法反序列化的元素不包含在内（也不计入重试次数）。
+     */
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = new Object[head.size() + spilled];
+            int k = 0;
+            for (E e : head) {
+                a[k++] = e;
+            }
+            for (Segment s : segments) {
+                int readPos = s.readPos;
+                try {
+                    for (int i = 0; i < s.records; i++) {
+                        byte[] bytes;
+                        try {
+                            bytes = s.next();
+                        } catch (IOException ex) {
+                            //长度损坏，这个段中剩下的记录都找不到
+                            break;
+                        }
+                        try {
+                            a[k] = serializer.fromBytes(bytes);
+                            k++;
+                        } catch (IOException skip) {
+                        }
+                    }
+                } finally {
+                    s.readPos = readPos;
+                }
+            }
+            return k == a.length ? a : Arrays.copyOf(a, k);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空队列并删除所有段文件
+     */
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            head.clear();
+            deleteSegments();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements) {
+                if (head.isEmpty() && spilled > 0) {
+                    pageIn();
+                }
+                E e = head.peekFirst();
+                if (e == null) {
+                    break;
+                }
+                //先加入c再出队，c.add抛出异常时元素仍留在队列中
+                c.add(e);
+                head.pollFirst();
+                ++n;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回基于当前元素快照的迭代器（参见{@link #toArray()}），不会反映之后的修改。
+     * {@code remove()} 只能删除仍在内存中的元素。
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * 清空队列、删除所有段文件，之后的入队抛出IllegalStateException
+     */
+    @Override
+    public void close() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            closed = true;
+            head.clear();
+            deleteSegments();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class Itr implements Iterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+        private E lastRet;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            return lastRet = (E) snapshot[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet == null) {
+                throw new IllegalStateException();
+            }
+            SpillingBlockingQueue.this.remove(lastRet);
+            lastRet = null;
+        }
+    }
+}
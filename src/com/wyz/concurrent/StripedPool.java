@@ -0,0 +1,104 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @ClassName StripedPool
+ * @Description 按线程分散槽位的无锁对象池，用于复用执行器内部的短生命周期对象
+ * @Author wangyuezheng
+ * @Date 2026/10/18 13:40
+ */
+
+final class StripedPool<T> {
+
+    /*
+     * 池就是一个AtomicReferenceArray，每个槽位要么为null，要么保存一个空闲对象。
+     * 取和还都通过CAS完成，不需要锁。线程从根据自身id散列出的槽位开始，
+     * 最多探测PROBES个相邻槽位，不同线程大多落在不同的槽位上，减少CAS竞争。
+     *
+     * 对象常常在一个线程取出、在另一个线程归还（提交方取出ArgTask，工作线程执行完后归还）。
+     * 如果按归还线程的槽位归还，对象会堆积在工作线程的槽位上，而提交方在自己的槽位上永远取不到，
+     * 复用完全失效。所以取出时用home()记下取出线程的起始槽位，保存在对象上，
+     * 归还时用release(t, home)放回这个槽位附近，下次同一个线程取出时就能拿到。
+     *
+     * 池满时release返回false，对象交给GC；池空时acquire返回null，由调用者新建。
+     * 池只是一个缓存，不保证复用。
+     */
+
+    /**
+     * 每次取/还最多探测的槽位数
+     */
+    private static final int PROBES = 4;
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+
+    /**
+     * @param capacity 槽位数，会向上取整为2的幂
+     */
+    StripedPool(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        int n = Math.max(PROBES, Integer.highestOneBit(capacity - 1) << 1);
+        this.slots = new AtomicReferenceArray<T>(n);
+        this.mask = n - 1;
+    }
+
+    /**
+     * 取出一个空闲对象
+     * @return 空闲对象，池中没有时返回null
+     */
+    T acquire() {
+        final AtomicReferenceArray<T> slots = this.slots;
+        int i = probe();
+        for (int k = 0; k < PROBES; ++k, i = (i + 1) & mask) {
+            T t = slots.get(i);
+            if (t != null && slots.compareAndSet(i, t, null)) {
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 归还一个对象，调用者此后不能再使用它
+     * @param t 对象
+     * @return 是否放入了池中
+     */
+    boolean release(T t) {
+        return release(t, probe());
+    }
+
+    /**
+     * 把对象归还到取出它的线程的槽位附近，用于跨线程归还
+     * @param t 对象
+     * @param home 取出时{@link #home()}的返回值
+     * @return 是否放入了池中
+     */
+    boolean release(T t, int home) {
+        final AtomicReferenceArray<T> slots = this.slots;
+        int i = home & mask;
+        for (int k = 0; k < PROBES; ++k, i = (i + 1) & mask) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 当前线程的起始槽位，取出对象的线程记下它，供归还的线程调用release(t, home)
+     */
+    int home() {
+        return probe();
+    }
+
+    /**
+     * 当前线程的起始槽位
+     */
+    private int probe() {
+        int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
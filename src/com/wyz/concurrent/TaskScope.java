@@ -0,0 +1,427 @@
+package com.wyz.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @ClassName TaskScope
+ * @Description 基于ExecutorService的结构化任务作用域：fork子任务，按策略join，结果确定后立即取消其余子任务
+ * @Author wangyuezheng
+ * @Date 2026/10/18 13:10
+ */
+
+public class TaskScope<T> implements AutoCloseable {
+
+    /*
+     * 每个子任务是一个FutureTask，完成时（done()）通知作用域。作用域按照JoinPolicy判断
+     * 结果是否已经确定，一旦确定：
+     *   1、唤醒join的线程；
+     *   2、取消所有还没有完成的子任务（cancel(true)），
+     *      如果执行器是ThreadPoolExecutor，释放作用域的锁之后再调用purge()把已取消的子任务从workQueue中移除，
+     *      而不是等它们被工作线程取出后再空转一次，尽快释放线程池的容量。
+     *      purge要遍历整个workQueue，不能在锁内调用，否则其他子任务的完成回调都要等它。
+     *
+     * 只有真正提交给执行器的子任务计入pending；结果确定之后fork的子任务直接取消，
+     * 它的完成回调不改变作用域的状态。
+     *
+     * 用法：
+     * <pre> {@code
+     * try (TaskScope<String> scope = new TaskScope<>(executor, TaskScope.JoinPolicy.FIRST_SUCCESS)) {
+     *     scope.fork(() -> queryReplica(1));
+     *     scope.fork(() -> queryReplica(2));
+     *     return scope.join().result();
+     * }}</pre>
+     */
+
+    /**
+     * join的策略，决定什么时候结果已经确定
+     */
+    public enum JoinPolicy {
+        /**
+         * 所有子任务成功时确定；任意一个子任务失败（或被取消）时立即确定为失败
+         */
+        ALL_SUCCESS,
+        /**
+         * 第一个子任务成功时确定；所有子任务都失败时确定为失败
+         */
+        FIRST_SUCCESS,
+        /**
+         * 第一个子任务失败时确定（记录失败，不抛出）；全部完成且没有失败时确定为成功
+         */
+        FIRST_FAILURE
+    }
+
+    private final ExecutorService executor;
+    private final JoinPolicy policy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 结果确定或全部子任务完成时唤醒join
+     */
+    private final Condition decision = lock.newCondition();
+
+    /**
+     * fork 的所有子任务，按fork顺序。仅在锁下访问。
+     */
+    private final List<Subtask> subtasks = new ArrayList<>();
+
+    /**
+     * 已经fork还没有完成的子任务数。仅在锁下访问。
+     */
+    private int pending;
+
+    /**
+     * 结果是否已经确定。仅在锁下访问。
+     */
+    private boolean decided;
+
+    /**
+     * FIRST_SUCCESS 下第一个成功的子任务
+     */
+    private Subtask firstSuccess;
+
+    /**
+     * 第一个失败的原因（FIRST_SUCCESS 下为最后一个失败的原因）
+     */
+    private Throwable failure;
+
+    private boolean closed;
+
+    /**
+     * 子任务：完成时通知作用域
+     */
+    private final class Subtask extends FutureTask<T> {
+        /** 是否已经计入subtasks和pending。仅在锁下访问。 */
+        boolean forked;
+
+        Subtask(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void done() {
+            onComplete(this);
+        }
+    }
+
+    /**
+     * @param executor 执行子任务的执行器
+     * @param policy join的策略
+     */
+    public TaskScope(ExecutorService executor, JoinPolicy policy) {
+        if (executor == null || policy == null) {
+            throw new NullPointerException();
+        }
+        this.executor = executor;
+        this.policy = policy;
+    }
+
+    /**
+     * 提交一个子任务。结果已经确定之后fork的子任务不会执行，直接返回一个已取消的Future。
+     *
+     * @param task 子任务
+     * @return 子任务的Future
+     * @throws IllegalStateException 作用域已经关闭
+     * @throws RejectedExecutionException 执行器拒绝了子任务
+     */
+    public Future<T> fork(Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        Subtask st = new Subtask(task);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("TaskScope is closed");
+            }
+            if (decided) {
+                //结果已经确定，不再执行。没有计入pending，取消的回调不会减少它
+                st.cancel(false);
+                return st;
+            }
+            subtasks.add(st);
+            st.forked = true;
+            pending++;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            executor.execute(st);
+        } catch (RuntimeException | Error ex) {
+            //被拒绝的子任务按取消处理，避免join永远等待
+            st.cancel(false);
+            throw ex;
+        }
+        return st;
+    }
+
+    /**
+     * 等待直到结果确定（或所有子任务完成）。
+     * @return this
+     * @throws InterruptedException 等待时被中断
+     */
+    public TaskScope<T> join() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (!decided && pending > 0) {
+                decision.await();
+            }
+            decided = true;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * 最多等待给定的时间直到结果确定。超时后不会取消子任务，可以再次join或者close。
+     * @return this
+     * @throws InterruptedException 等待时被中断
+     * @throws TimeoutException 超时
+     */
+    public TaskScope<T> join(long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (!decided && pending > 0) {
+                if (nanos <= 0L) {
+                    throw TimeoutException.timedOut();
+                }
+                nanos = decision.awaitNanos(nanos);
+            }
+            decided = true;
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * FIRST_SUCCESS 策略下，返回第一个成功的子任务的结果。必须在join之后调用。
+     * @return 第一个成功的结果
+     * @throws ExecutionException 没有子任务成功，原因为最后一个失败的原因
+     * @throws IllegalStateException 策略不是FIRST_SUCCESS，或者还没有join
+     */
+    public T result() throws ExecutionException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (policy != JoinPolicy.FIRST_SUCCESS) {
+                throw new IllegalStateException("result() requires FIRST_SUCCESS");
+            }
+            ensureJoined();
+            if (firstSuccess == null) {
+                throw failureException();
+            }
+            return valueOf(firstSuccess);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * ALL_SUCCESS 策略下，按fork顺序返回所有子任务的结果。必须在join之后调用。
+     * @return 所有子任务的结果
+     * @throws ExecutionException 有子任务失败，原因为第一个失败的原因
+     * @throws IllegalStateException 策略不是ALL_SUCCESS，或者还没有join
+     */
+    public List<T> results() throws ExecutionException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (policy != JoinPolicy.ALL_SUCCESS) {
+                throw new IllegalStateException("results() requires ALL_SUCCESS");
+            }
+            ensureJoined();
+            if (failure != null) {
+                throw failureException();
+            }
+            List<T> results = new ArrayList<>(subtasks.size());
+            for (Subtask st : subtasks) {
+                results.add(valueOf(st));
+            }
+            return results;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 决定结果的失败原因，没有失败时返回null。必须在join之后调用。
+     */
+    public Throwable exception() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureJoined();
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 如果有子任务失败，抛出以该失败为原因的ExecutionException。必须在join之后调用。
+     * @throws ExecutionException 有子任务失败
+     */
+    public void throwIfFailed() throws ExecutionException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureJoined();
+            if (failure != null && (policy != JoinPolicy.FIRST_SUCCESS || firstSuccess == null)) {
+                throw failureException();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭作用域：不能再fork，并取消所有还没有完成的子任务。
+     */
+    @Override
+    public void close() {
+        boolean cancelled;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            decided = true;
+            cancelled = cancelRemaining();
+            decision.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (cancelled) {
+            purge();
+        }
+    }
+
+    /**
+     * 子任务完成时调用（在完成子任务的线程中，或在取消子任务的线程中）
+     */
+    private void onComplete(Subtask st) {
+        boolean justDecided = false;
+        boolean cancelled = false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!st.forked) {
+                return;
+            }
+            pending--;
+            if (!decided) {
+                Throwable ex = outcomeOf(st);
+                if (ex == null) {
+                    if (policy == JoinPolicy.FIRST_SUCCESS) {
+                        firstSuccess = st;
+                        justDecided = true;
+                    }
+                } else {
+                    failure = (policy == JoinPolicy.FIRST_SUCCESS || failure == null) ? ex : failure;
+                    if (policy != JoinPolicy.FIRST_SUCCESS) {
+                        justDecided = true;
+                    }
+                }
+                if (justDecided) {
+                    decided = true;
+                    //先取消其余子任务再唤醒join，join返回时它们已经不在队列中
+                    cancelled = cancelRemaining();
+                    decision.signalAll();
+                } else if (pending == 0) {
+                    //所有已fork的子任务都已完成，由join决定结果（之后可能还会fork）
+                    decision.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cancelled) {
+            purge();
+        }
+    }
+
+    /**
+     * 取消所有还没有完成的子任务。必须持有锁。
+     * @return 是否取消了子任务，是则调用者在释放锁之后调用{@link #purge()}
+     */
+    private boolean cancelRemaining() {
+        // assert lock.isHeldByCurrentThread();
+        //取消会在当前线程中回调onComplete（重入锁），此时decided已经为true，不会再次进入这里
+        List<Subtask> snapshot = new ArrayList<>(subtasks);
+        boolean cancelled = false;
+        for (Subtask st : snapshot) {
+            if (!st.isDone() && st.cancel(true)) {
+                cancelled = true;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * 把已取消但仍在队列中的子任务从线程池的队列中移除，不再占用队列。不能持有锁。
+     */
+    private void purge() {
+        if (executor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) executor).purge();
+        }
+    }
+
+    private void ensureJoined() {
+        // assert lock.isHeldByCurrentThread();
+        if (!decided) {
+            throw new IllegalStateException("join() has not completed");
+        }
+    }
+
+    private ExecutionException failureException() {
+        if (failure == null) {
+            return new ExecutionException("No subtask completed successfully", null);
+        }
+        return new ExecutionException(failure);
+    }
+
+    /**
+     * @return 子任务失败的原因（取消时为CancellationException），成功时返回null
+     */
+    private Throwable outcomeOf(Subtask st) {
+        try {
+            st.get();
+            return null;
+        } catch (ExecutionException ee) {
+            return ee.getCause();
+        } catch (CancellationException ce) {
+            return ce;
+        } catch (InterruptedException ie) {
+            //子任务已经完成，get不会阻塞，不应该发生
+            Thread.currentThread().interrupt();
+            return ie;
+        }
+    }
+
+    private T valueOf(Subtask st) throws ExecutionException {
+        try {
+            return st.get();
+        } catch (CancellationException ce) {
+            throw new ExecutionException(ce);
+        } catch (InterruptedException ie) {
+            //子任务已经完成，get不会阻塞，不应该发生
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(ie);
+        }
+    }
+}
@@ -4,13 +4,19 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.util.*;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * @ClassName ThreadPoolExecutor
@@ -236,6 +242,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private final BlockingQueue<Runnable> workQueue;
 
+    /**
+     * workQueue实现了AcknowledgingQueue时就是workQueue，否则为null
+     */
+    private final AcknowledgingQueue ackQueue;
+
     /**
      * 翻译：
      *  锁对workers 的存取设置和相关簿记。
@@ -304,6 +315,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile RejectedExecutionHandler handler;
 
+    /**
+     * 堆内存压力准入控制，为null时不做检查。参见{@link #setHeapPressureGovernor}
+     */
+    private volatile HeapPressureGovernor heapPressureGovernor;
+
 
     /**
      *  keepAliveTime 表示空闲线程等待work的存活时间（时间单位为纳秒）
@@ -350,6 +366,13 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private static final RejectedExecutionHandler defaultHandler = new AbortPolicy();
 
+    /**
+     * execute(Consumer, T) 使用的ArgTask的对象池。
+     * ArgTask在runWorker中执行完（afterExecute之后）归还到这里，提交时再取出复用。
+     */
+    private final StripedPool<ArgTask> argTaskPool =
+            new StripedPool<ArgTask>(Math.max(16, Runtime.getRuntime().availableProcessors() * 4));
+
     /**
      *  执行shutdown and shutdownNow.是需要权限。
      *  我们还需要(参见checkShutdownAccess)调用者拥有实际中断工作集中
@@ -526,10 +549,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         for(;;){
             //获取线程池中状态值
             int c = ctl.get();
-            //判断是否是非运行状态 ，如果是运行状态则自旋阻塞，一直自旋到满足条件
-            if (runStateAtLeast(c,targetState)) {
-                //将状态值修改为为指定的状态，并将当前的workerCount值与这个状态绑定
-                ctl.compareAndSet(c,ctlOf(targetState,workerCountOf(c)));
+            //已经处于目标状态（或之后的状态）时不需要修改；
+            //否则将状态值修改为指定的状态，并将当前的workerCount值与这个状态绑定，CAS失败则自旋重试
+            if (runStateAtLeast(c,targetState) ||
+                    ctl.compareAndSet(c,ctlOf(targetState,workerCountOf(c)))) {
                 //结束自旋，退出
                 break;
             }
@@ -941,6 +964,14 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 addWorkerFailed(w);
             }
         }
+        //带首个任务的worker在关闭时回滚：回滚之前它占用的workerCount可能让其他提交者在execute的重新检查中
+        //以为已经有工作线程，不再调用addWorker(null,false)，它们入队的任务就没有线程处理，线程池也不会终止
+        if (!workerStarted && firstTask != null) {
+            int c = ctl.get();
+            if (runStateOf(c) == SHUTDOWN && workerCountOf(c) == 0 && !workQueue.isEmpty()) {
+                addWorker(null, false);
+            }
+        }
         //返回worker启动的状态
         return workerStarted;
 
@@ -1141,6 +1172,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         try {
             //如果当前worker中的任务为空，就从队列中获取一个任务
             while (task != null || (task = getTask()) != null){
+                //提交者在线程池关闭时已经撤回（拒绝）的ArgTask，不执行也不回收
+                if (task instanceof ArgTask && !((ArgTask) task).start()) {
+                    task = null;
+                    continue;
+                }
                 //获取锁，获取不到入队列阻塞
                 w.lock();
                 //如果池停止，确保线程被中断;
@@ -1149,7 +1185,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
 
                 //如果池没有停止，确保当前线程没有被中断
                 //如果线程停止，确保中断线程
-                if ((runStateLessThan(ctl.get(),STOP)||
+                if ((runStateAtLeast(ctl.get(),STOP)||
                         (Thread.interrupted() && runStateAtLeast(ctl.get(),STOP))) &&
                         !wt.isInterrupted()) {
 
@@ -1179,8 +1215,16 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                         //最后执行执行后的方法，
                         // 可以对任务执行完成的结果，或者执行过程中发生的异常进行操作
                         afterExecute(task,thrown);
+                        //任务已经运行并且afterExecute正常返回，才在队列中确认（例如JournaledBlockingQueue）
+                        if (ackQueue != null) {
+                            ackQueue.ack(task);
+                        }
                     }
                 }finally {
+                    //execute(Consumer, T)提交的任务，已经开始执行，执行完后回收复用
+                    if (task instanceof ArgTask) {
+                        releaseArgTask((ArgTask) task);
+                    }
                     task = null;
                     //不管是正常执行完成结束，还是异常结束，完成任务数都会加1
                     w.completedTasks++;
@@ -1246,6 +1290,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         this.corePoolSize = corePoolSize;
         this.maximumPoolSize = maximumPoolSize;
         this.workQueue = workQueue;
+        this.ackQueue = (workQueue instanceof AcknowledgingQueue) ? (AcknowledgingQueue) workQueue : null;
         this.keepAliveTime = unit.toNanos(keepAliveTime);
         this.threadFactory = threadFactory;
         this.handler = handler;
@@ -1258,6 +1303,13 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             throw new NullPointerException();
         }
 
+        HeapPressureGovernor governor = heapPressureGovernor;
+        if (governor != null && !governor.admit(command)) {
+            reject(command);
+            return;
+        }
+        int submission = (command instanceof ArgTask) ? ((ArgTask) command).submit() : 0;
+
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
             if (addWorker(command,true)) {
@@ -1266,9 +1318,11 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             c = ctl.get();
         }
 
-        if (isRunning(c) && workQueue.offer(command)) {
+        //压力升高时队列长度受限，不能入队的任务尝试交给非核心线程
+        if (isRunning(c) && (governor == null || governor.admitToQueue(workQueue))
+                && workQueue.offer(command)) {
             int recheck = ctl.get();
-            if (!isRunning(recheck) && remove(command)) {
+            if (!isRunning(recheck) && withdraw(command, submission)) {
                 reject(command);
             }else if (workerCountOf(recheck) == 0){
                 addWorker(null,false);
@@ -1278,6 +1332,201 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * 在将来的某个时候执行 {@code action.accept(arg)}。
+     * action和arg直接保存在一个可复用的ArgTask中入队，不会创建捕获参数的lambda，
+     * ArgTask在工作线程执行完、afterExecute返回后被回收。因此在 beforeExecute/afterExecute
+     * 中看到的Runnable不能在方法返回后继续持有。
+     * 被拒绝时，拒绝策略收到的也是这个ArgTask，它不会被回收。
+     *
+     * @param action 要执行的操作，最好是不捕获变量的lambda或方法引用
+     * @param arg 操作的参数
+     * @throws RejectedExecutionException 由拒绝策略决定
+     * @throws NullPointerException 如果 action 为null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> void execute(Consumer<? super T> action, T arg) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        ArgTask task = acquireArgTask();
+        task.action = (Consumer<Object>) action;
+        task.arg1 = arg;
+        execute(task);
+    }
+
+    /**
+     * 在将来的某个时候执行 {@code action.accept(arg1, arg2)}。
+     * 参见{@link #execute(Consumer, Object)}。
+     *
+     * @param action 要执行的操作，最好是不捕获变量的lambda或方法引用
+     * @param arg1 操作的第一个参数
+     * @param arg2 操作的第二个参数
+     * @throws RejectedExecutionException 由拒绝策略决定
+     * @throws NullPointerException 如果 action 为null
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T, U> void execute(BiConsumer<? super T, ? super U> action, T arg1, U arg2) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        ArgTask task = acquireArgTask();
+        task.biAction = (BiConsumer<Object, Object>) action;
+        task.arg1 = arg1;
+        task.arg2 = arg2;
+        execute(task);
+    }
+
+    private ArgTask acquireArgTask() {
+        ArgTask task = argTaskPool.acquire();
+        if (task == null) {
+            task = new ArgTask();
+        }
+        //记下提交线程的槽位，工作线程执行完后还到这里，提交线程下次才能取到
+        task.home = argTaskPool.home();
+        return task;
+    }
+
+    /**
+     * 撤回调用者刚刚放入队列、线程池却已经关闭的任务，撤回成功时调用者应该拒绝它。
+     * ArgTask执行完就会被回收，可能已经被其他提交者重新放入队列，不能按对象从队列中删除：
+     * 只有它仍然是这次提交（submission）并且还没有开始执行时才认领成功，之后工作线程取到它也会跳过，
+     * 从队列中删除只是尽力而为。其他任务从队列中删除成功才算撤回。
+     * @param submission 入队前由{@link #submission(Runnable)}得到的值
+     * @return true:撤回成功，任务不会被工作线程执行
+     */
+    boolean withdraw(Runnable task, int submission) {
+        if (task instanceof ArgTask) {
+            if (!((ArgTask) task).claim(submission)) {
+                return false;
+            }
+            workQueue.remove(task);
+            tryTerminate();
+            return true;
+        }
+        return remove(task);
+    }
+
+    /**
+     * @return 任务当前的提交状态，供入队之后调用{@link #withdraw(Runnable, int)}使用
+     */
+    static int submission(Runnable task) {
+        return (task instanceof ArgTask) ? ((ArgTask) task).state : 0;
+    }
+
+    private void releaseArgTask(ArgTask task) {
+        //清空引用，避免池中的对象让参数无法被回收
+        task.action = null;
+        task.biAction = null;
+        task.arg1 = null;
+        task.arg2 = null;
+        argTaskPool.release(task, task.home);
+    }
+
+    /**
+     * 工作队列是LinkedTaskQueue时，返回自身就是队列节点的任务，
+     * 不再需要RunnableAdapter和队列的Node
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        if (workQueue instanceof LinkedTaskQueue) {
+            return new IntrusiveFutureTask<T>(runnable, value);
+        }
+        return super.newTaskFor(runnable, value);
+    }
+
+    /**
+     * 工作队列是LinkedTaskQueue时，返回自身就是队列节点的任务
+     */
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        if (workQueue instanceof LinkedTaskQueue) {
+            return new IntrusiveFutureTask<T>(callable);
+        }
+        return super.newTaskFor(callable);
+    }
+
+    /**
+     * 保存操作和参数的任务，由execute(Consumer, T)/execute(BiConsumer, T, U)创建并复用。
+     * 同时是LinkedTaskQueue的节点，配合LinkedTaskQueue时入队不需要分配任何对象。
+     */
+    static final class ArgTask implements Runnable, LinkedTaskQueue.Node {
+        private static final AtomicReferenceFieldUpdater<ArgTask, LinkedTaskQueue.Node> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(ArgTask.class, LinkedTaskQueue.Node.class, "next");
+        private static final AtomicIntegerFieldUpdater<ArgTask> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(ArgTask.class, "state");
+
+        /** state的低两位：在队列中等待、已经被工作线程开始执行、已经被提交者撤回 */
+        static final int QUEUED = 0;
+        static final int RUNNING = 1;
+        static final int CLAIMED = 2;
+        static final int PHASE_MASK = 3;
+
+        Consumer<Object> action;
+        BiConsumer<Object, Object> biAction;
+        Object arg1;
+        Object arg2;
+        /** 取出它的线程在argTaskPool中的槽位 */
+        int home;
+        /** LinkedTaskQueue中的后继 */
+        private volatile LinkedTaskQueue.Node next;
+        /** 高位是提交次数，低两位是阶段，每次提交都不同，撤回时据此确认还是同一次提交 */
+        volatile int state;
+
+        /**
+         * 提交者在入队之前调用，开始新的一次提交
+         * @return 这次提交的state
+         */
+        int submit() {
+            int s = (state & ~PHASE_MASK) + (PHASE_MASK + 1);
+            state = s;
+            return s;
+        }
+
+        /**
+         * 工作线程执行之前调用
+         * @return false:已经被提交者撤回，不能执行
+         */
+        boolean start() {
+            int s = state;
+            return (s & PHASE_MASK) == QUEUED && STATE.compareAndSet(this, s, s | RUNNING);
+        }
+
+        /**
+         * @return true:仍然是submission这次提交并且还没有开始执行，之后工作线程不会再执行它
+         */
+        boolean claim(int submission) {
+            return (submission & PHASE_MASK) == QUEUED && STATE.compareAndSet(this, submission, submission | CLAIMED);
+        }
+
+        @Override
+        public LinkedTaskQueue.Node getNext() {
+            return next;
+        }
+
+        @Override
+        public void setNext(LinkedTaskQueue.Node next) {
+            this.next = next;
+        }
+
+        @Override
+        public boolean casNext(LinkedTaskQueue.Node expect, LinkedTaskQueue.Node update) {
+            return NEXT.compareAndSet(this, expect, update);
+        }
+
+        @Override
+        public void run() {
+            Consumer<Object> a = action;
+            if (a != null) {
+                a.accept(arg1);
+            } else {
+                biAction.accept(arg1, arg2);
+            }
+        }
+    }
+
 
 
     @Override
@@ -1333,6 +1582,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
     public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
         long nanos = unit.toNanos(timeout);
         final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
         try {
             for (;;){
                 if (runStateAtLeast(ctl.get(),TERMINATED)) {
@@ -1386,6 +1636,23 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         return handler;
     }
 
+    /**
+     * 设置堆内存压力准入控制。设置之后execute在入口询问governor：
+     * 老年代压力升高时，低优先级任务（{@link HeapPressureGovernor.Sheddable}）直接交给拒绝策略；
+     * 队列长度达到当前级别的限制时任务不再入队，只能交给新线程执行，线程数已满时交给拒绝策略。
+     * 压力消退后自动恢复。
+     * 一个governor可以同时设置给多个线程池。
+     *
+     * @param governor 准入控制，null表示关闭
+     */
+    public void setHeapPressureGovernor(HeapPressureGovernor governor){
+        this.heapPressureGovernor = governor;
+    }
+
+    public HeapPressureGovernor getHeapPressureGovernor(){
+        return heapPressureGovernor;
+    }
+
     public void setCorePoolSize(int corePoolSize){
         if(corePoolSize < 0){
             throw new IllegalArgumentException();
@@ -1746,6 +2013,248 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * 让提交者在workQueue上阻塞等待空位的拒绝策略，最多等待给定的时间。
+     * 与CallerRunsPolicy相比，提交者不会去执行可能很耗时的任务，而是按消费速度被平滑地限流。
+     *  1、线程池已经关闭时直接拒绝；
+     *  2、等待超时或者等待时被中断时拒绝（中断状态会被保留）；
+     *  3、入队后如果发现线程池在等待期间被关闭，并且任务还没有开始执行，把它撤回后拒绝；
+     *  4、入队成功后确保至少有一个工作线程，避免任务在没有线程的池中无人执行。
+     * 注意：只适用于有界队列，SynchronousQueue这类没有容量的队列上等待的是空闲的工作线程。
+     */
+    public static class CallerBlocksPolicy implements RejectedExecutionHandler{
+
+        private final long timeoutNanos;
+
+        /**
+         * @param timeout 最长等待时间
+         * @param unit timeout的时间单位
+         * @throws IllegalArgumentException 如果 timeout 小于0
+         */
+        public CallerBlocksPolicy(long timeout, TimeUnit unit){
+            if (timeout < 0) {
+                throw new IllegalArgumentException();
+            }
+            this.timeoutNanos = unit.toNanos(timeout);
+        }
+
+        /**
+         * 阻塞直到任务进入workQueue，超时、被中断或者线程池关闭时抛出RejectedExecutionException
+         * @param r
+         * @param e
+         */
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            if (e.isShutdown()) {
+                throw new RejectedExecutionException("Task " + r.toString() +
+                        " rejected from " + e.toString() + ": executor has been shut down");
+            }
+            int submission = submission(r);
+            boolean queued;
+            try {
+                queued = e.getQueue().offer(r, timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ie) {
+                //execute不能抛出InterruptedException，恢复中断状态后拒绝
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for queue space", ie);
+            }
+            if (!queued) {
+                throw new RejectedExecutionException("Task " + r.toString() +
+                        " rejected from " + e.toString() + ": timed out waiting for queue space");
+            }
+            //等待期间线程池可能已经关闭，此时任务可能不会再被执行
+            if (e.isShutdown() && e.withdraw(r, submission)) {
+                throw new RejectedExecutionException("Task " + r.toString() +
+                        " rejected from " + e.toString() + ": executor has been shut down");
+            }
+            //等待期间工作线程可能都已经退出
+            e.ensurePrestart();
+        }
+    }
+
+    /**
+     * 把被拒绝的任务转交给另一个（溢出）执行器的拒绝策略。
+     * 主线程池饱和时，突发的任务进入一个更便宜的溢出线程池（线程更少、队列更大、优先级更低），
+     * 而不是直接失败，主线程池也不需要按峰值配置。
+     *  1、主线程池已经关闭时不转交，交给fallback处理；
+     *  2、溢出执行器也拒绝时，交给fallback处理（默认AbortPolicy）；
+     *  3、防止循环：两个线程池互相作为溢出执行器时，同一个线程在转交过程中再次进入本策略，
+     *     说明形成了环，不再转交，交给fallback处理。
+     * 转交的是原始的Runnable，submit返回的Future仍然有效。
+     */
+    public static class OverflowPolicy implements RejectedExecutionHandler{
+
+        private final ExecutorService overflow;
+        private final RejectedExecutionHandler fallback;
+
+        /**
+         * 当前线程是否正在通过本策略转交任务，用于检测循环
+         */
+        private final ThreadLocal<Boolean> forwarding = new ThreadLocal<>();
+
+        private final AtomicLong rejectedCount = new AtomicLong();
+        private final AtomicLong forwardedCount = new AtomicLong();
+        private final AtomicLong overflowRejectedCount = new AtomicLong();
+        private final AtomicLong loopCount = new AtomicLong();
+
+        /**
+         * 溢出执行器也拒绝时抛出RejectedExecutionException
+         * @param overflow 溢出执行器
+         */
+        public OverflowPolicy(ExecutorService overflow){
+            this(overflow, new AbortPolicy());
+        }
+
+        /**
+         * @param overflow 溢出执行器
+         * @param fallback 无法转交（主线程池已关闭、溢出执行器拒绝、检测到循环）时使用的拒绝策略
+         */
+        public OverflowPolicy(ExecutorService overflow, RejectedExecutionHandler fallback){
+            if (overflow == null || fallback == null) {
+                throw new NullPointerException();
+            }
+            this.overflow = overflow;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            rejectedCount.incrementAndGet();
+            if (e.isShutdown()) {
+                fallback.rejectedExecution(r, e);
+                return;
+            }
+            if (forwarding.get() == Boolean.TRUE) {
+                loopCount.incrementAndGet();
+                fallback.rejectedExecution(r, e);
+                return;
+            }
+            boolean forwarded = false;
+            forwarding.set(Boolean.TRUE);
+            try {
+                overflow.execute(r);
+                forwarded = true;
+            } catch (RejectedExecutionException ex) {
+                overflowRejectedCount.incrementAndGet();
+            } finally {
+                forwarding.set(Boolean.FALSE);
+            }
+            if (forwarded) {
+                forwardedCount.incrementAndGet();
+            } else {
+                fallback.rejectedExecution(r, e);
+            }
+        }
+
+        /**
+         * @return 溢出执行器
+         */
+        public ExecutorService getOverflow() {
+            return overflow;
+        }
+
+        /**
+         * @return 主线程池拒绝、进入本策略的任务数
+         */
+        public long getRejectedCount() {
+            return rejectedCount.get();
+        }
+
+        /**
+         * @return 成功转交给溢出执行器的任务数
+         */
+        public long getForwardedCount() {
+            return forwardedCount.get();
+        }
+
+        /**
+         * @return 溢出执行器也拒绝的任务数
+         */
+        public long getOverflowRejectedCount() {
+            return overflowRejectedCount.get();
+        }
+
+        /**
+         * @return 因为检测到循环而没有转交的任务数
+         */
+        public long getLoopCount() {
+            return loopCount.get();
+        }
+
+        @Override
+        public String toString() {
+            return super.toString() + "[rejected = " + rejectedCount.get() +
+                    ", forwarded = " + forwardedCount.get() +
+                    ", overflow rejected = " + overflowRejectedCount.get() +
+                    ", loops = " + loopCount.get() + "]";
+        }
+    }
+
+    /**
+     * 用于大量拒绝（削峰）场景的AbortPolicy。
+     * AbortPolicy每次拒绝都要拼接 r.toString() 和 e.toString()（后者会获取mainLock并遍历workers），
+     * 再创建一个带完整堆栈的异常，过载时反而加重了负担。这里抛出的异常不填充堆栈，
+     * 消息在调用getMessage()时才生成：
+     *  shared = false：每次拒绝创建一个不带堆栈的异常，持有被拒绝的任务和线程池，用于延迟生成消息；
+     *  shared = true：所有拒绝共用一个预先创建的异常，不分配任何对象，但消息中没有任务信息，
+     *                 也不能通过异常找到被拒绝的任务。
+     */
+    public static class FastAbortPolicy implements RejectedExecutionHandler{
+
+        private static final RejectedExecutionException SHARED =
+                new StacklessRejectedExecutionException(null, null);
+
+        private final boolean shared;
+
+        /**
+         * 每次拒绝创建一个不带堆栈、延迟生成消息的异常
+         */
+        public FastAbortPolicy(){
+            this(false);
+        }
+
+        /**
+         * @param shared 是否所有拒绝共用一个预先创建的异常
+         */
+        public FastAbortPolicy(boolean shared){
+            this.shared = shared;
+        }
+
+        /**
+         * 总是抛出不带堆栈的RejectedExecutionException
+         * @param r
+         * @param e
+         */
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            throw shared ? SHARED : new StacklessRejectedExecutionException(r, e);
+        }
+    }
+
+    /**
+     * FastAbortPolicy抛出的异常：不填充堆栈，不支持suppressed，消息延迟生成
+     */
+    static final class StacklessRejectedExecutionException extends RejectedExecutionException{
+        private static final long serialVersionUID = 3590315226404329342L;
+
+        private final transient Runnable task;
+        private final transient ThreadPoolExecutor executor;
+
+        StacklessRejectedExecutionException(Runnable task, ThreadPoolExecutor executor) {
+            super(null, null, false, false);
+            this.task = task;
+            this.executor = executor;
+        }
+
+        @Override
+        public String getMessage() {
+            if (task == null) {
+                return "Task rejected (executor saturated or shut down)";
+            }
+            return "Task " + task.toString() + " rejected from " + executor.toString();
+        }
+    }
+
     public static class DiscardPolicy implements RejectedExecutionHandler{
 
         public DiscardPolicy(){}
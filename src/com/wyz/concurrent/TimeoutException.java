@@ -18,4 +18,44 @@ public class TimeoutException extends Exception {
     public TimeoutException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a {@code TimeoutException} with the specified detail
+     * message, cause, suppression enabled or disabled, and writable
+     * stack trace enabled or disabled. Subclasses may pass
+     * {@code false} for both flags to create cheap, stackless
+     * instances for hot timeout paths.
+     *
+     * @param message the detail message
+     * @param cause the cause, or {@code null}
+     * @param enableSuppression whether or not suppression is enabled
+     * @param writableStackTrace whether or not the stack trace should
+     *        be writable
+     */
+    protected TimeoutException(String message, Throwable cause,
+                               boolean enableSuppression,
+                               boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
+    /**
+     * If {@code true}, timed waits in this package throw one shared,
+     * stackless instance instead of allocating a new exception with a
+     * stack trace on every timeout. Opt in with the system property
+     * {@code com.wyz.concurrent.stacklessTimeouts=true}.
+     */
+    static final boolean STACKLESS_TIMEOUTS =
+        Boolean.getBoolean("com.wyz.concurrent.stacklessTimeouts");
+
+    private static final TimeoutException SHARED =
+        new TimeoutException("Timed out", null, false, false);
+
+    /**
+     * Returns the exception to throw when a timed wait expires: the
+     * shared stackless instance if {@link #STACKLESS_TIMEOUTS} is set,
+     * otherwise a new {@code TimeoutException}.
+     */
+    static TimeoutException timedOut() {
+        return STACKLESS_TIMEOUTS ? SHARED : new TimeoutException();
+    }
 }
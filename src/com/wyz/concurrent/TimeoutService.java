@@ -0,0 +1,402 @@
+package com.wyz.concurrent;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @ClassName TimeoutService
+ * @Description 共享的粗粒度超时服务（哈希时间轮），由一个线程驱动
+ * @Author wangyuezheng
+ * @Date 2026/10/18 09:12
+ */
+
+public class TimeoutService {
+
+    /*
+     * 时间轮由一个环形的桶数组组成，每个桶对应一个tick。
+     * 提交超时任务时只是把节点放进无锁的pending队列，真正挂到桶上的工作
+     * 由worker线程在每个tick开始时完成，所以桶只会被worker线程访问，不需要加锁。
+     *
+     * 一个节点所在的桶 = 到期的tick & mask，remainingRounds 记录还需要转几圈。
+     * worker每个tick处理一个桶：轮数为0且到期的节点执行，其余的轮数减1。
+     * 被取消的节点不会立即从桶中摘除，而是在worker扫描到它时顺带移除（惰性删除），
+     * 这样cancel只是一次CAS。
+     *
+     * 到期判断使用tick的截止时间，而worker总是在当前时间越过该截止时间之后才处理桶，
+     * 因此超时任务只会晚（最多一个tick），不会早。
+     */
+
+    /**
+     * 是否让 FutureTask 的限时等待和 invokeAll 的限时等待使用共享时间轮。
+     * 默认关闭，通过 -Dcom.wyz.concurrent.sharedTimedWaits=true 开启。
+     */
+    static final boolean SHARED_TIMED_WAITS =
+            Boolean.getBoolean("com.wyz.concurrent.sharedTimedWaits");
+
+    /**
+     * 共享时间轮的tick（纳秒）
+     */
+    private static final long SHARED_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 小于这个时长的等待仍然使用 parkNanos，
+     * 保证使用时间轮时误差（最多一个tick）不超过等待时长的10%。
+     */
+    static final long SHARED_MIN_NANOS = SHARED_TICK_NANOS * 10;
+
+    /**
+     * 判断给定的等待时长是否应该交给共享时间轮处理
+     * @param nanos 等待时长（纳秒）
+     * @return true:使用共享时间轮
+     */
+    static boolean useShared(long nanos) {
+        return SHARED_TIMED_WAITS && nanos >= SHARED_MIN_NANOS;
+    }
+
+    /**
+     * 共享实例，第一次使用时才创建，worker线程在第一次提交任务时才启动
+     */
+    private static final class SharedHolder {
+        static final TimeoutService INSTANCE =
+                new TimeoutService(SHARED_TICK_NANOS, TimeUnit.NANOSECONDS, 512,
+                        "wyz-shared-timeout-service", true);
+    }
+
+    /**
+     * 返回进程内共享的超时服务，该实例不能被停止。
+     * @return 共享的超时服务
+     */
+    public static TimeoutService shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    /**
+     * 提交超时任务后返回的句柄
+     */
+    public interface Timeout {
+        /**
+         * 取消该超时任务。
+         * @return true:取消成功；false:任务已经执行或已经被取消
+         */
+        boolean cancel();
+
+        /**
+         * @return 超时任务是否已经到期（任务已经执行或正在执行）
+         */
+        boolean isExpired();
+
+        /**
+         * @return 超时任务是否被取消
+         */
+        boolean isCancelled();
+    }
+
+    private static final int ST_INIT      = 0;
+    private static final int ST_CANCELLED = 1;
+    private static final int ST_EXPIRED   = 2;
+
+    /**
+     * 时间轮上的节点，同时也是返回给调用者的句柄
+     */
+    private static final class TimeoutNode implements Timeout {
+        /** 到期执行的任务，取消后置空以便尽早释放引用 */
+        volatile Runnable task;
+        /** 到期时间，相对于startTime的纳秒值 */
+        final long deadline;
+        /** 还需要转几圈，只由worker线程访问 */
+        long remainingRounds;
+        /** 桶内的双向链表，只由worker线程访问 */
+        TimeoutNode prev, next;
+        volatile int state;
+
+        TimeoutNode(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            task = null;
+            return true;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == ST_EXPIRED;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == ST_CANCELLED;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+            Runnable t = task;
+            task = null;
+            try {
+                t.run();
+            } catch (Throwable ex) {
+                //超时任务的异常不能让worker线程死掉，交给线程的异常处理器
+                Thread wt = Thread.currentThread();
+                wt.getUncaughtExceptionHandler().uncaughtException(wt, ex);
+            }
+        }
+
+        private static final AtomicIntegerFieldUpdater<TimeoutNode> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(TimeoutNode.class, "state");
+    }
+
+    /**
+     * 一个桶：只由worker线程访问的双向链表
+     */
+    private static final class Bucket {
+        TimeoutNode head, tail;
+
+        void add(TimeoutNode node) {
+            if (head == null) {
+                head = tail = node;
+            } else {
+                tail.next = node;
+                node.prev = tail;
+                tail = node;
+            }
+        }
+
+        TimeoutNode remove(TimeoutNode node) {
+            TimeoutNode next = node.next;
+            if (node.prev != null) {
+                node.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = node.prev;
+            }
+            if (node == head) {
+                head = next;
+            }
+            if (node == tail) {
+                tail = node.prev;
+            }
+            node.prev = node.next = null;
+            return next;
+        }
+
+        /**
+         * 执行所有到期的节点，移除被取消的节点，其余节点轮数减1
+         * @param deadline 当前tick的截止时间
+         */
+        void expireTimeouts(long deadline) {
+            TimeoutNode node = head;
+            while (node != null) {
+                if (node.state != ST_INIT) {
+                    node = remove(node);
+                } else if (node.remainingRounds <= 0 && node.deadline <= deadline) {
+                    TimeoutNode next = remove(node);
+                    node.expire();
+                    node = next;
+                } else {
+                    if (node.remainingRounds > 0) {
+                        node.remainingRounds--;
+                    }
+                    node = node.next;
+                }
+            }
+        }
+    }
+
+    private static final int WORKER_INIT     = 0;
+    private static final int WORKER_STARTED  = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Thread workerThread;
+    /** 新提交的超时任务，由worker线程在每个tick转移到桶上 */
+    private final ConcurrentLinkedQueue<TimeoutNode> pending = new ConcurrentLinkedQueue<>();
+    private volatile int workerState;
+    /** 时间轮的起始时间，worker启动后设置 */
+    private volatile long startTime;
+    private final boolean sharedInstance;
+
+    /**
+     * 创建一个时间轮
+     * @param tickDuration 每个tick的时长
+     * @param unit tickDuration的单位
+     * @param ticksPerWheel 桶的数量，会向上取整为2的幂
+     * @param threadName worker线程的名称
+     */
+    public TimeoutService(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName) {
+        this(tickDuration, unit, ticksPerWheel, threadName, false);
+    }
+
+    private TimeoutService(long tickDuration, TimeUnit unit, int ticksPerWheel,
+                           String threadName, boolean sharedInstance) {
+        if (unit == null || threadName == null) {
+            throw new NullPointerException();
+        }
+        if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > (1 << 30)) {
+            throw new IllegalArgumentException();
+        }
+        int n = 1;
+        while (n < ticksPerWheel) {
+            n <<= 1;
+        }
+        this.wheel = new Bucket[n];
+        for (int i = 0; i < n; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = n - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        //防止 tick * 桶数溢出
+        if (tickNanos >= Long.MAX_VALUE / n) {
+            throw new IllegalArgumentException("tickDuration is too large");
+        }
+        this.workerThread = new Thread(new Worker(), threadName);
+        this.workerThread.setDaemon(true);
+        this.sharedInstance = sharedInstance;
+    }
+
+    /**
+     * 提交一个超时任务，在给定延迟之后（最多再晚一个tick）由worker线程执行。
+     * 任务应当尽量短小，例如取消一个Future或者唤醒一个线程。
+     *
+     * @param task 到期执行的任务
+     * @param delay 延迟
+     * @param unit 延迟的单位
+     * @return 可以用来取消任务的句柄
+     * @throws RejectedExecutionException 如果服务已经停止
+     */
+    public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+        if (task == null || unit == null) {
+            throw new NullPointerException();
+        }
+        start();
+        long deadline = System.nanoTime() + unit.toNanos(delay) - startTime;
+        //防止溢出
+        if (delay > 0 && deadline < 0) {
+            deadline = Long.MAX_VALUE;
+        }
+        TimeoutNode node = new TimeoutNode(task, deadline);
+        pending.add(node);
+        return node;
+    }
+
+    /**
+     * 在给定时间之后取消future（可中断运行线程），future提前完成时超时任务什么也不做。
+     * @param future 需要限时的future
+     * @param delay 延迟
+     * @param unit 延迟的单位
+     * @return 超时句柄，future正常完成后可以调用cancel提前释放
+     */
+    public Timeout cancelAfter(final Future<?> future, long delay, TimeUnit unit) {
+        if (future == null) {
+            throw new NullPointerException();
+        }
+        return newTimeout(() -> future.cancel(true), delay, unit);
+    }
+
+    /**
+     * 停止worker线程，尚未到期的任务不会再执行。共享实例不能被停止。
+     */
+    public void stop() {
+        if (sharedInstance) {
+            throw new IllegalStateException("shared TimeoutService cannot be stopped");
+        }
+        int s = workerState;
+        if (s == WORKER_SHUTDOWN) {
+            return;
+        }
+        workerState = WORKER_SHUTDOWN;
+        if (s == WORKER_STARTED) {
+            LockSupport.unpark(workerThread);
+        }
+    }
+
+    /**
+     * 延迟启动worker线程
+     */
+    private void start() {
+        switch (workerState) {
+            case WORKER_INIT:
+                synchronized (this) {
+                    if (workerState == WORKER_INIT) {
+                        startTime = System.nanoTime();
+                        workerState = WORKER_STARTED;
+                        workerThread.start();
+                    }
+                }
+                break;
+            case WORKER_STARTED:
+                break;
+            default:
+                throw new RejectedExecutionException("TimeoutService has been stopped");
+        }
+    }
+
+    private final class Worker implements Runnable {
+        /** 已经处理过的tick数 */
+        private long tick;
+
+        @Override
+        public void run() {
+            while (workerState == WORKER_STARTED) {
+                long deadline = waitForNextTick();
+                if (deadline < 0) {
+                    break;
+                }
+                transferPending();
+                wheel[(int) (tick & mask)].expireTimeouts(deadline);
+                tick++;
+            }
+            pending.clear();
+        }
+
+        /**
+         * 等待到下一个tick的截止时间
+         * @return 截止时间（相对startTime），服务停止时返回-1
+         */
+        private long waitForNextTick() {
+            long deadline = tickNanos * (tick + 1);
+            for (;;) {
+                long current = System.nanoTime() - startTime;
+                long sleep = deadline - current;
+                if (sleep <= 0) {
+                    return current;
+                }
+                if (workerState != WORKER_STARTED) {
+                    return -1;
+                }
+                LockSupport.parkNanos(this, sleep);
+            }
+        }
+
+        /**
+         * 把新提交的任务挂到对应的桶上。每个tick最多转移固定数量，
+         * 防止大量提交时worker长时间不处理到期任务。
+         */
+        private void transferPending() {
+            for (int i = 0; i < 100000; i++) {
+                TimeoutNode node = pending.poll();
+                if (node == null) {
+                    break;
+                }
+                if (node.state != ST_INIT) {
+                    continue;
+                }
+                long calculated = node.deadline / tickNanos;
+                node.remainingRounds = (calculated - tick) / wheel.length;
+                //已经过期的任务放在当前桶里，本次tick就会执行
+                long ticks = Math.max(calculated, tick);
+                wheel[(int) (ticks & mask)].add(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.wyz.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * @ClassName WeightedBlockingQueue
+ * @Description 按总权重（例如估算的字节数）而不是元素个数限制容量的阻塞队列
+ * @Author wangyuezheng
+ * @Date 2026/10/18 17:10
+ */
+
+public class WeightedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /*
+     * 容量是所有元素权重之和的上限，元素的权重在入队时由weigher计算一次并保存在节点中，
+     * 出队/删除时按保存的值归还，所以weigher的结果即使之后发生变化也不会让计数出错。
+     *
+     * 一个元素能入队的条件是 weight + 当前权重 <= capacity。比capacity还重的元素
+     * 永远满足不了这个条件，为了不让它的生产者永久阻塞，队列为空时总是允许入队一个元素
+     * （此时总权重会暂时超过capacity，之后的入队要等它被取走）。
+     *
+     * 不同元素需要的空间不同，出队释放的空间可能只够部分等待者使用，
+     * notFull.signal()唤醒的生产者如果放不下就会重新等待，信号就丢了。所以释放权重时用signalAll，
+     * 由各个生产者自己判断是否放得下。
+     *
+     * 与LinkedTaskQueue相同，用一把锁和两个条件；迭代器基于快照。
+     */
+
+    static final class Node<E> {
+        final E item;
+        final long weight;
+        Node<E> next;
+
+        Node(E item, long weight) {
+            this.item = item;
+            this.weight = weight;
+        }
+    }
+
+    /** 计算元素权重的函数 */
+    private final ToLongFunction<? super E> weigher;
+
+    /** 总权重的上限 */
+    private final long capacity;
+
+    /** 当前所有元素的权重之和，guarded by lock */
+    private long weight;
+
+    /** Number of elements, guarded by lock */
+    private int count;
+
+    /** 第一个节点，guarded by lock */
+    private Node<E> head;
+
+    /** 最后一个节点，guarded by lock */
+    private Node<E> last;
+
+    /** Main lock guarding all access */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Condition for waiting takes */
+    private final Condition notEmpty = lock.newCondition();
+
+    /** Condition for waiting puts */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * @param capacity 总权重的上限
+     * @param weigher 计算元素权重的函数，必须返回非负数
+     * @throws IllegalArgumentException 如果 capacity 小于等于0
+     * @throws NullPointerException 如果 weigher 为null
+     */
+    public WeightedBlockingQueue(long capacity, ToLongFunction<? super E> weigher) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        if (weigher == null) {
+            throw new NullPointerException();
+        }
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    /**
+     * 计算并检查元素的权重，在加锁之前调用
+     */
+    private long weigh(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long w = weigher.applyAsLong(e);
+        if (w < 0) {
+            throw new IllegalArgumentException("negative weight: " + w);
+        }
+        return w;
+    }
+
+    /**
+     * 权重为w的元素现在能否入队。必须持有锁。
+     */
+    private boolean fits(long w) {
+        return count == 0 || w <= capacity - weight;
+    }
+
+    /**
+     * 把元素链接到队尾。必须持有锁，并且fits(w)。
+     */
+    private void enqueue(E e, long w) {
+        // assert lock.isHeldByCurrentThread();
+        Node<E> node = new Node<E>(e, w);
+        if (last == null) {
+            head = node;
+        } else {
+            last.next = node;
+        }
+        last = node;
+        weight += w;
+        ++count;
+        notEmpty.signal();
+    }
+
+    /**
+     * 从队头取出元素。必须持有锁，并且队列不为空。
+     */
+    private E dequeue() {
+        // assert lock.isHeldByCurrentThread();
+        // assert head != null;
+        Node<E> h = head;
+        head = h.next;
+        if (head == null) {
+            last = null;
+        }
+        h.next = null;
+        release(h.weight);
+        return h.item;
+    }
+
+    /**
+     * 把节点p从链表中摘除，trail是p的前驱（p是第一个节点时为null）。必须持有锁。
+     */
+    private void unlink(Node<E> p, Node<E> trail) {
+        // assert lock.isHeldByCurrentThread();
+        if (trail == null) {
+            head = p.next;
+        } else {
+            trail.next = p.next;
+        }
+        if (last == p) {
+            last = trail;
+        }
+        p.next = null;
+        release(p.weight);
+    }
+
+    /**
+     * 归还一个元素的权重并唤醒生产者。必须持有锁。
+     */
+    private void release(long w) {
+        weight -= w;
+        --count;
+        notFull.signalAll();
+    }
+
+    /**
+     * @return 总权重的上限
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 当前所有元素的权重之和
+     */
+    public long weight() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 还能容纳的权重。只有一个超重元素在队列中时总权重可能超过容量，此时返回0。
+     * @return 剩余的权重
+     */
+    public long remainingWeight() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return Math.max(0L, capacity - weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回剩余的权重（而不是元素个数），超过{@link Integer#MAX_VALUE}时返回
+     * {@link Integer#MAX_VALUE}。能否放入某个元素取决于它的权重，应该直接调用offer。
+     */
+    @Override
+    public int remainingCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE, remainingWeight());
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 阻塞直到剩余权重足够放下e
+     * @throws IllegalArgumentException 如果weigher返回负数
+     */
+    @Override
+    public void put(E e) throws InterruptedException {
+        long w = weigh(e);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (!fits(w)) {
+                notFull.await();
+            }
+            enqueue(e, w);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 最多等待给定时间，直到剩余权重足够放下e
+     * @return 是否入队成功
+     * @throws IllegalArgumentException 如果weigher返回负数
+     */
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long w = weigh(e);
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (!fits(w)) {
+                if (nanos <= 0L) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e, w);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 剩余权重足够时入队，否则立即返回false
+     * @throws IllegalArgumentException 如果weigher返回负数
+     */
+    @Override
+    public boolean offer(E e) {
+        long w = weigh(e);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (!fits(w)) {
+                return false;
+            }
+            enqueue(e, w);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanos <= 0L) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (count == 0) ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (head == null) ? null : head.item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> trail = null, p = head; p != null; trail = p, p = p.next) {
+                if (o.equals(p.item)) {
+                    unlink(p, trail);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> p = head; p != null; p = p.next) {
+                if (o.equals(p.item)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = new Object[count];
+            int k = 0;
+            for (Node<E> p = head; p != null; p = p.next) {
+                a[k++] = p.item;
+            }
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            for (Node<E> p = head, next; p != null; p = next) {
+                next = p.next;
+                p.next = null;
+            }
+            head = last = null;
+            weight = 0L;
+            count = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && head != null) {
+                //先加入c再出队，c.add抛出异常时元素仍留在队列中
+                c.add(head.item);
+                dequeue();
+                ++n;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 返回基于当前元素快照的迭代器，不会反映之后的修改。
+     * {@code remove()} 从队列中删除第一个与返回元素相等的元素。
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    private class Itr implements Iterator<E> {
+        private final Object[] snapshot;
+        private int cursor;
+        private E lastRet;
+
+        Itr(Object[] snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < snapshot.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= snapshot.length) {
+                throw new NoSuchElementException();
+            }
+            return lastRet = (E) snapshot[cursor++];
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet == null) {
+                throw new IllegalStateException();
+            }
+            WeightedBlockingQueue.this.remove(lastRet);
+            lastRet = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName ArgTaskShutdownTest
+ * @Description 多个线程用execute(Consumer, arg)提交时关闭线程池：复用的ArgTask不能让一个提交者撤回别人的提交，
+ *              每次提交要么执行一次，要么被拒绝，不会两者都有或者都没有
+ * @Author wangyuezheng
+ * @Date 2026/10/19 18:50
+ */
+
+public class ArgTaskShutdownTest {
+
+    static final int SUBMITTERS = 16;
+    static final int PER_SUBMITTER = 2000;
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 0; round < 50; round++) {
+            round(round);
+        }
+        System.out.println("ArgTaskShutdownTest OK");
+    }
+
+    static void round(int round) throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        int n = SUBMITTERS * PER_SUBMITTER;
+        AtomicIntegerArray ran = new AtomicIntegerArray(n);
+        AtomicIntegerArray rejected = new AtomicIntegerArray(n);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] submitters = new Thread[SUBMITTERS];
+        try {
+            for (int t = 0; t < SUBMITTERS; t++) {
+                final int base = t * PER_SUBMITTER;
+                submitters[t] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = base; i < base + PER_SUBMITTER; i++) {
+                        try {
+                            pool.execute(ran::incrementAndGet, i);
+                        } catch (RejectedExecutionException ex) {
+                            rejected.incrementAndGet(i);
+                        }
+                    }
+                });
+                submitters[t].start();
+            }
+            start.countDown();
+            //在提交进行中关闭，部分提交落在入队和重新检查之间
+            Thread.sleep(round % 5);
+            pool.shutdown();
+            for (Thread t : submitters) {
+                t.join();
+            }
+            check(pool.awaitTermination(10, TimeUnit.SECONDS), "round " + round + ": pool did not terminate");
+            for (int i = 0; i < n; i++) {
+                int r = ran.get(i), x = rejected.get(i);
+                check(r + x == 1, "round " + round + ": task " + i + " ran " + r + " times, rejected " + x + " times");
+            }
+        } finally {
+            Checks.shutdown(pool);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.BoundedExecutorCompletionService;
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName BoundedCompletionServiceTest
+ * @Description BoundedExecutorCompletionService：达到上限时submit阻塞到消费者取走结果，或者直接拒绝；
+ *              等待时被中断会拒绝并保留中断状态；执行器拒绝时归还许可；drainCompleted一次归还多个许可
+ * @Author wangyuezheng
+ * @Date 2026/10/19 19:45
+ */
+
+public class BoundedCompletionServiceTest {
+
+    public static void main(String[] args) throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            blockingSubmit(pool);
+            rejectWhenFull(pool);
+            interruptedSubmit(pool);
+            drainReleasesPermits(pool);
+        } finally {
+            Checks.shutdown(pool);
+        }
+        executorRejection();
+        System.out.println("BoundedCompletionServiceTest OK");
+    }
+
+    /**
+     * 两个结果都没有被取走时，第三次submit阻塞，take之后才返回
+     */
+    static void blockingSubmit(ThreadPoolExecutor pool) throws Exception {
+        BoundedExecutorCompletionService<Integer> cs = new BoundedExecutorCompletionService<>(pool, 2);
+        cs.submit(() -> 1);
+        cs.submit(() -> 2);
+        CountDownLatch submitted = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            cs.submit(() -> 3);
+            submitted.countDown();
+        });
+        producer.start();
+        check(!submitted.await(100, TimeUnit.MILLISECONDS), "submit did not block at the limit");
+        check(cs.getOutstandingCount() == 2, "outstanding " + cs.getOutstandingCount());
+        int first = cs.take().get();
+        check(submitted.await(10, TimeUnit.SECONDS), "submit still blocked after take");
+        int sum = first + cs.take().get() + cs.take().get();
+        check(sum == 6, "sum " + sum);
+        check(cs.getOutstandingCount() == 0, "outstanding after consuming " + cs.getOutstandingCount());
+        check(cs.getBlockedSubmitCount() == 1 && cs.getRejectedCount() == 0, "counters " + cs);
+        producer.join();
+    }
+
+    /**
+     * blockWhenFull=false时达到上限直接拒绝，已完成但未取走的结果也占用名额
+     */
+    static void rejectWhenFull(ThreadPoolExecutor pool) throws Exception {
+        BoundedExecutorCompletionService<Integer> cs = new BoundedExecutorCompletionService<>(pool, 3, false);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            final int n = i;
+            futures.add(cs.submit(() -> n));
+        }
+        for (Future<Integer> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        try {
+            cs.submit(() -> 99);
+            throw new AssertionError("submit accepted beyond the limit");
+        } catch (RejectedExecutionException expected) {
+        }
+        check(cs.getRejectedCount() == 1 && cs.getBlockedSubmitCount() == 0, "counters " + cs);
+        check(cs.poll(10, TimeUnit.SECONDS) != null, "completed task missing");
+        check(cs.submit(() -> 4).get(10, TimeUnit.SECONDS) == 4, "submit after poll");
+    }
+
+    /**
+     * 阻塞在上限的submit被中断：拒绝，中断状态保留，许可没有被占用
+     */
+    static void interruptedSubmit(ThreadPoolExecutor pool) throws Exception {
+        BoundedExecutorCompletionService<Integer> cs = new BoundedExecutorCompletionService<>(pool, 1);
+        cs.submit(() -> 1);
+        AtomicInteger outcome = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                cs.submit(() -> 2);
+                outcome.set(-1);
+            } catch (RejectedExecutionException expected) {
+                outcome.set(Thread.currentThread().isInterrupted() ? 1 : 2);
+            }
+        });
+        producer.start();
+        Thread.sleep(50);
+        producer.interrupt();
+        producer.join(10_000);
+        check(outcome.get() == 1, "interrupted submit outcome " + outcome.get());
+        check(cs.getOutstandingCount() == 1, "outstanding " + cs.getOutstandingCount());
+        check(cs.take().get() == 1, "first result");
+        check(cs.getOutstandingCount() == 0, "permit leaked by the interrupted submit");
+    }
+
+    /**
+     * drainCompleted取走多少个结果就归还多少个许可
+     */
+    static void drainReleasesPermits(ThreadPoolExecutor pool) throws Exception {
+        BoundedExecutorCompletionService<Integer> cs = new BoundedExecutorCompletionService<>(pool, 8, false);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int n = i;
+            futures.add(cs.submit(() -> n));
+        }
+        for (Future<Integer> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        List<Future<Integer>> out = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (out.size() < 8 && System.nanoTime() < deadline) {
+            cs.drainCompleted(out);
+        }
+        check(out.size() == 8, "drained " + out.size());
+        check(cs.getOutstandingCount() == 0, "outstanding after drain " + cs.getOutstandingCount());
+        for (int i = 0; i < 8; i++) {
+            final int n = i;
+            cs.submit(() -> n);
+        }
+        check(cs.getRejectedCount() == 0, "rejected after drain " + cs.getRejectedCount());
+    }
+
+    /**
+     * 执行器拒绝任务时，异常传给提交者，占用的许可归还
+     */
+    static void executorRejection() {
+        ThreadPoolExecutor closed = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        closed.shutdown();
+        BoundedExecutorCompletionService<Integer> cs = new BoundedExecutorCompletionService<>(closed, 1, false);
+        for (int i = 0; i < 3; i++) {
+            try {
+                cs.submit(() -> 1);
+                throw new AssertionError("shut down executor accepted a task");
+            } catch (RejectedExecutionException expected) {
+            }
+        }
+        check(cs.getOutstandingCount() == 0, "permit leaked by executor rejection");
+        check(cs.getRejectedCount() == 0, "executor rejections counted as limit rejections " + cs);
+    }
+}
@@ -0,0 +1,182 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName CallerBlocksPolicyTest
+ * @Description CallerBlocksPolicy：队列满时提交者等待空位，超时或被中断时拒绝并保留中断状态，
+ *              线程池关闭后直接拒绝，等待期间关闭时任务要么执行要么被拒绝
+ * @Author wangyuezheng
+ * @Date 2026/10/19 20:45
+ */
+
+public class CallerBlocksPolicyTest {
+
+    public static void main(String[] args) throws Exception {
+        blocksUntilSpace();
+        timeout();
+        interrupted();
+        alreadyShutDown();
+        shutdownWhileBlocked();
+        System.out.println("CallerBlocksPolicyTest OK");
+    }
+
+    /**
+     * 唯一的工作线程被占用、队列已满，提交者一直等到有空位
+     */
+    static void blocksUntilSpace() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = saturated(10, TimeUnit.SECONDS, release);
+        AtomicInteger ran = new AtomicInteger();
+        try {
+            CountDownLatch submitted = new CountDownLatch(1);
+            Thread submitter = new Thread(() -> {
+                pool.execute(ran::incrementAndGet);
+                submitted.countDown();
+            });
+            submitter.start();
+            check(!submitted.await(100, TimeUnit.MILLISECONDS), "submit did not block on a full queue");
+            release.countDown();
+            check(submitted.await(10, TimeUnit.SECONDS), "submit still blocked after space was freed");
+            pool.shutdown();
+            check(pool.awaitTermination(10, TimeUnit.SECONDS), "pool did not terminate");
+            check(ran.get() == 1, "ran " + ran.get());
+        } finally {
+            release.countDown();
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * 等待超时拒绝；timeout为0时队列满立即拒绝
+     */
+    static void timeout() throws Exception {
+        for (long millis : new long[]{0, 50}) {
+            CountDownLatch release = new CountDownLatch(1);
+            ThreadPoolExecutor pool = saturated(millis, TimeUnit.MILLISECONDS, release);
+            try {
+                long start = System.nanoTime();
+                try {
+                    pool.execute(() -> { });
+                    throw new AssertionError("task accepted by a full pool after " + millis + "ms");
+                } catch (RejectedExecutionException expected) {
+                }
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                check(waited >= millis, "rejected after " + waited + "ms, timeout " + millis + "ms");
+                check(pool.getQueue().size() == 1, "queue " + pool.getQueue().size());
+            } finally {
+                release.countDown();
+                Checks.shutdown(pool);
+            }
+        }
+    }
+
+    /**
+     * 等待时被中断：拒绝，中断状态保留，任务没有入队
+     */
+    static void interrupted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = saturated(10, TimeUnit.SECONDS, release);
+        try {
+            AtomicInteger outcome = new AtomicInteger();
+            Thread submitter = new Thread(() -> {
+                try {
+                    pool.execute(() -> { });
+                    outcome.set(-1);
+                } catch (RejectedExecutionException expected) {
+                    outcome.set(Thread.currentThread().isInterrupted() ? 1 : 2);
+                }
+            });
+            submitter.start();
+            Thread.sleep(50);
+            submitter.interrupt();
+            submitter.join(10_000);
+            check(outcome.get() == 1, "interrupted submit outcome " + outcome.get());
+            check(pool.getQueue().size() == 1, "queue " + pool.getQueue().size());
+        } finally {
+            release.countDown();
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * 线程池关闭之后不等待，直接拒绝
+     */
+    static void alreadyShutDown() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(1), new ThreadPoolExecutor.CallerBlocksPolicy(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        long start = System.nanoTime();
+        try {
+            pool.execute(() -> { });
+            throw new AssertionError("shut down pool accepted a task");
+        } catch (RejectedExecutionException expected) {
+        }
+        check(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5), "waited on a shut down pool");
+    }
+
+    /**
+     * 提交者在等待时线程池被关闭：之后腾出空位，任务入队后要么被撤回并拒绝，要么被执行，不能两者都有或者都没有
+     */
+    static void shutdownWhileBlocked() throws Exception {
+        for (int round = 0; round < 100; round++) {
+            CountDownLatch release = new CountDownLatch(1);
+            ThreadPoolExecutor pool = saturated(10, TimeUnit.SECONDS, release);
+            AtomicInteger ran = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+            try {
+                Thread submitter = new Thread(() -> {
+                    try {
+                        pool.execute(ran::incrementAndGet);
+                    } catch (RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    }
+                });
+                submitter.start();
+                awaitBlocked(submitter);
+                pool.shutdown();
+                release.countDown();
+                submitter.join(10_000);
+                check(!submitter.isAlive(), "round " + round + ": submitter still blocked");
+                check(pool.awaitTermination(10, TimeUnit.SECONDS), "round " + round + ": pool did not terminate");
+                check(ran.get() + rejected.get() == 1,
+                        "round " + round + ": ran " + ran.get() + " rejected " + rejected.get());
+            } finally {
+                release.countDown();
+                Checks.shutdown(pool);
+            }
+        }
+    }
+
+    /**
+     * 一个工作线程在release上阻塞、容量为1的队列中已经有一个任务的线程池
+     */
+    static ThreadPoolExecutor saturated(long timeout, TimeUnit unit, CountDownLatch release) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(1), new ThreadPoolExecutor.CallerBlocksPolicy(timeout, unit));
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        pool.execute(() -> { });
+        return pool;
+    }
+
+    static void awaitBlocked(Thread t) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (t.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        check(t.getState() == Thread.State.TIMED_WAITING, t + " did not block, state " + t.getState());
+    }
+}
@@ -0,0 +1,176 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.ExecutionException;
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName CallerRunsInvokeAllTest
+ * @Description invokeAll(tasks, true)：每个任务只执行一次，结果顺序与任务一致，最后一个任务在调用线程上执行，
+ *              工作线程都忙时调用线程执行整个批次，失败的任务不影响其他任务，等待时被中断会取消未完成的任务
+ * @Author wangyuezheng
+ * @Date 2026/10/19 20:00
+ */
+
+public class CallerRunsInvokeAllTest {
+
+    public static void main(String[] args) throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            exactlyOnce(pool);
+            failure(pool);
+        } finally {
+            Checks.shutdown(pool);
+        }
+        busyWorkers();
+        interrupted();
+        System.out.println("CallerRunsInvokeAllTest OK");
+    }
+
+    /**
+     * 调用线程和工作线程争抢同一批任务，每个任务恰好执行一次；最后一个任务总是由调用线程执行
+     */
+    static void exactlyOnce(ThreadPoolExecutor pool) throws Exception {
+        Thread caller = Thread.currentThread();
+        for (int round = 0; round < 200; round++) {
+            AtomicIntegerArray runs = new AtomicIntegerArray(50);
+            Thread[] ranOn = new Thread[50];
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                final int n = i;
+                tasks.add(() -> {
+                    runs.incrementAndGet(n);
+                    ranOn[n] = Thread.currentThread();
+                    return n;
+                });
+            }
+            List<Future<Integer>> futures = pool.invokeAll(tasks, true);
+            check(futures.size() == 50, "futures " + futures.size());
+            for (int i = 0; i < 50; i++) {
+                check(futures.get(i).isDone() && futures.get(i).get() == i, "round " + round + " result " + i);
+                check(runs.get(i) == 1, "round " + round + " task " + i + " ran " + runs.get(i) + " times");
+            }
+            check(ranOn[49] == caller, "round " + round + ": last task ran on " + ranOn[49]);
+        }
+    }
+
+    /**
+     * 一个任务失败，其他任务照常完成，失败通过它自己的future报告
+     */
+    static void failure(ThreadPoolExecutor pool) throws Exception {
+        List<Callable<String>> tasks = new ArrayList<>();
+        tasks.add(() -> "a");
+        tasks.add(() -> {
+            throw new IllegalStateException("b");
+        });
+        tasks.add(() -> "c");
+        List<Future<String>> futures = pool.invokeAll(tasks, true);
+        check("a".equals(futures.get(0).get()) && "c".equals(futures.get(2).get()), "other results");
+        try {
+            futures.get(1).get();
+            throw new AssertionError("failed task returned normally");
+        } catch (ExecutionException e) {
+            check(e.getCause() instanceof IllegalStateException, "cause " + e.getCause());
+        }
+    }
+
+    /**
+     * 唯一的工作线程被占用时，调用线程执行整个批次，不用等工作线程；
+     * 工作线程之后从队列中取到这些任务时不会再执行
+     */
+    static void busyWorkers() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            Thread caller = Thread.currentThread();
+            AtomicInteger onCaller = new AtomicInteger();
+            AtomicInteger executions = new AtomicInteger();
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final int n = i;
+                tasks.add(() -> {
+                    executions.incrementAndGet();
+                    if (Thread.currentThread() == caller) {
+                        onCaller.incrementAndGet();
+                    }
+                    return n;
+                });
+            }
+            List<Future<Integer>> futures = pool.invokeAll(tasks, true);
+            check(onCaller.get() == 10, "caller ran " + onCaller.get() + " of 10 tasks");
+            release.countDown();
+            //工作线程把队列中已经执行过的任务取完
+            pool.shutdown();
+            check(pool.awaitTermination(10, TimeUnit.SECONDS), "pool did not terminate");
+            check(executions.get() == 10, "10 tasks executed " + executions.get() + " times");
+            for (int i = 0; i < 10; i++) {
+                check(futures.get(i).get() == i, "result " + i);
+            }
+        } finally {
+            release.countDown();
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * 调用线程执行完自己能执行的任务后等待工作线程，等待时被中断：抛出InterruptedException并取消未完成的任务
+     */
+    static void interrupted() throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger outcome = new AtomicInteger();
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            //第一个任务被工作线程取走，一直阻塞到被取消时的中断
+            tasks.add(() -> {
+                started.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    cancelled.countDown();
+                }
+                return 0;
+            });
+            //调用线程最先执行最后一个任务，等工作线程取走第一个任务，否则调用线程会自己执行它
+            tasks.add(() -> started.await(10, TimeUnit.SECONDS) ? 1 : -1);
+            Thread caller = new Thread(() -> {
+                try {
+                    pool.invokeAll(tasks, true);
+                    outcome.set(-1);
+                } catch (InterruptedException expected) {
+                    outcome.set(1);
+                }
+            });
+            caller.start();
+            check(started.await(10, TimeUnit.SECONDS), "blocking task did not start");
+            Thread.sleep(50);
+            caller.interrupt();
+            caller.join(10_000);
+            check(outcome.get() == 1, "invokeAll outcome " + outcome.get());
+            check(cancelled.await(10, TimeUnit.SECONDS), "unfinished task was not cancelled");
+        } finally {
+            Checks.shutdown(pool);
+        }
+    }
+}
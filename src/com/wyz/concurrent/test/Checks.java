@@ -0,0 +1,49 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.ExecutorService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName Checks
+ * @Description 测试包中各个main共用的断言和执行器清理
+ * @Author wangyuezheng
+ * @Date 2026/10/19 17:00
+ */
+
+final class Checks {
+
+    private Checks() {
+    }
+
+    /**
+     * 条件不成立时抛出AssertionError，main以异常结束
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * 关闭执行器并等待终止，用在finally中，让main结束后JVM能正常退出。
+     * 主体已经失败时不要再抛出，以免覆盖原来的异常，所以这里只打印没有终止的执行器。
+     */
+    static void shutdown(ExecutorService... executors) {
+        for (ExecutorService executor : executors) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        for (ExecutorService executor : executors) {
+            try {
+                if (executor != null && !executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    System.err.println(executor + " did not terminate");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.CompletionIterator;
+import com.wyz.concurrent.ExecutorCompletionService;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName CompletionIteratorTest
+ * @Description SKIP策略跳过失败的任务时，stream的count和toArray按实际产生的结果计算
+ * @Author wangyuezheng
+ * @Date 2026/10/19 10:50
+ */
+
+public class CompletionIteratorTest {
+
+    public static void main(String[] args) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final int n = i;
+            tasks.add(() -> {
+                if (n % 3 == 0) {
+                    throw new IllegalStateException("task " + n);
+                }
+                return n;
+            });
+        }
+        try {
+            //0、3、6、9失败，剩下6个结果
+            try (Stream<Integer> s = CompletionIterator.submitAll(new ExecutorCompletionService<Integer>(executor),
+                    tasks, CompletionIterator.FailurePolicy.SKIP).stream()) {
+                long count = s.count();
+                check(count == 6, "count " + count);
+            }
+            try (Stream<Integer> s = CompletionIterator.submitAll(new ExecutorCompletionService<Integer>(executor),
+                    tasks, CompletionIterator.FailurePolicy.SKIP).stream()) {
+                Object[] results = s.toArray();
+                check(results.length == 6, "toArray " + results.length);
+            }
+        } finally {
+            Checks.shutdown(executor);
+        }
+        System.out.println("CompletionIteratorTest OK");
+    }
+}
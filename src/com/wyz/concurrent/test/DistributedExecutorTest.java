@@ -0,0 +1,278 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.DistributedExecutorService;
+import com.wyz.concurrent.DistributedWorkerNode;
+import com.wyz.concurrent.ExecutionException;
+import com.wyz.concurrent.ExecutorCompletionService;
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName DistributedExecutorTest
+ * @Description 在回环地址上启动三个DistributedWorkerNode，检查结果、异常、invokeAny/invokeHedged/完成服务、
+ * invokeAll(callerRuns)只在节点上执行、取消、节点断开、shutdownNow之后的终止，以及自带线程池的节点能关闭
+ * @Author wangyuezheng
+ * @Date 2026/10/19 11:50
+ */
+
+public class DistributedExecutorTest {
+
+    /** 节点和测试在同一个JVM中，任务通过静态字段通知测试线程 */
+    static final CountDownLatch NEVER = new CountDownLatch(1);
+    static final AtomicInteger executions = new AtomicInteger();
+    static final CountDownLatch probeStarted = new CountDownLatch(1);
+    static final CountDownLatch probeCancelled = new CountDownLatch(1);
+    static final AtomicInteger strayInterrupts = new AtomicInteger();
+    /** 调用cancel之前设置，任务被中断时据此判断中断是不是CANCEL帧引起的 */
+    static volatile boolean cancelRequested;
+
+    static class Square implements Callable<Long>, Serializable {
+        private static final long serialVersionUID = 1L;
+        final long n;
+
+        Square(long n) {
+            this.n = n;
+        }
+
+        @Override
+        public Long call() {
+            if (n == 7) {
+                throw new IllegalStateException("seven");
+            }
+            return n * n;
+        }
+    }
+
+    /** 记录执行次数 */
+    static class Counted implements Callable<Integer>, Serializable {
+        private static final long serialVersionUID = 1L;
+        final int n;
+
+        Counted(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public Integer call() {
+            executions.incrementAndGet();
+            return n;
+        }
+    }
+
+    /** 一直阻塞，只有中断才能让它返回 */
+    static class Blocker implements Callable<Long>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Long call() {
+            try {
+                NEVER.await();
+                return 0L;
+            } catch (InterruptedException e) {
+                return -1L;
+            }
+        }
+    }
+
+    /** 与Blocker相同，并记录中断是否发生在cancel之后 */
+    static class CancelProbe implements Callable<String>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String call() {
+            probeStarted.countDown();
+            try {
+                NEVER.await();
+                return "released";
+            } catch (InterruptedException e) {
+                if (cancelRequested) {
+                    probeCancelled.countDown();
+                } else {
+                    strayInterrupts.incrementAndGet();
+                }
+                return "interrupted";
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(8, 8, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        DistributedWorkerNode w1 = null;
+        DistributedWorkerNode w2 = null;
+        DistributedWorkerNode w3 = null;
+        DistributedExecutorService executor = null;
+        try {
+            w1 = new DistributedWorkerNode(new InetSocketAddress("127.0.0.1", 0), pool);
+            w2 = new DistributedWorkerNode(new InetSocketAddress("127.0.0.1", 0), pool);
+            w3 = new DistributedWorkerNode(new InetSocketAddress("127.0.0.1", 0), pool);
+            executor = new DistributedExecutorService(w1.getAddress(), w2.getAddress(), w3.getAddress());
+            run(executor, w1);
+        } finally {
+            Checks.shutdown(executor);
+            for (DistributedWorkerNode w : Arrays.asList(w1, w2, w3)) {
+                if (w != null) {
+                    w.close();
+                }
+            }
+            Checks.shutdown(pool);
+        }
+        ownedExecutorCloses();
+        System.out.println("DistributedExecutorTest OK");
+    }
+
+    static void run(DistributedExecutorService executor, DistributedWorkerNode w1) throws Exception {
+        //结果和异常
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(executor.submit(new Square(i)));
+        }
+        long sum = 0;
+        Throwable failure = null;
+        for (Future<Long> f : futures) {
+            try {
+                sum += f.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            }
+        }
+        //0..999的平方和减去失败的7*7
+        check(sum == 332833500L - 49, "sum " + sum);
+        check(failure instanceof IllegalStateException && "seven".equals(failure.getMessage()),
+                "failure " + failure);
+
+        //ExecutorCompletionService交给execute的包装不能序列化，执行的是里面的任务
+        ExecutorCompletionService<Long> ecs = new ExecutorCompletionService<>(executor);
+        for (int i = 1; i <= 5; i++) {
+            ecs.submit(new Square(i));
+        }
+        long ecsSum = 0;
+        for (int i = 0; i < 5; i++) {
+            Future<Long> f = ecs.poll(10, TimeUnit.SECONDS);
+            check(f != null, "completion service result " + i + " missing");
+            ecsSum += f.get();
+        }
+        check(ecsSum == 55, "completion service sum " + ecsSum);
+        //invokeAny和invokeHedged都通过ExecutorCompletionService提交
+        long any = executor.invokeAny(Arrays.asList(new Square(7), new Square(5)));
+        check(any == 25, "invokeAny " + any);
+        long hedged = executor.invokeHedged(Arrays.<Callable<Long>>asList(new Blocker(), new Square(4)),
+                20, TimeUnit.MILLISECONDS);
+        check(hedged == 16, "invokeHedged " + hedged);
+        awaitIdle(executor);
+
+        //invokeAll(callerRuns)只在节点上执行，每个任务一次
+        List<Counted> counted = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            counted.add(new Counted(i));
+        }
+        executions.set(0);
+        List<Future<Integer>> all = executor.invokeAll(counted, true);
+        for (int i = 0; i < 8; i++) {
+            check(all.get(i).get() == i, "invokeAll result " + i);
+        }
+        check(executions.get() == 8, "8 tasks executed " + executions.get() + " times");
+
+        //取消通过CANCEL帧中断节点上正在执行的任务
+        Future<String> probe = executor.submit(new CancelProbe());
+        check(probeStarted.await(10, TimeUnit.SECONDS), "probe task did not start");
+        cancelRequested = true;
+        check(probe.cancel(true), "cancel");
+        check(probeCancelled.await(10, TimeUnit.SECONDS),
+                "remote task was not interrupted by cancel, stray interrupts " + strayInterrupts.get());
+        check(strayInterrupts.get() == 0, "stray interrupts " + strayInterrupts.get());
+        awaitIdle(executor);
+
+        //不能序列化的任务被拒绝
+        try {
+            executor.submit(() -> 1);
+            throw new AssertionError("non-serializable task accepted");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        //节点断开时，分配给它的任务以IOException失败，之后的任务分配给剩下的节点。
+        //三个节点都空闲，三个任务各分配给一个节点；Blocker不会自己完成，所以完成的只能是断开的那个
+        List<Future<Long>> inFlight = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            inFlight.add(executor.submit(new Blocker()));
+        }
+        w1.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (doneCount(inFlight) == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        check(doneCount(inFlight) == 1, "lost " + doneCount(inFlight));
+        for (Future<Long> f : inFlight) {
+            if (f.isDone()) {
+                try {
+                    f.get();
+                    throw new AssertionError("lost task completed normally");
+                } catch (ExecutionException e) {
+                    check(e.getCause() instanceof IOException, "lost task failed with " + e.getCause());
+                }
+            }
+        }
+        check(executor.getNodeCount() == 2, "nodes " + executor.getNodeCount());
+        check(executor.submit(new Square(3)).get(10, TimeUnit.SECONDS) == 9, "after node loss");
+
+        //shutdownNow取消剩下的任务后终止
+        executor.shutdownNow();
+        check(executor.awaitTermination(10, TimeUnit.SECONDS), "executor did not terminate");
+        for (Future<Long> f : inFlight) {
+            check(f.isDone(), "task not done after shutdownNow");
+        }
+    }
+
+    /** 自己创建线程池的节点，close()要能返回并关闭线程池 */
+    static void ownedExecutorCloses() throws Exception {
+        DistributedWorkerNode node = new DistributedWorkerNode(0, 2);
+        DistributedExecutorService client = null;
+        try {
+            client = new DistributedExecutorService(
+                    new InetSocketAddress("127.0.0.1", node.getAddress().getPort()));
+            check(client.submit(new Square(6)).get(10, TimeUnit.SECONDS) == 36, "owning node result");
+        } finally {
+            Checks.shutdown(client);
+            Thread closer = new Thread(node::close, "node-closer");
+            closer.start();
+            closer.join(10_000);
+            check(!closer.isAlive(), "close() of the owning node did not return");
+        }
+    }
+
+    static int doneCount(List<? extends Future<?>> futures) {
+        int n = 0;
+        for (Future<?> f : futures) {
+            if (f.isDone()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    static void awaitIdle(DistributedExecutorService executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            if (executor.outstandingByNode().values().stream().allMatch(n -> n == 0)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("outstanding " + executor.outstandingByNode());
+    }
+}
@@ -0,0 +1,198 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.ExecutionException;
+import com.wyz.concurrent.FusedCompletionService;
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName FusedCompletionServiceTest
+ * @Description FusedCompletionService：按完成顺序取出，drainCompleted不阻塞并取走全部已完成任务，
+ *              poll/take的等待与超时，失败的任务照常入队，多个消费者并发时每个任务只被取出一次
+ * @Author wangyuezheng
+ * @Date 2026/10/19 19:30
+ */
+
+public class FusedCompletionServiceTest {
+
+    public static void main(String[] args) throws Exception {
+        //单线程：完成顺序就是提交顺序
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(8, 8, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            drainInCompletionOrder(single);
+            waiting(single);
+            failures(single);
+            concurrentConsumers(pool);
+        } finally {
+            Checks.shutdown(single, pool);
+        }
+        System.out.println("FusedCompletionServiceTest OK");
+    }
+
+    /**
+     * 先取出一部分，再用drainCompleted取走剩下的，整体仍然是完成顺序
+     */
+    static void drainInCompletionOrder(ThreadPoolExecutor single) throws Exception {
+        FusedCompletionService<Integer> cs = new FusedCompletionService<>(single);
+        List<Future<Integer>> submitted = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            submitted.add(cs.submit(() -> n));
+        }
+        List<Future<Integer>> out = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            out.add(cs.take());
+        }
+        //get()在done()入队之前就能返回，所以这里反复drain直到全部取到
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (out.size() < 100 && System.nanoTime() < deadline) {
+            int before = out.size();
+            int drained = cs.drainCompleted(out);
+            check(drained == out.size() - before, "drainCompleted returned " + drained);
+        }
+        check(out.size() == 100, "drained " + out.size());
+        check(cs.drainCompleted(out) == 0, "drain after all tasks were taken was not empty");
+        check(cs.poll() == null, "poll after drain");
+        for (int i = 0; i < 100; i++) {
+            check(out.get(i) == submitted.get(i), "completion order at " + i);
+            check(out.get(i).get() == i, "result " + i);
+        }
+    }
+
+    /**
+     * take一直等到有任务完成；poll(timeout)超时返回null
+     */
+    static void waiting(ThreadPoolExecutor single) throws Exception {
+        FusedCompletionService<String> cs = new FusedCompletionService<>(single);
+        long start = System.nanoTime();
+        check(cs.poll(50, TimeUnit.MILLISECONDS) == null, "timed poll on empty service");
+        check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50), "timed poll returned early");
+
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> f = cs.submit(() -> {
+            release.await();
+            return "done";
+        });
+        AtomicInteger taken = new AtomicInteger();
+        Thread taker = new Thread(() -> {
+            try {
+                if (cs.take() == f) {
+                    taken.incrementAndGet();
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        taker.start();
+        Thread.sleep(50);
+        check(taker.isAlive() && taken.get() == 0, "take returned before completion");
+        release.countDown();
+        taker.join(10_000);
+        check(!taker.isAlive() && taken.get() == 1, "take did not return the completed task");
+
+        //等待中的take可以被中断
+        Thread interrupted = new Thread(() -> {
+            try {
+                cs.take();
+                taken.set(-1);
+            } catch (InterruptedException expected) {
+                taken.set(2);
+            }
+        });
+        interrupted.start();
+        Thread.sleep(50);
+        interrupted.interrupt();
+        interrupted.join(10_000);
+        check(taken.get() == 2, "take was not interrupted " + taken.get());
+    }
+
+    /**
+     * 抛出异常和用Runnable提交的任务同样按完成顺序入队
+     */
+    static void failures(ThreadPoolExecutor single) throws Exception {
+        FusedCompletionService<String> cs = new FusedCompletionService<>(single);
+        Future<String> failed = cs.submit(() -> {
+            throw new IllegalStateException("boom");
+        });
+        Future<String> ran = cs.submit(() -> { }, "runnable");
+        check(cs.take() == failed, "failed task not first");
+        try {
+            failed.get();
+            throw new AssertionError("failed task returned normally");
+        } catch (ExecutionException e) {
+            check(e.getCause() instanceof IllegalStateException, "cause " + e.getCause());
+        }
+        check(cs.take() == ran && "runnable".equals(ran.get()), "runnable result");
+    }
+
+    /**
+     * 多个消费者混用take、poll和drainCompleted，每个任务恰好被取出一次
+     */
+    static void concurrentConsumers(ThreadPoolExecutor pool) throws Exception {
+        final int tasks = 20000;
+        FusedCompletionService<Integer> cs = new FusedCompletionService<>(pool);
+        Set<Future<Integer>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        Thread[] consumers = new Thread[4];
+        for (int t = 0; t < consumers.length; t++) {
+            final int mode = t;
+            consumers[t] = new Thread(() -> {
+                List<Future<Integer>> batch = new ArrayList<>();
+                try {
+                    while (received.get() < tasks) {
+                        batch.clear();
+                        if (mode == 0) {
+                            Future<Integer> f = cs.poll(10, TimeUnit.MILLISECONDS);
+                            if (f != null) {
+                                batch.add(f);
+                            }
+                        } else if (mode == 1) {
+                            cs.drainCompleted(batch);
+                        } else {
+                            Future<Integer> f = cs.poll();
+                            if (f != null) {
+                                batch.add(f);
+                            }
+                        }
+                        for (Future<Integer> f : batch) {
+                            synchronized (seen) {
+                                if (!seen.add(f)) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                            received.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+            consumers[t].start();
+        }
+        for (int i = 0; i < tasks; i++) {
+            final int n = i;
+            cs.submit(() -> n);
+        }
+        for (Thread t : consumers) {
+            t.join(30_000);
+            check(!t.isAlive(), "consumer stuck with " + received.get() + " received");
+        }
+        check(received.get() == tasks && seen.size() == tasks, "received " + received.get() + " distinct " + seen.size());
+        check(duplicates.get() == 0, "duplicates " + duplicates.get());
+        check(cs.poll() == null, "left over tasks");
+    }
+}
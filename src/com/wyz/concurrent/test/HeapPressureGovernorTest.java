@@ -0,0 +1,85 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.HeapPressureGovernor;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName HeapPressureGovernorTest
+ * @Description CRITICAL时队列限制为0只是不再排队：空闲的核心线程名额仍然可以接受任务，线程满了才拒绝
+ * @Author wangyuezheng
+ * @Date 2026/10/19 09:40
+ */
+
+public class HeapPressureGovernorTest {
+
+    /** 保留在老年代里，让GC后的占用率超过很低的阈值 */
+    static byte[][] ballast;
+
+    public static void main(String[] args) throws Exception {
+        ballast = new byte[64][];
+        for (int i = 0; i < ballast.length; i++) {
+            ballast[i] = new byte[256 << 10];
+        }
+        System.gc();
+        System.gc();
+        HeapPressureGovernor governor = new HeapPressureGovernor(0.001, 0.002, Integer.MAX_VALUE, 0, 1, TimeUnit.SECONDS);
+        ThreadPoolExecutor executor = null;
+        try {
+            if (governor.getLevel() != HeapPressureGovernor.Level.CRITICAL) {
+                System.out.println("HeapPressureGovernorTest SKIPPED: level " + governor.getLevel()
+                        + " occupancy " + governor.occupancy());
+                return;
+            }
+            executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            executor.setHeapPressureGovernor(governor);
+
+            CountDownLatch started = new CountDownLatch(2);
+            CountDownLatch release = new CountDownLatch(1);
+            for (int i = 0; i < 2; i++) {
+                //两个核心线程名额都空闲，任务直接交给新线程，不应该被拒绝
+                executor.execute(() -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            check(started.await(5, TimeUnit.SECONDS), "tasks for idle core threads did not run");
+
+            //线程已满，队列限制为0，应该被拒绝
+            try {
+                executor.execute(() -> { });
+                throw new AssertionError("task queued in CRITICAL with queue limit 0");
+            } catch (RejectedExecutionException expected) {
+            }
+
+            //Sheddable任务无论是否有空闲线程都被拒绝
+            class Low implements Runnable, HeapPressureGovernor.Sheddable {
+                @Override
+                public void run() {
+                }
+            }
+            try {
+                executor.execute(new Low());
+                throw new AssertionError("sheddable task accepted in CRITICAL");
+            } catch (RejectedExecutionException expected) {
+            }
+            release.countDown();
+            System.out.println("HeapPressureGovernorTest OK shed " + governor.getShedCount()
+                    + " queueLimited " + governor.getQueueLimitCount());
+        } finally {
+            governor.close();
+            Checks.shutdown(executor);
+        }
+    }
+}
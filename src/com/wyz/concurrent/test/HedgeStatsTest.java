@@ -0,0 +1,118 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.HedgeStats;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName HedgeStatsTest
+ * @Description HedgeStats：样本第一次攒够时立即更新对冲延迟，之后按间隔更新；
+ *              invokeHedged记录的调用、对冲触发和对冲获胜次数
+ * @Author wangyuezheng
+ * @Date 2026/10/19 19:10
+ */
+
+public class HedgeStatsTest {
+
+    /** 不会被countDown，阻塞的任务只能被取消时的中断唤醒 */
+    static final CountDownLatch NEVER = new CountDownLatch(1);
+
+    public static void main(String[] args) throws Exception {
+        recompute();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            counters(pool);
+        } finally {
+            Checks.shutdown(pool);
+        }
+        System.out.println("HedgeStatsTest OK");
+    }
+
+    /**
+     * 前19个样本使用默认延迟，第20个样本立即生效，之后每32个样本才重新计算
+     */
+    static void recompute() {
+        long ms = TimeUnit.MILLISECONDS.toNanos(1);
+        HedgeStats stats = new HedgeStats(1024, 0.95, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 19; i++) {
+            stats.recordLatency(ms);
+        }
+        check(stats.hedgeDelayNanos() == 10 * ms, "delay before enough samples " + stats.hedgeDelayNanos());
+        stats.recordLatency(ms);
+        check(stats.hedgeDelayNanos() == ms, "delay at the first full window " + stats.hedgeDelayNanos());
+        for (int i = 0; i < 31; i++) {
+            stats.recordLatency(100 * ms);
+        }
+        check(stats.hedgeDelayNanos() == ms, "delay between recomputes " + stats.hedgeDelayNanos());
+        stats.recordLatency(100 * ms);
+        check(stats.hedgeDelayNanos() == 100 * ms, "delay after 32 more samples " + stats.hedgeDelayNanos());
+
+        //窗口只有MIN_SAMPLES个样本时，也不会每个样本都重新计算
+        HedgeStats small = new HedgeStats(20, 1.0, 10, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 20; i++) {
+            small.recordLatency(ms);
+        }
+        check(small.hedgeDelayNanos() == ms, "small window first delay " + small.hedgeDelayNanos());
+        small.recordLatency(100 * ms);
+        check(small.hedgeDelayNanos() == ms, "small window recomputed early " + small.hedgeDelayNanos());
+    }
+
+    static void counters(ThreadPoolExecutor pool) throws Exception {
+        //第一个任务一直阻塞，对冲启动的第二个任务获胜
+        HedgeStats stats = new HedgeStats(1024, 0.95, 20, TimeUnit.MILLISECONDS);
+        String r = pool.invokeHedged(Arrays.asList(blocking(), value("hedge")), stats);
+        check("hedge".equals(r), "hedged result " + r);
+        check(stats.getInvocationCount() == 1 && stats.getHedgesFired() == 1 && stats.getHedgesWon() == 1,
+                "hedge won " + stats);
+
+        //第一个任务在对冲之后、对冲任务之前完成：对冲触发了但没有获胜
+        r = pool.invokeHedged(Arrays.asList(delayed("first", 100), blocking()), stats);
+        check("first".equals(r), "first result " + r);
+        check(stats.getInvocationCount() == 2 && stats.getHedgesFired() == 2 && stats.getHedgesWon() == 1,
+                "hedge lost " + stats);
+
+        //第一个任务在对冲延迟内完成，不触发对冲
+        HedgeStats slow = new HedgeStats(1024, 0.95, 10, TimeUnit.SECONDS);
+        r = pool.invokeHedged(Arrays.asList(value("fast"), blocking()), slow);
+        check("fast".equals(r), "fast result " + r);
+        check(slow.getHedgesFired() == 0 && slow.getHedgesWon() == 0, "no hedge " + slow);
+
+        //第一个任务失败时立即启动下一个任务，不计为对冲
+        r = pool.invokeHedged(Arrays.asList(failing(), value("fallback")), slow);
+        check("fallback".equals(r), "fallback result " + r);
+        check(slow.getInvocationCount() == 2 && slow.getHedgesFired() == 0 && slow.getHedgesWon() == 0,
+                "failure is not a hedge " + slow);
+    }
+
+    static Callable<String> value(String v) {
+        return () -> v;
+    }
+
+    static Callable<String> delayed(String v, long millis) {
+        return () -> {
+            Thread.sleep(millis);
+            return v;
+        };
+    }
+
+    static Callable<String> blocking() {
+        return () -> {
+            NEVER.await();
+            return "released";
+        };
+    }
+
+    static Callable<String> failing() {
+        return () -> {
+            throw new IllegalStateException("failed");
+        };
+    }
+}
@@ -0,0 +1,163 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.JournaledBlockingQueue;
+import com.wyz.concurrent.SpillingBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName JournaledBlockingQueueTest
+ * @Description JournaledBlockingQueue：没有ack的元素重启后按顺序恢复，压缩后仍然完整，写日志失败的元素不会被取出，
+ *              作为线程池的队列时只确认运行完并且afterExecute正常返回的任务
+ * @Author wangyuezheng
+ * @Date 2026/10/19 11:20
+ */
+
+public class JournaledBlockingQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        recovery();
+        failedWriteIsNotVisible();
+        poolAck();
+        System.out.println("JournaledBlockingQueueTest OK");
+    }
+
+    /**
+     * 入队100个，取出60个并确认其中50个：重启后恢复剩下的40个和取出未确认的10个，按id顺序
+     */
+    static void recovery() throws Exception {
+        File file = File.createTempFile("journal", ".log");
+        try {
+            //压缩阈值很小，后台线程会在测试期间压缩日志
+            JournaledBlockingQueue<Integer> q = new JournaledBlockingQueue<>(file,
+                    SpillingBlockingQueue.<Integer>javaSerializer(), 5, TimeUnit.MILLISECONDS, 256);
+            for (int i = 0; i < 100; i++) {
+                q.put(i);
+            }
+            for (int i = 0; i < 60; i++) {
+                Integer v = q.take();
+                check(v == i, "took " + v + " expected " + i);
+                if (i < 50) {
+                    check(q.ack(v), "ack " + v);
+                }
+            }
+            Thread.sleep(100);
+            long compactions = q.getCompactionCount();
+            q.close();
+
+            JournaledBlockingQueue<Integer> r = new JournaledBlockingQueue<>(file,
+                    SpillingBlockingQueue.<Integer>javaSerializer());
+            check(r.getRecoveredCount() == 50, "recovered " + r.getRecoveredCount());
+            for (int i = 50; i < 100; i++) {
+                Integer v = r.poll();
+                check(v != null && v == i, "recovered " + v + " expected " + i);
+            }
+            r.close();
+            System.out.println("recovery OK, compactions " + compactions);
+        } finally {
+            file.delete();
+            new File(file.getPath() + ".compact").delete();
+        }
+    }
+
+    /** 线程池的任务，name为"before"或"after"时对应的钩子抛出异常 */
+    static final class Job implements Runnable, Serializable {
+        private static final long serialVersionUID = 1L;
+        static volatile CountDownLatch ran;
+        final String name;
+
+        Job(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            ran.countDown();
+        }
+    }
+
+    /**
+     * 线程池从队列取出的任务：正常运行完的被确认，beforeExecute或afterExecute抛出异常的不被确认
+     */
+    static void poolAck() throws Exception {
+        File file = File.createTempFile("journal", ".log");
+        JournaledBlockingQueue<Runnable> q = new JournaledBlockingQueue<>(file,
+                SpillingBlockingQueue.<Runnable>javaSerializer());
+        ThreadPoolExecutor pool = null;
+        try {
+            CountDownLatch hooks = new CountDownLatch(3);
+            pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, q) {
+                @Override
+                protected void beforeExecute(Thread t, Runnable r) {
+                    hooks.countDown();
+                    if ("before".equals(((Job) r).name)) {
+                        throw new IllegalStateException("before");
+                    }
+                }
+
+                @Override
+                protected void afterExecute(Runnable r, Throwable t) {
+                    if ("after".equals(((Job) r).name)) {
+                        throw new IllegalStateException("after");
+                    }
+                }
+            };
+            //钩子抛出的异常会结束工作线程，不打印
+            pool.setThreadFactory(r -> {
+                Thread t = new Thread(r);
+                t.setUncaughtExceptionHandler((th, ex) -> { });
+                return t;
+            });
+            pool.prestartAllCoreThreads();
+            Job.ran = new CountDownLatch(2);
+            Job ok = new Job("ok"), before = new Job("before"), after = new Job("after");
+            pool.execute(before);
+            pool.execute(after);
+            pool.execute(ok);
+            check(Job.ran.await(10, TimeUnit.SECONDS) && hooks.await(10, TimeUnit.SECONDS), "jobs did not run");
+            //最后一个任务的ack发生在run()之后，等线程池处理完
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (pool.getCompletedTaskCount() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            check(!q.ack(ok), "completed task was not acked");
+            check(q.ack(before), "task whose beforeExecute threw was acked");
+            check(q.ack(after), "task whose afterExecute threw was acked");
+        } finally {
+            Checks.shutdown(pool);
+            q.close();
+            file.delete();
+        }
+    }
+
+    /**
+     * /dev/full上的写入总是失败：offer抛出异常，元素不能出现在队列里
+     */
+    static void failedWriteIsNotVisible() throws Exception {
+        File full = new File("/dev/full");
+        if (!full.exists()) {
+            System.out.println("failedWriteIsNotVisible SKIPPED: no /dev/full");
+            return;
+        }
+        JournaledBlockingQueue<Integer> q = new JournaledBlockingQueue<>(full,
+                SpillingBlockingQueue.<Integer>javaSerializer());
+        try {
+            q.offer(1);
+            throw new AssertionError("offer succeeded on /dev/full");
+        } catch (UncheckedIOException expected) {
+        }
+        check(q.size() == 0 && q.poll() == null, "element of failed offer is visible");
+        try {
+            q.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.AbstractExecutorService;
+import com.wyz.concurrent.Executor;
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.KeyedOrderedExecutor;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+import com.wyz.concurrent.TimeoutService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName KeyedOrderedExecutorTest
+ * @Description KeyedOrderedExecutor在各种拒绝策略下不丢任务、不卡死key：
+ *              DiscardPolicy静默丢弃由看门狗恢复，线程池积压时排队的Ticket不被收回，重新发出时阻塞不影响共享的TimeoutService，
+ *              CallerRunsPolicy栈深度不随批次增长，线程池关闭后任务被显式取消
+ * @Author wangyuezheng
+ * @Date 2026/10/19 10:20
+ */
+
+public class KeyedOrderedExecutorTest {
+
+    public static void main(String[] args) throws Exception {
+        discardPolicy();
+        backlog();
+        callerRunsPolicy();
+        shutdownExecutor();
+        blockingReissue();
+        System.out.println("KeyedOrderedExecutorTest OK");
+    }
+
+    /**
+     * 队列容量为1的DiscardPolicy线程池会静默丢弃大部分Ticket，看门狗重新发出后所有任务仍然按顺序执行完
+     */
+    static void discardPolicy() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(1), new ThreadPoolExecutor.DiscardPolicy());
+        try {
+            discardPolicy(pool);
+        } finally {
+            Checks.shutdown(pool);
+        }
+    }
+
+    static void discardPolicy(ThreadPoolExecutor pool) throws InterruptedException {
+        KeyedOrderedExecutor keyed = new KeyedOrderedExecutor(pool, 4, 20, TimeUnit.MILLISECONDS);
+        int keys = 50, per = 20;
+        int[] last = new int[keys];
+        AtomicInteger bad = new AtomicInteger(), done = new AtomicInteger();
+        for (int i = 0; i < per; i++) {
+            for (int k = 0; k < keys; k++) {
+                final int key = k, seq = i;
+                keyed.execute(key, () -> {
+                    if (last[key] != seq) {
+                        bad.incrementAndGet();
+                    }
+                    last[key] = seq + 1;
+                    done.incrementAndGet();
+                });
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (done.get() < keys * per && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        check(done.get() == keys * per, "discard: only " + done.get() + " of " + keys * per + " tasks ran");
+        check(bad.get() == 0, "discard: " + bad.get() + " tasks out of order");
+        check(keyed.activeKeyCount() == 0, "discard: " + keyed.activeKeyCount() + " keys left behind");
+        check(keyed.getRecoveredCount() > 0, "discard: nothing was recovered");
+        System.out.println("discard recovered " + keyed.getRecoveredCount());
+    }
+
+    /**
+     * 线程池积压时Ticket在队列中等待超过stallTimeout，看门狗不能把它们当成丢失收回，
+     * 否则每次收回都把key重新排到队尾，key一直得不到执行
+     */
+    static void backlog() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            KeyedOrderedExecutor keyed = new KeyedOrderedExecutor(pool, 4, 10, TimeUnit.MILLISECONDS);
+            CountDownLatch gate = new CountDownLatch(1);
+            pool.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException ignore) {
+                }
+            });
+            int keys = 20, per = 10;
+            int[] last = new int[keys];
+            AtomicInteger bad = new AtomicInteger(), done = new AtomicInteger();
+            for (int i = 0; i < per; i++) {
+                for (int k = 0; k < keys; k++) {
+                    final int key = k, seq = i;
+                    keyed.execute(key, () -> {
+                        if (last[key] != seq) {
+                            bad.incrementAndGet();
+                        }
+                        last[key] = seq + 1;
+                        done.incrementAndGet();
+                    });
+                }
+            }
+            //排队的时间是stallTimeout的很多倍，期间看门狗检查了多次
+            Thread.sleep(200);
+            gate.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (done.get() < keys * per && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            check(done.get() == keys * per, "backlog: only " + done.get() + " of " + keys * per + " tasks ran");
+            check(bad.get() == 0, "backlog: " + bad.get() + " tasks out of order");
+            check(keyed.getRecoveredCount() == 0, "backlog: revoked " + keyed.getRecoveredCount() + " queued tickets");
+        } finally {
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * 重新发出时线程池的execute一直阻塞（例如CallerBlocksPolicy），共享TimeoutService上的其他超时任务仍然按时执行
+     */
+    static void blockingReissue() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        //第一次静默丢弃，之后的execute一直阻塞到release
+        Executor blocking = command -> {
+            if (calls.incrementAndGet() > 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        KeyedOrderedExecutor keyed = new KeyedOrderedExecutor(blocking, 4, 10, TimeUnit.MILLISECONDS);
+        try {
+            keyed.execute("k", () -> { });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (calls.get() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            check(calls.get() >= 2, "blocking: lost ticket was not reissued");
+            CountDownLatch fired = new CountDownLatch(1);
+            TimeoutService.shared().newTimeout(fired::countDown, 10, TimeUnit.MILLISECONDS);
+            check(fired.await(5, TimeUnit.SECONDS), "blocking: reissue blocked the shared TimeoutService");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * 线程池饱和时CallerRunsPolicy在让出的线程里同步执行Ticket，不能每批递归一层
+     */
+    static void callerRunsPolicy() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(1), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            callerRunsPolicy(pool);
+        } finally {
+            Checks.shutdown(pool);
+        }
+    }
+
+    static void callerRunsPolicy(ThreadPoolExecutor pool) throws InterruptedException {
+        KeyedOrderedExecutor keyed = new KeyedOrderedExecutor(pool, 1);
+        //占住唯一的线程和队列，让出时的execute都会被CallerRunsPolicy同步执行
+        Object gate = new Object();
+        synchronized (gate) {
+            pool.execute(() -> {
+                synchronized (gate) {
+                }
+            });
+            pool.execute(() -> { });
+        }
+        int n = 5000;
+        AtomicInteger done = new AtomicInteger(), maxDepth = new AtomicInteger();
+        int[] last = new int[1];
+        AtomicInteger bad = new AtomicInteger();
+        Runnable first = () -> {
+            //第一个任务在执行时把其余的任务都放进同一个key
+            for (int i = 1; i < n; i++) {
+                final int seq = i;
+                keyed.execute("hot", () -> {
+                    maxDepth.accumulateAndGet(Thread.currentThread().getStackTrace().length, Math::max);
+                    if (last[0] != seq) {
+                        bad.incrementAndGet();
+                    }
+                    last[0] = seq + 1;
+                    done.incrementAndGet();
+                });
+            }
+            last[0] = 1;
+            done.incrementAndGet();
+        };
+        synchronized (gate) {
+            keyed.execute("hot", first);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (done.get() < n && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        check(done.get() == n, "caller runs: only " + done.get() + " of " + n + " tasks ran");
+        check(bad.get() == 0, "caller runs: " + bad.get() + " tasks out of order");
+        check(maxDepth.get() < 200, "caller runs: stack depth grew to " + maxDepth.get());
+        System.out.println("caller runs max stack depth " + maxDepth.get());
+    }
+
+    /**
+     * 线程池关闭后静默丢弃（和CallerRunsPolicy关闭后的行为相同）：提交者收到异常，已经入队的任务被取消
+     */
+    static void shutdownExecutor() throws Exception {
+        SilentExecutor pool = new SilentExecutor();
+        KeyedOrderedExecutor keyed = new KeyedOrderedExecutor(pool, 4, 20, TimeUnit.MILLISECONDS);
+        Future<Integer> f1 = keyed.submit("k", () -> 1);
+        Future<Integer> f2 = keyed.submit("k", () -> 2);
+        pool.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!(f1.isCancelled() && f2.isCancelled()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        check(f1.isCancelled() && f2.isCancelled(), "shutdown: queued tasks were not cancelled");
+        check(keyed.getDroppedCount() == 2, "shutdown: dropped " + keyed.getDroppedCount());
+        try {
+            keyed.submit("k", () -> 3);
+            throw new AssertionError("shutdown: task accepted after shutdown");
+        } catch (RejectedExecutionException expected) {
+        }
+        check(keyed.activeKeyCount() == 0, "shutdown: key left behind");
+    }
+
+    /**
+     * 只收下任务从不执行的执行器，关闭后静默丢弃
+     */
+    static final class SilentExecutor extends AbstractExecutorService {
+        final List<Runnable> accepted = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            if (!shutdown) {
+                accepted.add(command);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return new ArrayList<>(accepted);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return shutdown;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.RejectedExecutionHandler;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName OverflowPolicyTest
+ * @Description OverflowPolicy：主线程池饱和时转交给溢出线程池，submit返回的Future仍然有效；
+ *              溢出线程池也拒绝或主线程池已关闭时交给fallback；两个线程池互为溢出或者溢出到自身时
+ *              检测到循环，以拒绝结束而不是无限递归，之后的转交不受影响
+ * @Author wangyuezheng
+ * @Date 2026/10/19 21:00
+ */
+
+public class OverflowPolicyTest {
+
+    public static void main(String[] args) throws Exception {
+        forwards();
+        overflowRejects();
+        primaryShutDown();
+        mutualOverflow();
+        selfOverflow();
+        System.out.println("OverflowPolicyTest OK");
+    }
+
+    /**
+     * 饱和的主线程池把任务转交给溢出线程池，Future在溢出线程池中完成
+     */
+    static void forwards() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor overflow = pool("overflow", new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor.OverflowPolicy policy = new ThreadPoolExecutor.OverflowPolicy(overflow);
+        ThreadPoolExecutor primary = pool("primary", policy);
+        try {
+            saturate(primary, release);
+            Future<String> f = primary.submit(() -> Thread.currentThread().getName());
+            String ranOn = f.get(10, TimeUnit.SECONDS);
+            check(ranOn.startsWith("overflow"), "forwarded task ran on " + ranOn);
+            check(policy.getRejectedCount() == 1 && policy.getForwardedCount() == 1, "counters " + policy);
+        } finally {
+            release.countDown();
+            Checks.shutdown(primary, overflow);
+        }
+    }
+
+    /**
+     * 溢出线程池也饱和时使用fallback
+     */
+    static void overflowRejects() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor overflow = pool("overflow", new ThreadPoolExecutor.AbortPolicy());
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        ThreadPoolExecutor.OverflowPolicy policy = new ThreadPoolExecutor.OverflowPolicy(overflow,
+                (r, e) -> fallbackCalls.incrementAndGet());
+        ThreadPoolExecutor primary = pool("primary", policy);
+        try {
+            saturate(primary, release);
+            saturate(overflow, release);
+            primary.execute(() -> { });
+            check(fallbackCalls.get() == 1, "fallback calls " + fallbackCalls.get());
+            check(policy.getOverflowRejectedCount() == 1 && policy.getForwardedCount() == 0, "counters " + policy);
+        } finally {
+            release.countDown();
+            Checks.shutdown(primary, overflow);
+        }
+    }
+
+    /**
+     * 主线程池已经关闭时不转交
+     */
+    static void primaryShutDown() throws Exception {
+        ThreadPoolExecutor overflow = pool("overflow", new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor.OverflowPolicy policy = new ThreadPoolExecutor.OverflowPolicy(overflow);
+        ThreadPoolExecutor primary = pool("primary", policy);
+        try {
+            primary.shutdown();
+            try {
+                primary.execute(() -> { });
+                throw new AssertionError("shut down primary accepted a task");
+            } catch (RejectedExecutionException expected) {
+            }
+            check(policy.getForwardedCount() == 0 && overflow.getTaskCount() == 0, "forwarded after shutdown " + policy);
+        } finally {
+            Checks.shutdown(primary, overflow);
+        }
+    }
+
+    /**
+     * 两个饱和的线程池互为溢出线程池：A转交给B，B又转交回A，A的策略检测到循环，提交以拒绝结束
+     */
+    static void mutualOverflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor[] pools = new ThreadPoolExecutor[2];
+        //A的溢出线程池要在B创建之后才有，用转发到pools[1]的执行器连接
+        LazyPool toB = new LazyPool(pools, 1);
+        ThreadPoolExecutor.OverflowPolicy policyA = new ThreadPoolExecutor.OverflowPolicy(toB);
+        pools[0] = pool("a", policyA);
+        ThreadPoolExecutor.OverflowPolicy policyB = new ThreadPoolExecutor.OverflowPolicy(pools[0]);
+        pools[1] = pool("b", policyB);
+        try {
+            saturate(pools[0], release);
+            saturate(pools[1], release);
+            try {
+                pools[0].execute(() -> { });
+                throw new AssertionError("task accepted by two saturated pools");
+            } catch (RejectedExecutionException expected) {
+            }
+            check(policyA.getLoopCount() == 1 && policyA.getRejectedCount() == 2, "policy A " + policyA);
+            check(policyA.getOverflowRejectedCount() == 1 && policyB.getOverflowRejectedCount() == 1,
+                    "overflow rejections " + policyA + " " + policyB);
+
+            //循环检测的线程状态已经清除：A空闲、B再次饱和时，从B转交给A成功
+            release.countDown();
+            awaitIdle(pools[0]);
+            awaitIdle(pools[1]);
+            CountDownLatch blockB = new CountDownLatch(1);
+            try {
+                saturate(pools[1], blockB);
+                Future<String> f = pools[1].submit(() -> Thread.currentThread().getName());
+                String ranOn = f.get(10, TimeUnit.SECONDS);
+                check(ranOn.startsWith("a"), "task forwarded from B ran on " + ranOn);
+                check(policyB.getForwardedCount() == 1, "policy B " + policyB);
+            } finally {
+                blockB.countDown();
+            }
+        } finally {
+            release.countDown();
+            Checks.shutdown(pools);
+        }
+    }
+
+    /**
+     * 溢出线程池就是自身：第二次进入策略时检测到循环
+     */
+    static void selfOverflow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor[] pools = new ThreadPoolExecutor[1];
+        ThreadPoolExecutor.OverflowPolicy policy = new ThreadPoolExecutor.OverflowPolicy(new LazyPool(pools, 0));
+        pools[0] = pool("self", policy);
+        try {
+            saturate(pools[0], release);
+            try {
+                pools[0].execute(() -> { });
+                throw new AssertionError("saturated pool accepted a task from itself");
+            } catch (RejectedExecutionException expected) {
+            }
+            check(policy.getLoopCount() == 1 && policy.getRejectedCount() == 2 && policy.getForwardedCount() == 0,
+                    "counters " + policy);
+        } finally {
+            release.countDown();
+            Checks.shutdown(pools);
+        }
+    }
+
+    /**
+     * 把execute转发给数组中稍后才创建的线程池
+     */
+    static final class LazyPool extends ThreadPoolExecutor {
+        private final ThreadPoolExecutor[] pools;
+        private final int index;
+
+        LazyPool(ThreadPoolExecutor[] pools, int index) {
+            super(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            this.pools = pools;
+            this.index = index;
+            //自身从不执行任务
+            shutdown();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            pools[index].execute(command);
+        }
+    }
+
+    /**
+     * 一个线程、队列容量为1的线程池，线程名以name开头
+     */
+    static ThreadPoolExecutor pool(String name, RejectedExecutionHandler handler) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadFactory factory = r -> new Thread(r, name + "-" + n.incrementAndGet());
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1),
+                factory, handler);
+    }
+
+    /**
+     * 占住唯一的线程并填满队列。线程已经存在时占用它的任务会先入队，所以等它开始执行后再填满队列
+     */
+    static void saturate(ThreadPoolExecutor pool, CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        check(started.await(10, TimeUnit.SECONDS), pool + " did not start the blocking task");
+        pool.execute(() -> { });
+    }
+
+    static void awaitIdle(ThreadPoolExecutor pool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((pool.getActiveCount() > 0 || !pool.getQueue().isEmpty()) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        check(pool.getActiveCount() == 0 && pool.getQueue().isEmpty(), pool + " did not become idle");
+    }
+}
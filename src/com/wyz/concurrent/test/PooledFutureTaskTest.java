@@ -0,0 +1,67 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.FutureTaskPool;
+import com.wyz.concurrent.LinkedTaskQueue;
+import com.wyz.concurrent.PooledFutureTask;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName PooledFutureTaskTest
+ * @Description 池化的PooledFutureTask和LinkedTaskQueue上的IntrusiveFutureTask：结果正确，任务被复用，旧的stamp失效，
+ *              IntrusiveFutureTask不是Callable，不能绕过run()执行
+ * @Author wangyuezheng
+ * @Date 2026/10/19 16:10
+ */
+
+public class PooledFutureTaskTest {
+
+    public static void main(String[] args) throws Exception {
+        //工作队列是LinkedTaskQueue时，submit返回的是自身链接进队列的IntrusiveFutureTask
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedTaskQueue());
+        try {
+            long sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                final int v = i;
+                sum += pool.submit(() -> v).get(5, TimeUnit.SECONDS);
+            }
+            check(sum == 499500, "intrusive sum " + sum);
+            AtomicInteger runs = new AtomicInteger();
+            Future<?> f = pool.submit((Runnable) runs::incrementAndGet);
+            check(f.get(5, TimeUnit.SECONDS) == null && runs.get() == 1, "intrusive runnable result");
+            check(!(f instanceof Callable), "intrusive task exposes call()");
+
+            FutureTaskPool<Integer> tasks = new FutureTaskPool<>();
+            PooledFutureTask<Integer> first = null;
+            int reused = 0;
+            for (int i = 0; i < 1000; i++) {
+                final int v = i;
+                PooledFutureTask<Integer> t = tasks.submit(pool, () -> v);
+                int stamp = t.stamp();
+                check(t.get(stamp, 5, TimeUnit.SECONDS) == i, "pooled result " + i);
+                t.release(stamp);
+                if (first == null) {
+                    first = t;
+                } else if (t == first) {
+                    reused++;
+                }
+                //release之后旧的stamp失效
+                try {
+                    t.get(stamp);
+                    throw new AssertionError("stale stamp accepted");
+                } catch (IllegalStateException expected) {
+                }
+            }
+            check(reused > 0, "pooled task was never reused");
+        } finally {
+            Checks.shutdown(pool);
+        }
+        System.out.println("PooledFutureTaskTest OK");
+    }
+}
@@ -0,0 +1,236 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.IntBlockingQueue;
+import com.wyz.concurrent.LongBlockingQueue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName PrimitiveBlockingQueueTest
+ * @Description LongBlockingQueue和IntBlockingQueue：数组回绕后的顺序、drainTo分两段复制和参数检查、
+ *              drainTo/clear唤醒所有等待的生产者、空队列和超时时返回调用者给定的值、多生产者多消费者不丢不重
+ * @Author wangyuezheng
+ * @Date 2026/10/19 20:15
+ */
+
+public class PrimitiveBlockingQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        wraparound();
+        drainBounds();
+        drainWakesProducers();
+        clearWakesProducers();
+        emptyValues();
+        intQueue();
+        producersAndConsumers();
+        System.out.println("PrimitiveBlockingQueueTest OK");
+    }
+
+    /**
+     * 队头在数组中间时入队回绕到数组开头，toArray、contains和drainTo仍然按队列顺序
+     */
+    static void wraparound() throws Exception {
+        LongBlockingQueue q = new LongBlockingQueue(5);
+        for (long i = 1; i <= 5; i++) {
+            check(q.offer(i), "offer " + i);
+        }
+        check(!q.offer(6), "offer into a full queue");
+        check(q.remainingCapacity() == 0, "remaining " + q.remainingCapacity());
+        for (long i = 1; i <= 3; i++) {
+            check(q.take() == i, "take " + i);
+        }
+        for (long i = 6; i <= 8; i++) {
+            check(q.offer(i), "offer after wrap " + i);
+        }
+        check(Arrays.equals(q.toArray(), new long[]{4, 5, 6, 7, 8}), "toArray " + q);
+        check(q.contains(7) && !q.contains(3), "contains " + q);
+        check(q.peek(-1) == 4, "peek " + q.peek(-1));
+
+        //从dst[2]开始复制，跨过数组末尾分两段
+        long[] dst = new long[10];
+        check(q.drainTo(dst, 2, 4) == 4, "drain 4");
+        check(Arrays.equals(dst, new long[]{0, 0, 4, 5, 6, 7, 0, 0, 0, 0}), "drained " + Arrays.toString(dst));
+        check(q.size() == 1 && q.peek(-1) == 8, "after drain " + q);
+
+        //drain之后takeIndex正确：继续入队出队不乱序
+        for (long i = 9; i <= 12; i++) {
+            q.put(i);
+        }
+        for (long i = 8; i <= 12; i++) {
+            check(q.poll(-1) == i, "poll " + i);
+        }
+        check(q.isEmpty(), "not empty " + q);
+    }
+
+    static void drainBounds() {
+        LongBlockingQueue q = new LongBlockingQueue(4);
+        q.add(1);
+        long[] dst = new long[4];
+        int[][] bad = {{-1, 1}, {0, -1}, {1, 4}, {5, 0}};
+        for (int[] b : bad) {
+            try {
+                q.drainTo(dst, b[0], b[1]);
+                throw new AssertionError("drainTo(offset " + b[0] + ", max " + b[1] + ") accepted");
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+        check(q.size() == 1, "bad drainTo removed elements");
+        check(q.drainTo(dst, 4, 0) == 0 && q.size() == 1, "drainTo with no room");
+        try {
+            q.add(2);
+            q.add(3);
+            q.add(4);
+            q.add(5);
+            throw new AssertionError("add into a full queue");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * 队列满时有三个生产者在put中等待，一次drainTo腾出三个位置，三个生产者都要被唤醒
+     */
+    static void drainWakesProducers() throws Exception {
+        LongBlockingQueue q = new LongBlockingQueue(3);
+        for (long i = 0; i < 3; i++) {
+            q.put(i);
+        }
+        CountDownLatch done = new CountDownLatch(3);
+        Thread[] producers = startProducers(q, 3, done);
+        awaitBlocked(producers);
+        check(q.drainTo(new long[3]) == 3, "drain");
+        check(done.await(10, TimeUnit.SECONDS), "producers still blocked after drain: " + done.getCount());
+        check(q.size() == 3, "size " + q.size());
+    }
+
+    static void clearWakesProducers() throws Exception {
+        LongBlockingQueue q = new LongBlockingQueue(2);
+        q.put(1);
+        q.put(2);
+        CountDownLatch done = new CountDownLatch(2);
+        Thread[] producers = startProducers(q, 2, done);
+        awaitBlocked(producers);
+        q.clear();
+        check(done.await(10, TimeUnit.SECONDS), "producers still blocked after clear: " + done.getCount());
+        check(q.size() == 2 && q.toArray()[0] == 100 && q.toArray()[1] == 100, "after clear " + q);
+    }
+
+    /**
+     * 基本类型没有null，空队列和超时返回调用者给定的值
+     */
+    static void emptyValues() throws Exception {
+        LongBlockingQueue q = new LongBlockingQueue(2);
+        check(q.poll(-7) == -7 && q.peek(-8) == -8, "empty poll/peek");
+        long start = System.nanoTime();
+        check(q.poll(30, TimeUnit.MILLISECONDS, -9) == -9, "timed poll value");
+        check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30), "timed poll returned early");
+        q.put(Long.MIN_VALUE);
+        q.put(Long.MAX_VALUE);
+        check(!q.offer(0, 30, TimeUnit.MILLISECONDS), "timed offer into a full queue");
+        check(q.poll(0) == Long.MIN_VALUE && q.take() == Long.MAX_VALUE, "extreme values");
+    }
+
+    /**
+     * IntBlockingQueue与LongBlockingQueue结构相同，检查回绕和分段drain
+     */
+    static void intQueue() throws Exception {
+        IntBlockingQueue q = new IntBlockingQueue(4);
+        for (int i = 1; i <= 4; i++) {
+            q.put(i);
+        }
+        check(q.take() == 1 && q.take() == 2, "take");
+        check(q.offer(5) && q.offer(6) && !q.offer(7), "offer after wrap");
+        check(Arrays.equals(q.toArray(), new int[]{3, 4, 5, 6}), "toArray " + q);
+        int[] dst = new int[6];
+        check(q.drainTo(dst, 1, 5) == 4, "drain");
+        check(Arrays.equals(dst, new int[]{0, 3, 4, 5, 6, 0}), "drained " + Arrays.toString(dst));
+        check(q.poll(-1) == -1 && q.poll(10, TimeUnit.MILLISECONDS, -2) == -2, "empty values");
+    }
+
+    /**
+     * 四个生产者、四个消费者（两个take，两个drainTo），所有元素恰好被取出一次
+     */
+    static void producersAndConsumers() throws Exception {
+        final int perProducer = 100_000;
+        final int producers = 4;
+        final long total = (long) perProducer * producers;
+        LongBlockingQueue q = new LongBlockingQueue(64);
+        AtomicLong received = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        Thread[] threads = new Thread[producers * 2];
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (long i = base; i < base + perProducer; i++) {
+                        q.put(i);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        for (int c = 0; c < producers; c++) {
+            final boolean drain = (c & 1) == 0;
+            threads[producers + c] = new Thread(() -> {
+                long[] batch = new long[16];
+                try {
+                    while (received.get() < total) {
+                        if (drain) {
+                            int n = q.drainTo(batch);
+                            for (int i = 0; i < n; i++) {
+                                sum.addAndGet(batch[i]);
+                            }
+                            received.addAndGet(n);
+                        } else {
+                            long x = q.poll(1, TimeUnit.MILLISECONDS, -1);
+                            if (x >= 0) {
+                                sum.addAndGet(x);
+                                received.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join(60_000);
+            check(!t.isAlive(), "thread stuck, received " + received.get());
+        }
+        check(received.get() == total, "received " + received.get());
+        check(sum.get() == total * (total - 1) / 2, "sum " + sum.get());
+        check(q.isEmpty(), "left over " + q.size());
+    }
+
+    static Thread[] startProducers(LongBlockingQueue q, int n, CountDownLatch done) {
+        Thread[] producers = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            producers[i] = new Thread(() -> {
+                try {
+                    q.put(100);
+                    done.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            producers[i].start();
+        }
+        return producers;
+    }
+
+    static void awaitBlocked(Thread[] threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Thread t : threads) {
+            while (t.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            check(t.getState() == Thread.State.WAITING, t + " did not block, state " + t.getState());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.DoubleFutureTask;
+import com.wyz.concurrent.ExecutionException;
+import com.wyz.concurrent.IntFuture;
+import com.wyz.concurrent.IntFutureTask;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.LongFutureTask;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName PrimitiveFutureTaskTest
+ * @Description Int/Long/DoubleFutureTask不再是Callable，只能通过run()完成；结果、异常和取消的行为与FutureTask相同
+ * @Author wangyuezheng
+ * @Date 2026/10/19 14:10
+ */
+
+public class PrimitiveFutureTaskTest {
+
+    public static void main(String[] args) throws Exception {
+        IntFutureTask i = new IntFutureTask(() -> 42);
+        LongFutureTask l = new LongFutureTask(() -> 1L << 40);
+        DoubleFutureTask d = new DoubleFutureTask(() -> 0.5);
+        for (Object task : new Object[] {i, l, d}) {
+            check(!(task instanceof Callable), task.getClass().getSimpleName() + " is a Callable");
+        }
+        i.run();
+        l.run();
+        d.run();
+        check(i.getAsInt() == 42 && i.get() == 42, "int " + i.getAsInt());
+        check(l.getAsLong() == 1L << 40 && l.get() == 1L << 40, "long " + l.getAsLong());
+        check(d.getAsDouble() == 0.5 && d.get() == 0.5, "double " + d.getAsDouble());
+
+        //异常
+        IntFutureTask failing = new IntFutureTask(() -> {
+            throw new IllegalStateException("boom");
+        });
+        failing.run();
+        try {
+            failing.getAsInt();
+            throw new AssertionError("no exception");
+        } catch (ExecutionException expected) {
+            check(expected.getCause() instanceof IllegalStateException, "cause " + expected.getCause());
+        }
+
+        //取消之后run不会执行任务
+        int[] ran = new int[1];
+        IntFutureTask cancelled = new IntFutureTask(() -> ++ran[0]);
+        check(cancelled.cancel(false), "cancel");
+        cancelled.run();
+        check(ran[0] == 0, "cancelled task ran");
+
+        try {
+            new IntFutureTask(null);
+            throw new AssertionError("null task accepted");
+        } catch (NullPointerException expected) {
+        }
+
+        //通过执行器提交
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        try {
+            IntFuture f = pool.submitInt(() -> 6 * 7);
+            check(f.getAsInt(5, TimeUnit.SECONDS) == 42, "submitInt");
+            check(pool.submitLong(() -> 7L).getAsLong(5, TimeUnit.SECONDS) == 7L, "submitLong");
+            check(pool.submitDouble(() -> 1.5).getAsDouble(5, TimeUnit.SECONDS) == 1.5, "submitDouble");
+        } finally {
+            Checks.shutdown(pool);
+        }
+        System.out.println("PrimitiveFutureTaskTest OK");
+    }
+}
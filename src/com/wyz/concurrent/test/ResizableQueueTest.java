@@ -0,0 +1,214 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.LinkedBlockingQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName ResizableQueueTest
+ * @Description LinkedBlockingQueue.setCapacity：扩容唤醒所有阻塞在put和限时offer上的生产者；
+ *              缩容不丢弃元素，队列降到新容量以下之前插入阻塞或失败；容量不断变化时元素不丢不重
+ * @Author wangyuezheng
+ * @Date 2026/10/19 21:15
+ */
+
+public class ResizableQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        growWakesProducers();
+        shrink();
+        drainAfterShrink();
+        try {
+            new LinkedBlockingQueue<Integer>(1).setCapacity(0);
+            throw new AssertionError("capacity 0 accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        resizeUnderLoad();
+        System.out.println("ResizableQueueTest OK");
+    }
+
+    /**
+     * 两个生产者阻塞在put、两个阻塞在限时offer，扩容后全部完成
+     */
+    static void growWakesProducers() throws Exception {
+        LinkedBlockingQueue<Integer> q = new LinkedBlockingQueue<>(2);
+        q.put(0);
+        q.put(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final boolean timed = (i & 1) == 0;
+            final int value = 10 + i;
+            Thread t = new Thread(() -> {
+                try {
+                    if (timed) {
+                        if (q.offer(value, 10, TimeUnit.SECONDS)) {
+                            done.countDown();
+                        }
+                    } else {
+                        q.put(value);
+                        done.countDown();
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            });
+            t.start();
+            producers.add(t);
+        }
+        awaitBlocked(producers);
+        q.setCapacity(6);
+        check(done.await(5, TimeUnit.SECONDS), "producers still blocked after growing: " + done.getCount());
+        check(q.size() == 6 && q.remainingCapacity() == 0 && q.getCapacity() == 6, "after growing " + q);
+    }
+
+    /**
+     * 缩到比当前元素少：元素都保留，插入失败或阻塞，直到取到新容量以下
+     */
+    static void shrink() throws Exception {
+        LinkedBlockingQueue<Integer> q = new LinkedBlockingQueue<>(10);
+        for (int i = 0; i < 5; i++) {
+            q.put(i);
+        }
+        q.setCapacity(2);
+        check(q.size() == 5 && q.remainingCapacity() == 0, "after shrinking " + q);
+        check(!q.offer(99), "offer accepted above the new capacity");
+        check(!q.offer(99, 20, TimeUnit.MILLISECONDS), "timed offer accepted above the new capacity");
+
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                q.put(5);
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        List<Thread> producers = new ArrayList<>();
+        producers.add(producer);
+        awaitBlocked(producers);
+        //取到2个元素时仍然是满的
+        for (int i = 0; i < 3; i++) {
+            check(q.take() == i, "take " + i);
+        }
+        check(!done.await(50, TimeUnit.MILLISECONDS), "put returned while the queue was at capacity");
+        check(q.take() == 3, "take 3");
+        check(done.await(5, TimeUnit.SECONDS), "put still blocked below the new capacity");
+        check(q.take() == 4 && q.take() == 5 && q.isEmpty(), "order after shrinking " + q);
+    }
+
+    /**
+     * 缩容后drainTo一次取走多个元素，阻塞的生产者被唤醒
+     */
+    static void drainAfterShrink() throws Exception {
+        LinkedBlockingQueue<Integer> q = new LinkedBlockingQueue<>(8);
+        for (int i = 0; i < 8; i++) {
+            q.put(i);
+        }
+        q.setCapacity(3);
+        CountDownLatch done = new CountDownLatch(2);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    q.put(100);
+                    done.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            t.start();
+            producers.add(t);
+        }
+        awaitBlocked(producers);
+        List<Integer> out = new ArrayList<>();
+        check(q.drainTo(out) == 8, "drained " + out.size());
+        check(done.await(5, TimeUnit.SECONDS), "producers still blocked after drain: " + done.getCount());
+        check(q.size() == 2, "size " + q.size());
+    }
+
+    /**
+     * 容量在1到64之间不断变化时，4个生产者和4个消费者的元素不丢不重，队列不会超过当时的最大容量
+     */
+    static void resizeUnderLoad() throws Exception {
+        final int perProducer = 50_000;
+        final int producers = 4;
+        final long total = (long) perProducer * producers;
+        LinkedBlockingQueue<Long> q = new LinkedBlockingQueue<>(16);
+        AtomicLong received = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        AtomicLong maxSize = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            threads.add(new Thread(() -> {
+                try {
+                    for (long i = base; i < base + perProducer; i++) {
+                        if ((i & 1) == 0) {
+                            q.put(i);
+                        } else {
+                            while (!q.offer(i, 1, TimeUnit.MILLISECONDS)) {
+                                //重试
+                            }
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        for (int c = 0; c < producers; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (received.get() < total) {
+                        Long x = q.poll(1, TimeUnit.MILLISECONDS);
+                        if (x != null) {
+                            sum.addAndGet(x);
+                            received.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        Thread resizer = new Thread(() -> {
+            int[] sizes = {1, 64, 4, 32, 2, 16};
+            for (int i = 0; received.get() < total; i++) {
+                q.setCapacity(sizes[i % sizes.length]);
+                maxSize.accumulateAndGet(q.size(), Math::max);
+                Thread.yield();
+            }
+        });
+        for (Thread t : threads) {
+            t.start();
+        }
+        resizer.start();
+        for (Thread t : threads) {
+            t.join(60_000);
+            check(!t.isAlive(), "thread stuck, received " + received.get() + " capacity " + q.getCapacity());
+        }
+        resizer.join(10_000);
+        check(maxSize.get() <= 64, "size " + maxSize.get() + " above every capacity used");
+        check(received.get() == total, "received " + received.get());
+        check(sum.get() == total * (total - 1) / 2, "sum " + sum.get());
+        check(q.isEmpty(), "left over " + q.size());
+    }
+
+    static void awaitBlocked(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Thread t : threads) {
+            while (!waiting(t) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            check(waiting(t), t + " did not block, state " + t.getState());
+        }
+    }
+
+    static boolean waiting(Thread t) {
+        Thread.State s = t.getState();
+        return s == Thread.State.WAITING || s == Thread.State.TIMED_WAITING;
+    }
+}
@@ -0,0 +1,88 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.ShardedExecutorService;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName ShardedExecutorServiceTest
+ * @Description 分片的队列长度不会为负；工作线程中execute(task)提交到当前分片；同一个key按顺序执行；shutdown后终止
+ * @Author wangyuezheng
+ * @Date 2026/10/19 15:20
+ */
+
+public class ShardedExecutorServiceTest {
+
+    static volatile boolean stop;
+
+    public static void main(String[] args) throws Exception {
+        depthNeverNegative();
+        sameShardAndOrder();
+        System.out.println("ShardedExecutorServiceTest OK");
+    }
+
+    /**
+     * 工作线程不断取空队列的同时，另一个线程读取队列长度
+     */
+    static void depthNeverNegative() throws InterruptedException {
+        ShardedExecutorService executor = new ShardedExecutorService(2, true);
+        AtomicInteger min = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (!stop) {
+                for (int d : executor.queueDepths()) {
+                    min.accumulateAndGet(d, Math::min);
+                }
+            }
+        });
+        sampler.start();
+        int n = 200_000;
+        CountDownLatch done = new CountDownLatch(n);
+        for (int i = 0; i < n; i++) {
+            executor.execute(i & 7, done::countDown);
+        }
+        check(done.await(30, TimeUnit.SECONDS), "tasks did not finish");
+        stop = true;
+        sampler.join();
+        check(min.get() >= 0, "queue depth went to " + min.get());
+        executor.shutdown();
+        check(executor.awaitTermination(10, TimeUnit.SECONDS), "not terminated");
+    }
+
+    /**
+     * 不开启steal：工作线程中提交的任务在同一个线程上执行，同一个key的任务按提交顺序执行
+     */
+    static void sameShardAndOrder() throws InterruptedException {
+        ShardedExecutorService executor = new ShardedExecutorService(4, false);
+        int keys = 16, per = 1000;
+        int[] last = new int[keys];
+        AtomicInteger bad = new AtomicInteger(), otherThread = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(keys * per);
+        for (int i = 0; i < per; i++) {
+            for (int k = 0; k < keys; k++) {
+                final int key = k, seq = i;
+                executor.execute(key, () -> {
+                    if (last[key] != seq) {
+                        bad.incrementAndGet();
+                    }
+                    last[key] = seq + 1;
+                    Thread outer = Thread.currentThread();
+                    executor.execute(() -> {
+                        if (Thread.currentThread() != outer) {
+                            otherThread.incrementAndGet();
+                        }
+                        done.countDown();
+                    });
+                });
+            }
+        }
+        check(done.await(30, TimeUnit.SECONDS), "tasks did not finish");
+        check(bad.get() == 0, bad.get() + " tasks out of order");
+        check(otherThread.get() == 0, otherThread.get() + " nested tasks ran on another shard");
+        executor.shutdown();
+        check(executor.awaitTermination(10, TimeUnit.SECONDS), "not terminated");
+    }
+}
@@ -0,0 +1,109 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.SharedMemoryQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName SharedMemoryQueueTest
+ * @Description 两个SharedMemoryQueue映射同一个文件，一个生产一个消费，消息不丢不乱；参数不一致时打开失败，并且不会留下文件锁；
+ *              槽中的长度被写坏时这条消息被丢弃，槽照常释放，之后的消息不受影响
+ * @Author wangyuezheng
+ * @Date 2026/10/19 15:50
+ */
+
+public class SharedMemoryQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        File file = File.createTempFile("smq-test", ".q");
+        //空文件，由第一个打开者初始化
+        check(file.delete(), "delete " + file);
+        SharedMemoryQueue producer = new SharedMemoryQueue(file, 64, 32);
+        try {
+            //参数不一致：校验失败，初始化时持有的文件锁也要释放
+            try {
+                new SharedMemoryQueue(file, 128, 32);
+                throw new AssertionError("mismatched capacity accepted");
+            } catch (IllegalStateException expected) {
+            }
+            SharedMemoryQueue consumer = new SharedMemoryQueue(file, 64, 32);
+
+            int n = 100_000;
+            Thread t = new Thread(() -> {
+                try {
+                    for (int i = 0; i < n; i++) {
+                        producer.put(ByteBuffer.allocate(4).putInt(0, i).array());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            t.start();
+            for (int i = 0; i < n; i++) {
+                byte[] m = consumer.take();
+                check(m.length == 4 && ByteBuffer.wrap(m).getInt() == i, "message " + i);
+            }
+            t.join();
+            check(consumer.isEmpty() && producer.isEmpty(), "not empty");
+
+            //超过maxMessageBytes的消息被拒绝
+            try {
+                producer.offer(new byte[33]);
+                throw new AssertionError("oversized message accepted");
+            } catch (IllegalArgumentException expected) {
+            }
+
+            //前n条消息用掉了槽0..n-1，接下来的两条在槽n、n+1，把它们的长度写坏
+            producer.put(new byte[]{1});
+            producer.put(new byte[]{2});
+            producer.put(new byte[]{3});
+            corruptLength(file, n, -1);
+            corruptLength(file, n + 1, Integer.MAX_VALUE);
+            try {
+                consumer.poll();
+                throw new AssertionError("negative length accepted");
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                consumer.poll(buf -> {
+                    throw new AssertionError("consumer called for a huge length");
+                });
+                throw new AssertionError("huge length accepted");
+            } catch (IllegalStateException expected) {
+            }
+            byte[] m = consumer.poll();
+            check(m != null && m.length == 1 && m[0] == 3, "message after corrupt slots");
+            //写坏的槽已经释放，整圈的槽都还能用
+            for (int i = 0; i < 64; i++) {
+                check(producer.offer(new byte[]{(byte) i}), "slot " + i + " not released");
+            }
+            for (int i = 0; i < 64; i++) {
+                m = consumer.poll();
+                check(m != null && m[0] == (byte) i, "message " + i + " after corrupt slots");
+            }
+            consumer.close();
+        } finally {
+            producer.unlink();
+        }
+        System.out.println("SharedMemoryQueueTest OK");
+    }
+
+    /**
+     * 改写第pos条消息所在槽的长度：槽从256字节开始，64个槽，每个16字节槽头加32字节消息，
+     * 长度在槽头的第8个字节，按本机字节序
+     */
+    static void corruptLength(File file, long pos, int length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.nativeOrder()).putInt(0, length);
+            channel.write(b, 256 + (pos & 63) * 48 + 8);
+        }
+    }
+}
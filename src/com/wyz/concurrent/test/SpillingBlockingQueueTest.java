@@ -0,0 +1,207 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.SpillingBlockingQueue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName SpillingBlockingQueueTest
+ * @Description 磁盘上的元素反序列化失败时不能丢失：异常之后再取，仍然按顺序得到全部元素；
+ *              永久损坏的记录重试几次后被跳过并计数，不会一直堵住队列
+ * @Author wangyuezheng
+ * @Date 2026/10/19 13:40
+ */
+
+public class SpillingBlockingQueueTest {
+
+    /** 第一次读回这个值时反序列化失败 */
+    static volatile int poison;
+
+    static final SpillingBlockingQueue.Serializer<Integer> FLAKY = new SpillingBlockingQueue.Serializer<Integer>() {
+        @Override
+        public byte[] toBytes(Integer e) {
+            return ByteBuffer.allocate(4).putInt(e).array();
+        }
+
+        @Override
+        public Integer fromBytes(byte[] bytes) throws IOException {
+            int v = ByteBuffer.wrap(bytes).getInt();
+            if (v == poison) {
+                poison = -1;
+                throw new IOException("corrupt " + v);
+            }
+            return v;
+        }
+    };
+
+    /** 这个值永远无法反序列化 */
+    static volatile int broken;
+
+    static final SpillingBlockingQueue.Serializer<Integer> BROKEN = new SpillingBlockingQueue.Serializer<Integer>() {
+        @Override
+        public byte[] toBytes(Integer e) {
+            return ByteBuffer.allocate(4).putInt(e).array();
+        }
+
+        @Override
+        public Integer fromBytes(byte[] bytes) throws IOException {
+            int v = ByteBuffer.wrap(bytes).getInt();
+            if (v == broken) {
+                throw new IOException("unreadable " + v);
+            }
+            return v;
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        //head只放1个元素，每个段放8条记录：失败的元素在段的中间、在段的末尾（段会被删除）、在唯一的段的末尾（段会被复用）
+        run(100, 64, 50);
+        run(100, 64, 9);
+        run(10, 1024, 10);
+        permanentlyBroken();
+        brokenLast();
+        corruptLength();
+        System.out.println("SpillingBlockingQueueTest OK");
+    }
+
+    /**
+     * 5永远无法反序列化：重试几次之后被跳过，后面的元素照常取出
+     */
+    static void permanentlyBroken() throws Exception {
+        File dir = Files.createTempDirectory("spill-test").toFile();
+        broken = 5;
+        try (SpillingBlockingQueue<Integer> q = new SpillingBlockingQueue<Integer>(1, dir, 64, BROKEN)) {
+            for (int i = 1; i <= 20; i++) {
+                q.put(i);
+            }
+            int failures = 0;
+            for (int expected = 1; expected <= 20; ) {
+                if (expected == 5) {
+                    expected++;
+                }
+                Integer v;
+                try {
+                    v = q.poll();
+                } catch (UncheckedIOException ex) {
+                    failures++;
+                    check(failures < 10, "broken record is never skipped");
+                    continue;
+                }
+                check(v != null && v == expected, "broken: expected " + expected + " got " + v);
+                expected++;
+            }
+            check(failures > 0, "broken: record skipped without retry");
+            check(q.getDeadLetterCount() == 1, "broken: dead letters " + q.getDeadLetterCount());
+            check(q.isEmpty() && q.spilledSize() == 0, "broken: left " + q.size());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * 跳过的是磁盘上最后一个元素：poll返回null而不是抛出异常或者返回跳过的元素，队列之后仍然可用
+     */
+    static void brokenLast() throws Exception {
+        File dir = Files.createTempDirectory("spill-test").toFile();
+        broken = 2;
+        try (SpillingBlockingQueue<Integer> q = new SpillingBlockingQueue<Integer>(1, dir, 64, BROKEN)) {
+            q.put(1);
+            q.put(2);
+            check(q.poll() == 1, "last: head");
+            Integer v = null;
+            for (int i = 0; i < 10; i++) {
+                try {
+                    v = q.poll(10, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (UncheckedIOException retry) {
+                }
+            }
+            check(v == null, "last: got " + v);
+            check(q.isEmpty() && q.getDeadLetterCount() == 1, "last: size " + q.size());
+            q.put(3);
+            check(q.poll() == 3, "last: queue unusable after skip");
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * 记录的长度被破坏：这个段中剩下的记录都被跳过，其他段的元素照常取出
+     */
+    static void corruptLength() throws Exception {
+        File dir = Files.createTempDirectory("spill-test").toFile();
+        broken = -1;
+        try (SpillingBlockingQueue<Integer> q = new SpillingBlockingQueue<Integer>(1, dir, 64, BROKEN)) {
+            //每条记录8字节，每段8条：1在内存中，2..9、10..17、18..20各在一个段中
+            for (int i = 1; i <= 20; i++) {
+                q.put(i);
+            }
+            boolean corrupted = false;
+            for (File f : dir.listFiles()) {
+                try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                    raf.seek(20);
+                    if (raf.readInt() == 12) {
+                        raf.seek(16);
+                        raf.writeInt(-5);
+                        corrupted = true;
+                    }
+                }
+            }
+            check(corrupted, "corrupt: segment not found");
+            StringBuilder got = new StringBuilder();
+            for (Integer v; (v = q.poll()) != null; ) {
+                got.append(v).append(' ');
+            }
+            check("1 2 3 4 5 6 7 8 9 10 11 18 19 20 ".equals(got.toString()), "corrupt: got " + got);
+            check(q.getDeadLetterCount() == 6, "corrupt: dead letters " + q.getDeadLetterCount());
+            check(q.isEmpty() && q.spilledSize() == 0, "corrupt: left " + q.size());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    static void delete(File dir) {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * memoryCapacity为1，其余元素都写到segmentBytes大小的段中，读回poisonAt时失败一次
+     */
+    static void run(int n, int segmentBytes, int poisonAt) throws Exception {
+        File dir = Files.createTempDirectory("spill-test").toFile();
+        try (SpillingBlockingQueue<Integer> q = new SpillingBlockingQueue<Integer>(1, dir, segmentBytes, FLAKY)) {
+            for (int i = 1; i <= n; i++) {
+                q.put(i);
+            }
+            poison = poisonAt;
+            int failures = 0;
+            for (int expected = 1; expected <= n; ) {
+                Integer v;
+                try {
+                    v = q.poll();
+                } catch (UncheckedIOException ex) {
+                    failures++;
+                    check(q.size() == n - expected + 1, "size " + q.size() + " after failure at " + expected);
+                    continue;
+                }
+                check(v != null && v == expected, "expected " + expected + " got " + v);
+                expected++;
+            }
+            check(failures == 1, "failures " + failures);
+            check(q.isEmpty() && q.spilledSize() == 0, "left " + q.size());
+        } finally {
+            delete(dir);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.FutureTask;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.ThreadPoolExecutor;
+import com.wyz.concurrent.TimeoutException;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName StacklessExceptionTest
+ * @Description FastAbortPolicy抛出不带堆栈的异常，消息在getMessage时才生成，shared模式总是同一个实例；
+ *              超时默认每次创建带堆栈的TimeoutException，设置com.wyz.concurrent.stacklessTimeouts后
+ *              （在子进程中）共用一个不带堆栈的实例
+ * @Author wangyuezheng
+ * @Date 2026/10/19 20:30
+ */
+
+public class StacklessExceptionTest {
+
+    static final String STACKLESS_TIMEOUTS = "com.wyz.concurrent.stacklessTimeouts";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "stacklessTimeouts".equals(args[0])) {
+            //子进程：系统属性在TimeoutException初始化时读取，只能在新的JVM中设置
+            sharedTimeouts();
+            return;
+        }
+        fastAbort();
+        sharedAbort();
+        defaultTimeouts();
+        forkStacklessTimeouts();
+        System.out.println("StacklessExceptionTest OK");
+    }
+
+    /**
+     * 每次拒绝一个新的不带堆栈的异常，消息中有任务和线程池的信息
+     */
+    static void fastAbort() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = saturated(new ThreadPoolExecutor.FastAbortPolicy(), release);
+        try {
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                }
+
+                @Override
+                public String toString() {
+                    return "named-task";
+                }
+            };
+            RejectedExecutionException first = rejection(pool, task);
+            RejectedExecutionException second = rejection(pool, task);
+            check(first != second, "FastAbortPolicy reused an exception");
+            check(first.getStackTrace().length == 0, "stack trace filled " + first.getStackTrace().length);
+            first.addSuppressed(new IllegalStateException());
+            check(first.getSuppressed().length == 0, "suppression enabled");
+            String message = first.getMessage();
+            check(message.contains("named-task") && message.contains(pool.getClass().getName()),
+                    "message " + message);
+        } finally {
+            release.countDown();
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * shared模式所有拒绝都是同一个实例，不带堆栈，消息中没有任务信息
+     */
+    static void sharedAbort() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor pool = saturated(new ThreadPoolExecutor.FastAbortPolicy(true), release);
+        try {
+            RejectedExecutionException first = rejection(pool, () -> { });
+            RejectedExecutionException second = rejection(pool, () -> { });
+            check(first == second, "shared FastAbortPolicy allocated a new exception");
+            check(first.getStackTrace().length == 0, "shared exception has a stack trace");
+            check(first.getMessage() != null && !first.getMessage().contains(pool.getClass().getName()),
+                    "message " + first.getMessage());
+        } finally {
+            release.countDown();
+            Checks.shutdown(pool);
+        }
+    }
+
+    /**
+     * 默认每次超时是一个新的带堆栈的异常
+     */
+    static void defaultTimeouts() throws Exception {
+        check(!Boolean.getBoolean(STACKLESS_TIMEOUTS), STACKLESS_TIMEOUTS + " must not be set for this run");
+        TimeoutException first = timeout();
+        TimeoutException second = timeout();
+        check(first != second, "timeouts share an exception by default");
+        check(first.getStackTrace().length > 0, "default timeout has no stack trace");
+    }
+
+    /**
+     * 在子进程中打开com.wyz.concurrent.stacklessTimeouts
+     */
+    static void forkStacklessTimeouts() throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        //保留-Xbootclasspath等启动参数
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-D" + STACKLESS_TIMEOUTS + "=true");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StacklessExceptionTest.class.getName());
+        command.add("stacklessTimeouts");
+        Process p = new ProcessBuilder(command).inheritIO().start();
+        check(p.waitFor(60, TimeUnit.SECONDS), "child JVM did not exit");
+        check(p.exitValue() == 0, "child JVM failed with exit code " + p.exitValue());
+    }
+
+    static void sharedTimeouts() throws Exception {
+        TimeoutException first = timeout();
+        TimeoutException second = timeout();
+        check(first == second, "stackless timeouts allocated a new exception");
+        check(first.getStackTrace().length == 0, "stackless timeout has a stack trace");
+    }
+
+    static TimeoutException timeout() throws Exception {
+        FutureTask<Integer> never = new FutureTask<>(() -> 1);
+        try {
+            never.get(1, TimeUnit.MILLISECONDS);
+            throw new AssertionError("get on a task that never runs returned");
+        } catch (TimeoutException expected) {
+            return expected;
+        }
+    }
+
+    /**
+     * 一个工作线程被占用、队列容量为1且已满的线程池，之后的提交都会交给拒绝策略
+     */
+    static ThreadPoolExecutor saturated(ThreadPoolExecutor.FastAbortPolicy policy, CountDownLatch release) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(1), policy);
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        pool.execute(() -> { });
+        return pool;
+    }
+
+    static RejectedExecutionException rejection(ThreadPoolExecutor pool, Runnable task) {
+        try {
+            pool.execute(task);
+            throw new AssertionError("saturated pool accepted a task");
+        } catch (RejectedExecutionException e) {
+            return e;
+        }
+    }
+}
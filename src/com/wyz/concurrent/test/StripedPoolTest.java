@@ -0,0 +1,53 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName StripedPoolTest
+ * @Description 一个线程提交、多个工作线程执行时，execute(Consumer, arg)的ArgTask仍然能被提交线程复用
+ * @Author wangyuezheng
+ * @Date 2026/10/19 13:10
+ */
+
+public class StripedPoolTest {
+
+    public static void main(String[] args) throws Exception {
+        //在afterExecute中记录执行过的ArgTask，不同对象的个数就是新建的个数
+        Set<Runnable> seen = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<Runnable, Boolean>()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                seen.add(r);
+            }
+        };
+        int allocated;
+        try {
+            //限制同时在途的任务数，池里的槽位足够放下全部归还的对象
+            Semaphore inFlight = new Semaphore(2);
+            int n = 20000;
+            for (int i = 0; i < n; i++) {
+                inFlight.acquire();
+                pool.execute((Semaphore s) -> s.release(), inFlight);
+            }
+            inFlight.acquire(2);
+            //等最后一个任务的afterExecute和归还完成
+            Thread.sleep(100);
+            allocated = seen.size();
+            check(allocated < n / 10, "allocated " + allocated + " ArgTasks for " + n + " tasks");
+        } finally {
+            Checks.shutdown(pool);
+        }
+        System.out.println("StripedPoolTest OK, allocated " + allocated);
+    }
+}
@@ -0,0 +1,89 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.Future;
+import com.wyz.concurrent.LinkedBlockingQueue;
+import com.wyz.concurrent.TaskScope;
+import com.wyz.concurrent.ThreadPoolExecutor;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName TaskScopeTest
+ * @Description 结果确定之后fork不会让pending变成负数；取消其余子任务后的purge不在作用域的锁内执行
+ * @Author wangyuezheng
+ * @Date 2026/10/19 14:40
+ */
+
+public class TaskScopeTest {
+
+    static volatile TaskScope<String> current;
+    static final AtomicInteger purges = new AtomicInteger();
+    static volatile String purgeError;
+
+    public static void main(String[] args) throws Exception {
+        //purge时检查当前线程是否持有作用域的锁
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            public void purge() {
+                try {
+                    if (lockOf(current).isHeldByCurrentThread()) {
+                        purgeError = "purge called under the scope lock";
+                    }
+                } catch (ReflectiveOperationException ex) {
+                    purgeError = ex.toString();
+                }
+                purges.incrementAndGet();
+                super.purge();
+            }
+        };
+
+        try {
+            //唯一的线程执行第一个子任务时，其余子任务还在队列中，第一个成功后它们被取消并purge
+            CountDownLatch release = new CountDownLatch(1);
+            try (TaskScope<String> scope = new TaskScope<>(pool, TaskScope.JoinPolicy.FIRST_SUCCESS)) {
+                current = scope;
+                scope.fork(() -> {
+                    check(release.await(10, TimeUnit.SECONDS), "first subtask was not released");
+                    return "first";
+                });
+                for (int i = 0; i < 3; i++) {
+                    scope.fork(() -> "queued");
+                }
+                release.countDown();
+                scope.join();
+                check(scope.exception() == null, "first subtask failed: " + scope.exception());
+                check("first".equals(scope.result()), "result " + scope.result());
+                check(purges.get() == 1, "purges " + purges.get());
+                check(purgeError == null, purgeError);
+
+                //结果确定之后fork的子任务直接取消，不计入pending
+                Future<String> late = scope.fork(() -> "late");
+                check(late.isCancelled(), "late fork was not cancelled");
+                check(pendingOf(scope) == 0, "pending " + pendingOf(scope));
+            }
+            check(purgeError == null, purgeError);
+        } finally {
+            Checks.shutdown(pool);
+        }
+        System.out.println("TaskScopeTest OK");
+    }
+
+    static ReentrantLock lockOf(TaskScope<?> scope) throws ReflectiveOperationException {
+        Field f = TaskScope.class.getDeclaredField("lock");
+        f.setAccessible(true);
+        return (ReentrantLock) f.get(scope);
+    }
+
+    static int pendingOf(TaskScope<?> scope) throws ReflectiveOperationException {
+        Field f = TaskScope.class.getDeclaredField("pending");
+        f.setAccessible(true);
+        return f.getInt(scope);
+    }
+}
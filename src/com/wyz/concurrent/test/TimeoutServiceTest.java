@@ -0,0 +1,129 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.RejectedExecutionException;
+import com.wyz.concurrent.TimeoutService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName TimeoutServiceTest
+ * @Description TimeoutService：超时任务不会提前执行、最多晚一个tick左右，超过一圈的延迟按轮数等待，
+ *              按到期时间的顺序执行，取消的任务不执行，stop之后拒绝新任务，共享实例不能停止
+ * @Author wangyuezheng
+ * @Date 2026/10/19 18:30
+ */
+
+public class TimeoutServiceTest {
+
+    /** 调度误差的余量，避免机器繁忙时误报 */
+    static final long SLACK_MILLIS = 200;
+
+    public static void main(String[] args) throws Exception {
+        rounding();
+        expiryOrder();
+        cancel();
+        stop();
+        System.out.println("TimeoutServiceTest OK");
+    }
+
+    /**
+     * tick为10ms、只有4个桶：一圈只有40ms，100ms的延迟要多转几圈，不能在第一圈就执行
+     */
+    static void rounding() throws InterruptedException {
+        TimeoutService service = new TimeoutService(10, TimeUnit.MILLISECONDS, 4, "timeout-test");
+        try {
+            for (long delay : new long[]{0, 25, 100}) {
+                CountDownLatch fired = new CountDownLatch(1);
+                AtomicLong at = new AtomicLong();
+                long start = System.nanoTime();
+                service.newTimeout(() -> {
+                    at.set(System.nanoTime());
+                    fired.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+                check(fired.await(5, TimeUnit.SECONDS), "delay " + delay + " never fired");
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(at.get() - start);
+                check(elapsed >= delay, "delay " + delay + " fired early after " + elapsed + "ms");
+                check(elapsed <= delay + 10 + SLACK_MILLIS, "delay " + delay + " fired late after " + elapsed + "ms");
+            }
+        } finally {
+            service.stop();
+        }
+    }
+
+    /**
+     * 乱序提交的任务按到期时间执行
+     */
+    static void expiryOrder() throws InterruptedException {
+        TimeoutService service = new TimeoutService(5, TimeUnit.MILLISECONDS, 8, "timeout-test");
+        try {
+            long[] delays = {80, 20, 60, 40, 100};
+            List<Long> order = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch fired = new CountDownLatch(delays.length);
+            for (long delay : delays) {
+                service.newTimeout(() -> {
+                    order.add(delay);
+                    fired.countDown();
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+            check(fired.await(5, TimeUnit.SECONDS), "only " + order.size() + " timeouts fired");
+            for (int i = 1; i < order.size(); i++) {
+                check(order.get(i - 1) < order.get(i), "expiry order " + order);
+            }
+        } finally {
+            service.stop();
+        }
+    }
+
+    /**
+     * 取消的任务不执行；已经执行的任务不能再取消
+     */
+    static void cancel() throws InterruptedException {
+        TimeoutService service = new TimeoutService(5, TimeUnit.MILLISECONDS, 8, "timeout-test");
+        try {
+            AtomicBoolean cancelledRan = new AtomicBoolean();
+            TimeoutService.Timeout cancelled = service.newTimeout(() -> cancelledRan.set(true),
+                    30, TimeUnit.MILLISECONDS);
+            CountDownLatch fired = new CountDownLatch(1);
+            TimeoutService.Timeout expired = service.newTimeout(fired::countDown, 60, TimeUnit.MILLISECONDS);
+            check(cancelled.cancel(), "cancel before expiry");
+            check(cancelled.isCancelled() && !cancelled.isExpired(), "cancelled state");
+            check(!cancelled.cancel(), "second cancel succeeded");
+            check(fired.await(5, TimeUnit.SECONDS), "later timeout never fired");
+            check(!cancelledRan.get(), "cancelled timeout ran");
+            check(expired.isExpired() && !expired.cancel() && !expired.isCancelled(), "cancel after expiry");
+        } finally {
+            service.stop();
+        }
+    }
+
+    /**
+     * stop之后未到期的任务不执行，新任务被拒绝；共享实例不能停止
+     */
+    static void stop() throws InterruptedException {
+        TimeoutService service = new TimeoutService(5, TimeUnit.MILLISECONDS, 8, "timeout-test");
+        AtomicBoolean ran = new AtomicBoolean();
+        service.newTimeout(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+        service.stop();
+        service.stop();
+        Thread.sleep(100 + SLACK_MILLIS);
+        check(!ran.get(), "timeout ran after stop");
+        try {
+            service.newTimeout(() -> { }, 1, TimeUnit.MILLISECONDS);
+            throw new AssertionError("timeout accepted after stop");
+        } catch (RejectedExecutionException expected) {
+        }
+        try {
+            TimeoutService.shared().stop();
+            throw new AssertionError("shared TimeoutService stopped");
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.LinkedBlockingQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @ClassName WatermarkTest
+ * @Description LinkedBlockingQueue水位回调：生产者和消费者并发时，队列清空后最后一次回调必须是低水位
+ * @Author wangyuezheng
+ * @Date 2026/10/19 09:10
+ */
+
+public class WatermarkTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int round = 0; round < 3000; round++) {
+            LinkedBlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+            //模拟暂停生产者的监听器：高水位时暂停，低水位时恢复
+            boolean[] paused = new boolean[1];
+            queue.addWatermarkListener(2, 0, new LinkedBlockingQueue.WatermarkListener() {
+                @Override
+                public void onHighWatermark(LinkedBlockingQueue<?> q, int size) {
+                    //慢一点的回调，放大回调线程和其他生产者、消费者之间的竞争窗口
+                    Thread.yield();
+                    synchronized (paused) {
+                        paused[0] = true;
+                    }
+                }
+
+                @Override
+                public void onLowWatermark(LinkedBlockingQueue<?> q, int size) {
+                    synchronized (paused) {
+                        paused[0] = false;
+                    }
+                }
+            });
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        queue.offer(i);
+                    }
+                }));
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            queue.take();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread t : threads) {
+                t.join();
+            }
+            synchronized (paused) {
+                if (queue.size() != 0 || paused[0]) {
+                    throw new AssertionError("round " + round + ": queue empty but still above high watermark");
+                }
+            }
+        }
+        System.out.println("WatermarkTest OK");
+    }
+}
@@ -0,0 +1,265 @@
+package com.wyz.concurrent.test;
+
+import com.wyz.concurrent.WeightedBlockingQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.wyz.concurrent.test.Checks.check;
+
+/**
+ * @ClassName WeightedBlockingQueueTest
+ * @Description WeightedBlockingQueue：按总权重限制入队，比容量还重的元素在队列为空时可以入队，
+ *              释放的权重只够轻的生产者时它不会因为信号被重的生产者拿走而一直等待，
+ *              remove/drainTo/clear/迭代器删除归还权重，按入队时的权重归还，多线程下权重计数不出错
+ * @Author wangyuezheng
+ * @Date 2026/10/19 21:30
+ */
+
+public class WeightedBlockingQueueTest {
+
+    public static void main(String[] args) throws Exception {
+        weightLimit();
+        oversize();
+        lightProducerNotStarved();
+        weightReturned();
+        weightFixedAtEnqueue();
+        invalidElements();
+        producersAndConsumers();
+        System.out.println("WeightedBlockingQueueTest OK");
+    }
+
+    static WeightedBlockingQueue<String> byLength(long capacity) {
+        return new WeightedBlockingQueue<>(capacity, String::length);
+    }
+
+    static String weight(int n) {
+        char[] c = new char[n];
+        Arrays.fill(c, 'x');
+        return new String(c);
+    }
+
+    /**
+     * 总权重不超过容量，与元素个数无关
+     */
+    static void weightLimit() throws Exception {
+        WeightedBlockingQueue<String> q = byLength(10);
+        check(q.offer(weight(4)) && q.offer(weight(6)), "offer up to capacity");
+        check(q.weight() == 10 && q.remainingWeight() == 0 && q.size() == 2, "weight " + q.weight());
+        check(!q.offer(weight(1)), "offer above capacity");
+        check(!q.offer(weight(1), 20, TimeUnit.MILLISECONDS), "timed offer above capacity");
+        check(q.offer(""), "zero weight element rejected");
+        check(q.take().length() == 4 && q.remainingWeight() == 4, "remaining after take " + q.remainingWeight());
+        check(!q.offer(weight(5)) && q.offer(weight(4)), "offer into the freed weight");
+    }
+
+    /**
+     * 比容量还重的元素：队列为空时允许入队，之后的入队要等它被取走
+     */
+    static void oversize() throws Exception {
+        WeightedBlockingQueue<String> q = byLength(10);
+        check(q.offer(weight(15)), "oversize element rejected by an empty queue");
+        check(q.weight() == 15 && q.remainingWeight() == 0 && q.remainingCapacity() == 0, "weight " + q.weight());
+        check(!q.offer(weight(1)), "offer after an oversize element");
+        check(!q.offer(weight(15)), "second oversize element accepted");
+        q.take();
+        check(q.weight() == 0 && q.offer(weight(15)), "oversize element after take");
+
+        //put一个超重元素不会永久阻塞
+        WeightedBlockingQueue<String> q2 = byLength(10);
+        q2.put(weight(3));
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                q2.put(weight(50));
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        producer.start();
+        check(!done.await(50, TimeUnit.MILLISECONDS), "oversize put did not wait for a non-empty queue");
+        q2.take();
+        check(done.await(5, TimeUnit.SECONDS), "oversize put still blocked on an empty queue");
+    }
+
+    /**
+     * 重的生产者先开始等待。取走一个元素释放的权重只够轻的生产者，轻的生产者必须完成，
+     * 重的生产者继续等待，直到放得下
+     */
+    static void lightProducerNotStarved() throws Exception {
+        WeightedBlockingQueue<String> q = byLength(10);
+        q.put(weight(5));
+        q.put(weight(5));
+        CountDownLatch heavyDone = new CountDownLatch(1);
+        CountDownLatch lightDone = new CountDownLatch(1);
+        Thread heavy = producer(q, weight(8), heavyDone);
+        awaitBlocked(heavy);
+        Thread light = producer(q, weight(2), lightDone);
+        awaitBlocked(light);
+        q.take();
+        check(lightDone.await(5, TimeUnit.SECONDS), "light producer still blocked with room for it");
+        check(!heavyDone.await(50, TimeUnit.MILLISECONDS), "heavy producer exceeded the capacity");
+        check(q.weight() == 7, "weight " + q.weight());
+        q.take();
+        check(heavyDone.await(5, TimeUnit.SECONDS), "heavy producer still blocked with room for it");
+        check(q.weight() == 10, "weight " + q.weight());
+    }
+
+    /**
+     * remove、drainTo、clear和迭代器的remove都归还权重并唤醒生产者
+     */
+    static void weightReturned() throws Exception {
+        WeightedBlockingQueue<String> q = byLength(10);
+        q.put("aaa");
+        q.put("bb");
+        q.put("ccccc");
+        check(q.remove("bb") && !q.remove("bb"), "remove");
+        check(q.weight() == 8, "weight after remove " + q.weight());
+        Iterator<String> it = q.iterator();
+        check("aaa".equals(it.next()), "iterator order");
+        it.remove();
+        check(q.weight() == 5 && q.size() == 1, "weight after iterator remove " + q.weight());
+
+        q.put("dd");
+        List<String> out = new ArrayList<>();
+        check(q.drainTo(out, 1) == 1 && "ccccc".equals(out.get(0)), "drainTo max " + out);
+        check(q.weight() == 2, "weight after drainTo " + q.weight());
+
+        q.put(weight(8));
+        CountDownLatch done = new CountDownLatch(1);
+        Thread producer = producer(q, weight(10), done);
+        awaitBlocked(producer);
+        q.clear();
+        check(done.await(5, TimeUnit.SECONDS), "producer still blocked after clear");
+        check(q.weight() == 10 && q.size() == 1, "weight after clear " + q.weight());
+    }
+
+    /**
+     * 权重在入队时计算并保存，元素之后变化不影响归还的权重
+     */
+    static void weightFixedAtEnqueue() throws Exception {
+        WeightedBlockingQueue<StringBuilder> q = new WeightedBlockingQueue<>(100, StringBuilder::length);
+        StringBuilder a = new StringBuilder("abc");
+        StringBuilder b = new StringBuilder("de");
+        q.put(a);
+        q.put(b);
+        a.append("0123456789");
+        b.setLength(0);
+        check(q.weight() == 5, "weight changed with the element " + q.weight());
+        q.take();
+        check(q.weight() == 2, "weight after first take " + q.weight());
+        q.take();
+        check(q.weight() == 0 && q.remainingWeight() == 100, "weight after taking everything " + q.weight());
+    }
+
+    static void invalidElements() {
+        WeightedBlockingQueue<String> q = new WeightedBlockingQueue<>(10, s -> s.startsWith("-") ? -1 : s.length());
+        try {
+            q.offer("-x");
+            throw new AssertionError("negative weight accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            q.offer(null);
+            throw new AssertionError("null accepted");
+        } catch (NullPointerException expected) {
+        }
+        check(q.isEmpty() && q.weight() == 0, "invalid element changed the queue");
+        try {
+            byLength(0);
+            throw new AssertionError("capacity 0 accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new WeightedBlockingQueue<String>(10, null);
+            throw new AssertionError("null weigher accepted");
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    /**
+     * 不同权重的元素在多个生产者和消费者之间传递，结束时权重归零，元素不丢不重
+     */
+    static void producersAndConsumers() throws Exception {
+        final int perProducer = 20_000;
+        final int producers = 4;
+        final long total = (long) perProducer * producers;
+        WeightedBlockingQueue<long[]> q = new WeightedBlockingQueue<>(256, a -> a.length);
+        AtomicLong received = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final long base = (long) p * perProducer;
+            threads.add(new Thread(() -> {
+                try {
+                    for (long i = base; i < base + perProducer; i++) {
+                        //权重1到300，偶尔超过容量
+                        long[] e = new long[1 + (int) (i % 300)];
+                        e[0] = i;
+                        q.put(e);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        for (int c = 0; c < producers; c++) {
+            final boolean drain = (c & 1) == 0;
+            threads.add(new Thread(() -> {
+                List<long[]> batch = new ArrayList<>();
+                try {
+                    while (received.get() < total) {
+                        batch.clear();
+                        if (drain) {
+                            q.drainTo(batch, 8);
+                        } else {
+                            long[] e = q.poll(1, TimeUnit.MILLISECONDS);
+                            if (e != null) {
+                                batch.add(e);
+                            }
+                        }
+                        for (long[] e : batch) {
+                            sum.addAndGet(e[0]);
+                            received.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join(60_000);
+            check(!t.isAlive(), "thread stuck, received " + received.get() + " weight " + q.weight());
+        }
+        check(received.get() == total, "received " + received.get());
+        check(sum.get() == total * (total - 1) / 2, "sum " + sum.get());
+        check(q.isEmpty() && q.weight() == 0, "left over " + q.size() + " weight " + q.weight());
+    }
+
+    static Thread producer(WeightedBlockingQueue<String> q, String e, CountDownLatch done) {
+        Thread t = new Thread(() -> {
+            try {
+                q.put(e);
+                done.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    static void awaitBlocked(Thread t) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (t.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        check(t.getState() == Thread.State.WAITING, t + " did not block, state " + t.getState());
+    }
+}